@@ -2,11 +2,18 @@ package io.github.yaforster.flexcaptcha.core;
 
 import io.github.yaforster.flexcaptcha.impl.token.CipherInstantiationException;
 import io.github.yaforster.flexcaptcha.impl.token.CipherSettings;
+import io.github.yaforster.flexcaptcha.impl.token.CryptoInstancePool;
+import io.github.yaforster.flexcaptcha.impl.token.DerivedKeyCache;
 import io.github.yaforster.flexcaptcha.impl.token.ExpirationTimeSettings;
+import io.github.yaforster.flexcaptcha.impl.token.SerializingSaltEncoder;
 import io.github.yaforster.flexcaptcha.impl.token.TokengenerationException;
-import lombok.AllArgsConstructor;
+import io.github.yaforster.flexcaptcha.util.AbstractRandomSource;
+import io.github.yaforster.flexcaptcha.util.StrongRandomSource;
+import lombok.AccessLevel;
+import lombok.Setter;
 
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
@@ -17,17 +24,83 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.security.spec.KeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
-@AllArgsConstructor
 public abstract class AbstractCaptchaCipher {
 
     protected CipherSettings cipherSettings;
     protected String encryptionPassword;
     protected ExpirationTimeSettings expirationTimeSettings;
+    /**
+     * Optional cache for derived keys. If null, the key is derived anew on every token operation.
+     */
+    @Setter(AccessLevel.PROTECTED)
+    protected DerivedKeyCache derivedKeyCache;
+    /**
+     * Optional pool of reusable cryptographic primitives. If null, new instances are created for every token
+     * operation.
+     */
+    @Setter(AccessLevel.PROTECTED)
+    protected CryptoInstancePool cryptoInstancePool;
+    /**
+     * Converts the salt source into the bytes used for key derivation or authentication. Defaults to Java
+     * serialization.
+     */
+    @Setter(AccessLevel.PROTECTED)
+    protected AbstractSaltEncoder saltEncoder = new SerializingSaltEncoder();
+    /**
+     * Optional store of consumed tokens. If null, a token can be validated any number of times until it expires.
+     */
+    @Setter(AccessLevel.PROTECTED)
+    protected AbstractReplayStore replayStore;
+    /**
+     * Source of initialization vectors and nonces. Defaults to a {@link StrongRandomSource}.
+     */
+    @Setter(AccessLevel.PROTECTED)
+    protected AbstractRandomSource randomSource = new StrongRandomSource();
+    /**
+     * Number of rejected validations, indexed by the ordinal of the {@link TokenRejectionReason}
+     */
+    private final LongAdder[] rejectionCounts = createRejectionCounts();
+
+    /**
+     * Shared source of {@link #generateIV()}, so no {@link java.security.SecureRandom} is created per call
+     */
+    private static final AbstractRandomSource IV_RANDOM_SOURCE = new StrongRandomSource();
+    private static final String FINGERPRINT_ALGORITHM = "SHA-256";
+
+    /**
+     * Creates a cipher without key cache, instance pool or replay store. These optional collaborators, the salt
+     * encoder and the random source are configured by subclasses through their protected setters.
+     *
+     * @param cipherSettings         algorithms used for key derivation and encryption
+     * @param encryptionPassword     the password the keys are derived from
+     * @param expirationTimeSettings optional expiration time of the generated tokens
+     */
+    public AbstractCaptchaCipher(CipherSettings cipherSettings, String encryptionPassword,
+                                 ExpirationTimeSettings expirationTimeSettings) {
+        this.cipherSettings = cipherSettings;
+        this.encryptionPassword = encryptionPassword;
+        this.expirationTimeSettings = expirationTimeSettings;
+    }
 
     /**
      * generates a new initialization vector as randomized 16 bytes and returns it as
@@ -37,12 +110,25 @@ public abstract class AbstractCaptchaCipher {
      */
     public static IvParameterSpec generateIV() {
         byte[] iv = new byte[16];
-        new SecureRandom().nextBytes(iv);
+        IV_RANDOM_SOURCE.nextBytes(iv);
         return new IvParameterSpec(iv);
     }
 
     /**
-     * Generates and configures the {@link Cipher} object used for encryption and decryption.
+     * Draws random bytes for initialization vectors and nonces from the configured {@link AbstractRandomSource}
+     *
+     * @param length number of bytes
+     * @return array of random bytes
+     */
+    protected final byte[] generateRandomBytes(final int length) {
+        byte[] bytes = new byte[length];
+        randomSource.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Generates and configures the {@link Cipher} object used for encryption and decryption. The cipher can be handed
+     * back through {@link #releaseCipher(Cipher)} once it is no longer used.
      *
      * @param password   the password used for encryption
      * @param saltSource a Serializable object used as salt
@@ -52,24 +138,182 @@ public abstract class AbstractCaptchaCipher {
      */
     protected final Cipher getCipher(final String password, final Serializable saltSource, final int mode,
                                      final byte[] ivBytes) {
+        return getCipher(getSecretKey(password, encodeSalt(saltSource)), mode, ivBytes);
+    }
+
+    /**
+     * Configures a {@link Cipher} object for the given, already derived key. The cipher can be handed back through
+     * {@link #releaseCipher(Cipher)} once it is no longer used.
+     *
+     * @param key     the key derived through {@link #getSecretKey(String, byte[])}
+     * @param mode    specifies whether the cipher will encrypt or decrypt
+     * @param ivBytes the initialization vector
+     * @return configured Cipher object
+     */
+    protected final Cipher getCipher(final SecretKey key, final int mode, final byte[] ivBytes) {
+        return getCipher(key, mode, ivBytes, 0, ivBytes.length);
+    }
+
+    /**
+     * Configures a {@link Cipher} object for the given, already derived key, reading the initialization vector from a
+     * range of the given array. The cipher can be handed back through {@link #releaseCipher(Cipher)} once it is no
+     * longer used.
+     *
+     * @param key      the key derived through {@link #getSecretKey(String, byte[])}
+     * @param mode     specifies whether the cipher will encrypt or decrypt
+     * @param ivBytes  array holding the initialization vector
+     * @param ivOffset index of the first byte of the initialization vector
+     * @param ivLength length of the initialization vector
+     * @return configured Cipher object
+     */
+    protected final Cipher getCipher(final SecretKey key, final int mode, final byte[] ivBytes, final int ivOffset,
+                                     final int ivLength) {
+        Cipher cipher = null;
         try {
-            IvParameterSpec iv = new IvParameterSpec(ivBytes);
-            SecretKeyFactory factory = SecretKeyFactory.getInstance(cipherSettings.encryptionAlgorithm());
-            Cipher cipher = Cipher.getInstance(cipherSettings.cipherAlgorithm());
-            byte[] saltBytes = getSaltBytes(saltSource);
-            KeySpec ks = new PBEKeySpec(password.toCharArray(), saltBytes, 65536, 256);
-            SecretKey key = new SecretKeySpec(factory.generateSecret(ks)
-                    .getEncoded(), cipherSettings.secretKeySpecAlgorithm());
+            IvParameterSpec iv = new IvParameterSpec(ivBytes, ivOffset, ivLength);
+            cipher = acquireCipher(cipherSettings.cipherAlgorithm());
             cipher.init(mode, key, iv);
             return cipher;
         }
+        catch (GeneralSecurityException originalException) {
+            releaseCipher(cipher);
+            throw mapCipherGenerationException(originalException);
+        }
+    }
+
+    /**
+     * Derives the secret key for the given salt bytes, using the {@link DerivedKeyCache} if one is configured. Meant
+     * for callers that use the same salt for several token operations.
+     *
+     * @param password  the password used for encryption
+     * @param saltBytes the salt bytes as returned by {@link #encodeSalt(Serializable)}
+     * @return the derived key
+     */
+    protected final SecretKey getSecretKey(final String password, final byte[] saltBytes) {
+        try {
+            return deriveKey(password, saltBytes);
+        }
         catch (GeneralSecurityException originalException) {
             throw mapCipherGenerationException(originalException);
         }
     }
 
     /**
-     * Gets the byte array of the salt source object
+     * Derives the secret key from the password and the salt, using the {@link DerivedKeyCache} if one is configured.
+     *
+     * @param password  the password used for encryption
+     * @param saltBytes the salt used for the key derivation
+     * @return the derived key
+     * @throws GeneralSecurityException if the key derivation fails
+     */
+    private SecretKey deriveKey(final String password, final byte[] saltBytes) throws GeneralSecurityException {
+        if (derivedKeyCache == null) {
+            return generateSecretKey(password, saltBytes, cipherSettings.secretKeySpecAlgorithm());
+        }
+        return derivedKeyCache.getOrDerive(password, saltBytes, cipherSettings,
+                () -> generateSecretKey(password, saltBytes, cipherSettings.secretKeySpecAlgorithm()));
+    }
+
+    /**
+     * Derives a secret key from the password and the given salt bytes without consulting the
+     * {@link DerivedKeyCache}. Meant for keys that are derived once and kept by the cipher instance.
+     *
+     * @param password     the password used for encryption
+     * @param saltBytes    the salt used for the key derivation
+     * @param keyAlgorithm the algorithm the derived key is used with
+     * @return the derived key
+     */
+    protected final SecretKey deriveSecretKey(final String password, final byte[] saltBytes,
+                                              final String keyAlgorithm) {
+        try {
+            return generateSecretKey(password, saltBytes, keyAlgorithm);
+        }
+        catch (GeneralSecurityException originalException) {
+            throw mapCipherGenerationException(originalException);
+        }
+    }
+
+    private SecretKey generateSecretKey(final String password, final byte[] saltBytes, final String keyAlgorithm) throws GeneralSecurityException {
+        SecretKeyFactory factory = acquireSecretKeyFactory(cipherSettings.encryptionAlgorithm());
+        try {
+            KeySpec ks = new PBEKeySpec(password.toCharArray(), saltBytes, 65536, 256);
+            return new SecretKeySpec(factory.generateSecret(ks).getEncoded(), keyAlgorithm);
+        }
+        finally {
+            releaseSecretKeyFactory(factory);
+        }
+    }
+
+    /**
+     * Gets a {@link Cipher} for the given transformation, reusing a pooled instance if a {@link CryptoInstancePool}
+     * is configured.
+     *
+     * @param transformation the transformation of the cipher
+     * @return Cipher object that has to be initialised before use
+     * @throws GeneralSecurityException if no provider supports the transformation
+     */
+    protected final Cipher acquireCipher(final String transformation) throws GeneralSecurityException {
+        return cryptoInstancePool != null ? cryptoInstancePool.acquireCipher(transformation) :
+                Cipher.getInstance(transformation);
+    }
+
+    /**
+     * Hands a cipher back to the {@link CryptoInstancePool}, if one is configured.
+     *
+     * @param cipher cipher that is no longer used by the caller
+     */
+    protected final void releaseCipher(final Cipher cipher) {
+        if (cryptoInstancePool != null && cipher != null) {
+            cryptoInstancePool.releaseCipher(cipher);
+        }
+    }
+
+    /**
+     * Gets a {@link Mac} for the given algorithm, reusing a pooled instance if a {@link CryptoInstancePool} is
+     * configured.
+     *
+     * @param algorithm the MAC algorithm
+     * @return Mac object that has to be initialised before use
+     * @throws GeneralSecurityException if no provider supports the algorithm
+     */
+    protected final Mac acquireMac(final String algorithm) throws GeneralSecurityException {
+        return cryptoInstancePool != null ? cryptoInstancePool.acquireMac(algorithm) : Mac.getInstance(algorithm);
+    }
+
+    /**
+     * Hands a MAC back to the {@link CryptoInstancePool}, if one is configured.
+     *
+     * @param mac MAC that is no longer used by the caller
+     */
+    protected final void releaseMac(final Mac mac) {
+        if (cryptoInstancePool != null && mac != null) {
+            cryptoInstancePool.releaseMac(mac);
+        }
+    }
+
+    private SecretKeyFactory acquireSecretKeyFactory(final String algorithm) throws GeneralSecurityException {
+        return cryptoInstancePool != null ? cryptoInstancePool.acquireSecretKeyFactory(algorithm) :
+                SecretKeyFactory.getInstance(algorithm);
+    }
+
+    private void releaseSecretKeyFactory(final SecretKeyFactory factory) {
+        if (cryptoInstancePool != null) {
+            cryptoInstancePool.releaseSecretKeyFactory(factory);
+        }
+    }
+
+    /**
+     * Gets the byte array of the salt source object through the configured {@link AbstractSaltEncoder}
+     *
+     * @param saltSource object to be used as salt
+     * @return byte array of the given object
+     */
+    protected final byte[] encodeSalt(final Serializable saltSource) {
+        return saltEncoder.encode(saltSource);
+    }
+
+    /**
+     * Gets the byte array of the salt source object through Java serialization
      *
      * @param saltSource object to be used as salt
      * @return byte array of the given object
@@ -85,7 +329,111 @@ public abstract class AbstractCaptchaCipher {
         }
     }
 
-    private CipherInstantiationException mapCipherGenerationException(GeneralSecurityException originalException) {
+    private static LongAdder[] createRejectionCounts() {
+        LongAdder[] counts = new LongAdder[TokenRejectionReason.values().length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+        return counts;
+    }
+
+    /**
+     * Counts a rejected validation under the given reason.
+     *
+     * @param reason reason for rejecting the token
+     * @return always false, so the rejection can be returned as validation result
+     */
+    protected final boolean recordRejection(final TokenRejectionReason reason) {
+        rejectionCounts[reason.ordinal()].increment();
+        return false;
+    }
+
+    /**
+     * @param reason reason for rejecting a token
+     * @return number of validations rejected for the given reason since the cipher was created
+     */
+    public final long getRejectionCount(final TokenRejectionReason reason) {
+        return rejectionCounts[reason.ordinal()].sum();
+    }
+
+    /**
+     * Records the token as consumed in the {@link AbstractReplayStore}, if one is configured. Meant to be called once
+     * the token is known to be authentic and not expired.
+     *
+     * @param tokenBytes        array holding the decoded token from index 0
+     * @param fingerprintOffset index of the first token byte included in the fingerprint. Bytes from it on must not be
+     *                          alterable without invalidating the token, so bytes that can be altered without
+     *                          altering the accepted answer have to come before it.
+     * @param tokenLength       length of the decoded token
+     * @param expirationTime    time in milliseconds at which the token expires, or {@link Long#MAX_VALUE} if it does
+     *                          not expire
+     * @return true if the token may be accepted, false if it was consumed before, counted as
+     * {@link TokenRejectionReason#REPLAYED}
+     */
+    protected final boolean consumeToken(final byte[] tokenBytes, final int fingerprintOffset, final int tokenLength,
+                                         final long expirationTime) {
+        if (replayStore == null) {
+            return true;
+        }
+        long fingerprint;
+        try {
+            MessageDigest digest = acquireMessageDigest();
+            try {
+                fingerprint = getTokenFingerprint(digest, tokenBytes, fingerprintOffset, tokenLength);
+            }
+            finally {
+                releaseMessageDigest(digest);
+            }
+        }
+        catch (GeneralSecurityException originalException) {
+            throw mapCipherGenerationException(originalException);
+        }
+        if (replayStore.markConsumed(fingerprint, expirationTime)) {
+            return true;
+        }
+        return recordRejection(TokenRejectionReason.REPLAYED);
+    }
+
+    /**
+     * Computes the 64 bit fingerprint of a token as the first eight bytes of the SHA-256 hash over the token bytes.
+     *
+     * @param tokenBytes array holding the decoded token from index 0
+     * @param offset     index of the first token byte included in the fingerprint
+     * @param length     length of the decoded token
+     * @return fingerprint of the token
+     */
+    public static long getTokenFingerprint(final byte[] tokenBytes, final int offset, final int length) {
+        try {
+            return getTokenFingerprint(MessageDigest.getInstance(FINGERPRINT_ALGORITHM), tokenBytes, offset, length);
+        }
+        catch (NoSuchAlgorithmException originalException) {
+            throw mapCipherGenerationException(originalException);
+        }
+    }
+
+    private static long getTokenFingerprint(final MessageDigest digest, final byte[] tokenBytes, final int offset,
+                                            final int length) {
+        digest.update(tokenBytes, offset, length - offset);
+        byte[] hash = digest.digest();
+        long fingerprint = 0L;
+        for (int i = 0; i < Long.BYTES; i++) {
+            fingerprint = fingerprint << Byte.SIZE | hash[i] & 0xFF;
+        }
+        return fingerprint;
+    }
+
+    private MessageDigest acquireMessageDigest() throws GeneralSecurityException {
+        return cryptoInstancePool != null ? cryptoInstancePool.acquireMessageDigest(FINGERPRINT_ALGORITHM) :
+                MessageDigest.getInstance(FINGERPRINT_ALGORITHM);
+    }
+
+    private void releaseMessageDigest(final MessageDigest digest) {
+        if (cryptoInstancePool != null) {
+            cryptoInstancePool.releaseMessageDigest(digest);
+        }
+    }
+
+    private static CipherInstantiationException mapCipherGenerationException(GeneralSecurityException originalException) {
         String errorMessage = switch (originalException) {
             case NoSuchPaddingException nspe ->
                     "Unknown padding specified for token encryption: " + nspe.getLocalizedMessage();
@@ -114,4 +462,192 @@ public abstract class AbstractCaptchaCipher {
      * @return boolean of the validation result.
      */
     public abstract boolean validateToken(final String tokenString, final Serializable saltSource, final String answer);
+
+    /**
+     * Validates the user input against a token given as characters, e.g. a view into a request buffer. The default
+     * implementation converts both to Strings, implementations can override it to validate without the conversion.
+     *
+     * @param token      the returned token generated with the original captcha
+     * @param saltSource the salt source used to generate the original captcha
+     * @param answer     the given answer to be validated
+     * @return boolean of the validation result.
+     */
+    public boolean validateToken(final CharSequence token, final Serializable saltSource, final CharSequence answer) {
+        return validateToken(token.toString(), saltSource, answer.toString());
+    }
+
+    /**
+     * Validates the user input against a token given as ASCII bytes in a range of an array.
+     *
+     * @param token      array holding the Base64 characters of the token
+     * @param offset     index of the first character of the token
+     * @param length     number of characters of the token
+     * @param saltSource the salt source used to generate the original captcha
+     * @param answer     the given answer to be validated
+     * @return boolean of the validation result.
+     * @see #validateToken(CharSequence, Serializable, CharSequence)
+     */
+    public boolean validateToken(final byte[] token, final int offset, final int length,
+                                 final Serializable saltSource, final CharSequence answer) {
+        return validateToken(new String(token, offset, length, StandardCharsets.US_ASCII), saltSource,
+                answer.toString());
+    }
+
+    /**
+     * Validates the user input against a token given as ASCII bytes between position and limit of the buffer. The
+     * position of the buffer is not changed.
+     *
+     * @param token      buffer holding the Base64 characters of the token
+     * @param saltSource the salt source used to generate the original captcha
+     * @param answer     the given answer to be validated
+     * @return boolean of the validation result.
+     * @see #validateToken(CharSequence, Serializable, CharSequence)
+     */
+    public boolean validateToken(final ByteBuffer token, final Serializable saltSource, final CharSequence answer) {
+        return validateToken(StandardCharsets.US_ASCII.decode(token.duplicate()).toString(), saltSource,
+                answer.toString());
+    }
+
+    /**
+     * Validates all given entries on the common {@link ForkJoinPool}.
+     *
+     * @param requests entries to validate
+     * @return BitSet with the bit at the index of every successfully validated entry set
+     * @see #validateAll(List, ExecutorService)
+     */
+    public final BitSet validateAll(final List<TokenValidationRequest> requests) {
+        return validateAll(requests, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Validates all given entries on the given executor. Entries sharing the same salt source are validated together
+     * in a single task, so the key material derived from the salt only has to be computed once per salt. Entries
+     * that cannot be validated, e.g. because the token is malformed, are reported as failed.
+     *
+     * @param requests entries to validate
+     * @param executor executor running the validation tasks, e.g. a {@link ForkJoinPool} or a virtual thread executor
+     * @return BitSet with the bit at the index of every successfully validated entry set
+     */
+    public final BitSet validateAll(final List<TokenValidationRequest> requests, final ExecutorService executor) {
+        Map<Serializable, List<Integer>> indicesBySalt = groupIndicesBySalt(requests,
+                TokenValidationRequest::saltSource);
+        List<Callable<boolean[]>> tasks = new ArrayList<>(indicesBySalt.size());
+        indicesBySalt.forEach((saltSource, indices) -> tasks.add(() -> validateTokensWithSameSalt(saltSource,
+                indices.stream().map(requests::get).toList())));
+        List<boolean[]> groupResults = invokeAll(executor, tasks);
+        BitSet results = new BitSet(requests.size());
+        int group = 0;
+        for (List<Integer> indices : indicesBySalt.values()) {
+            boolean[] validationResults = groupResults.get(group++);
+            for (int i = 0; i < indices.size(); i++) {
+                results.set(indices.get(i), validationResults[i]);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Generates tokens for all given entries on the common {@link ForkJoinPool}.
+     *
+     * @param requests entries to generate tokens for
+     * @return generated tokens in the order of the given entries
+     * @see #generateTokens(List, ExecutorService)
+     */
+    public final List<String> generateTokens(final List<TokenGenerationRequest> requests) {
+        return generateTokens(requests, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Generates tokens for all given entries on the given executor. Entries sharing the same salt source are
+     * processed together in a single task, so the key material derived from the salt only has to be computed once
+     * per salt.
+     *
+     * @param requests entries to generate tokens for
+     * @param executor executor running the generation tasks, e.g. a {@link ForkJoinPool} or a virtual thread executor
+     * @return generated tokens in the order of the given entries
+     */
+    public final List<String> generateTokens(final List<TokenGenerationRequest> requests,
+                                             final ExecutorService executor) {
+        Map<Serializable, List<Integer>> indicesBySalt = groupIndicesBySalt(requests,
+                TokenGenerationRequest::saltSource);
+        List<Callable<List<String>>> tasks = new ArrayList<>(indicesBySalt.size());
+        indicesBySalt.forEach((saltSource, indices) -> tasks.add(() -> generateTokensWithSameSalt(saltSource,
+                indices.stream().map(index -> requests.get(index).solution()).toList())));
+        List<List<String>> groupTokens = invokeAll(executor, tasks);
+        String[] tokens = new String[requests.size()];
+        int group = 0;
+        for (List<Integer> indices : indicesBySalt.values()) {
+            List<String> generatedTokens = groupTokens.get(group++);
+            for (int i = 0; i < indices.size(); i++) {
+                tokens[indices.get(i)] = generatedTokens.get(i);
+            }
+        }
+        return Arrays.asList(tokens);
+    }
+
+    /**
+     * Validates a group of batch entries that share the same salt source. Implementations can override this to
+     * reuse the key material derived from the salt. Entries that cannot be validated must be reported as failed
+     * instead of failing the whole group.
+     *
+     * @param saltSource the salt source shared by all entries
+     * @param requests   entries to validate
+     * @return validation result of each entry, in the order of the given entries
+     */
+    protected boolean[] validateTokensWithSameSalt(final Serializable saltSource,
+                                                   final List<TokenValidationRequest> requests) {
+        boolean[] results = new boolean[requests.size()];
+        for (int i = 0; i < results.length; i++) {
+            TokenValidationRequest request = requests.get(i);
+            try {
+                results[i] = validateToken(request.token(), saltSource, request.answer());
+            }
+            catch (RuntimeException validationFailure) {
+                results[i] = false;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Generates the tokens for a group of batch entries that share the same salt source. Implementations can override
+     * this to reuse the key material derived from the salt.
+     *
+     * @param saltSource the salt source shared by all entries
+     * @param solutions  solutions to generate tokens for
+     * @return generated tokens, in the order of the given solutions
+     */
+    protected List<String> generateTokensWithSameSalt(final Serializable saltSource, final List<String> solutions) {
+        return solutions.stream().map(solution -> generateToken(solution, saltSource)).toList();
+    }
+
+    private static <T> Map<Serializable, List<Integer>> groupIndicesBySalt(List<T> requests,
+                                                                          Function<T, Serializable> saltGetter) {
+        Map<Serializable, List<Integer>> indicesBySalt = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            indicesBySalt.computeIfAbsent(saltGetter.apply(requests.get(i)), saltSource -> new ArrayList<>()).add(i);
+        }
+        return indicesBySalt;
+    }
+
+    private static <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks) {
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        }
+        catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new TokengenerationException("Interrupted during batch token operation.", interruptedException);
+        }
+        catch (ExecutionException executionException) {
+            if (executionException.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new TokengenerationException("Fatal error during batch token operation: " + executionException.getCause()
+                    .getLocalizedMessage(), executionException.getCause());
+        }
+    }
 }
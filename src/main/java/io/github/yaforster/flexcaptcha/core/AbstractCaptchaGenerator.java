@@ -1,12 +1,31 @@
 package io.github.yaforster.flexcaptcha.core;
 
+import io.github.yaforster.flexcaptcha.impl.rendering.CaptchaRenderingException;
 import lombok.AllArgsConstructor;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 @AllArgsConstructor
 public abstract class AbstractCaptchaGenerator {
 
+    /**
+     * Default executor of the asynchronous methods, starting a new virtual thread per task
+     */
+    private static final Executor VIRTUAL_THREAD_EXECUTOR = Thread::startVirtualThread;
+
     protected AbstractCaptchaCipher captchaCipher;
     protected AbstractCaptchaRenderer renderer;
 
@@ -27,4 +46,208 @@ public abstract class AbstractCaptchaGenerator {
      * @return true if the validation was successful
      */
     public abstract boolean validate(final String token, final String userInput, final Serializable saltSource);
+
+    /**
+     * Generates a captcha and writes its image straight to the given stream, e.g. the body of a response, instead of
+     * returning it as byte array. The token is generated first, so nothing is written if it cannot be generated. The
+     * stream is not closed.
+     *
+     * @param solution    predefined string solution from which the image and the token are generated
+     * @param saltSource  Object used during creation of the captcha token to ensure authenticity
+     * @param imageOutput stream the encoded image is written to
+     * @return the token of the captcha
+     * @throws IOException if the image could not be encoded or written
+     */
+    public final String generateTo(final String solution, final Serializable saltSource,
+                                   final OutputStream imageOutput) throws IOException {
+        String token = captchaCipher.generateToken(solution, saltSource);
+        renderer.renderTo(solution, imageOutput);
+        return token;
+    }
+
+    /**
+     * Generates a captcha for every given entry on the common {@link ForkJoinPool}.
+     *
+     * @param requests solutions and salt sources to generate captchas for
+     * @return generated captchas in the order of the given entries
+     * @see #generateAll(List, ExecutorService)
+     */
+    public final List<Captcha> generateAll(final List<TokenGenerationRequest> requests) {
+        return generateAll(requests, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Generates a captcha for every given entry on the given executor. The images are rendered in one task per
+     * entry while the tokens are generated through
+     * {@link AbstractCaptchaCipher#generateTokens(List, ExecutorService)}. If the generation of a token or an image
+     * fails, the rendering tasks still pending are cancelled, so they do not keep occupying the executor.
+     *
+     * @param requests solutions and salt sources to generate captchas for
+     * @param executor executor running the rendering and token tasks, e.g. a {@link ForkJoinPool} or a virtual
+     *                 thread executor
+     * @return generated captchas in the order of the given entries
+     */
+    public final List<Captcha> generateAll(final List<TokenGenerationRequest> requests,
+                                           final ExecutorService executor) {
+        List<Future<byte[]>> images = new ArrayList<>(requests.size());
+        for (TokenGenerationRequest request : requests) {
+            images.add(executor.submit(() -> renderer.renderAndConvertToBytes(request.solution())));
+        }
+        try {
+            List<String> tokens = captchaCipher.generateTokens(requests, executor);
+            List<Captcha> captchas = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                captchas.add(new Captcha(tokens.get(i), getRenderedImage(images.get(i))));
+            }
+            return captchas;
+        }
+        catch (RuntimeException generationFailure) {
+            images.forEach(image -> image.cancel(false));
+            throw generationFailure;
+        }
+    }
+
+    /**
+     * Validates all given entries on the common {@link ForkJoinPool}.
+     *
+     * @param requests entries to validate
+     * @return BitSet with the bit at the index of every successfully validated entry set
+     * @see AbstractCaptchaCipher#validateAll(List, ExecutorService)
+     */
+    public final BitSet validateAll(final List<TokenValidationRequest> requests) {
+        return captchaCipher.validateAll(requests);
+    }
+
+    /**
+     * Validates all given entries on the given executor.
+     *
+     * @param requests entries to validate
+     * @param executor executor running the validation tasks
+     * @return BitSet with the bit at the index of every successfully validated entry set
+     * @see AbstractCaptchaCipher#validateAll(List, ExecutorService)
+     */
+    public final BitSet validateAll(final List<TokenValidationRequest> requests, final ExecutorService executor) {
+        return captchaCipher.validateAll(requests, executor);
+    }
+
+    /**
+     * Generates a captcha asynchronously, with the token and the image generated concurrently on a new virtual thread
+     * each.
+     *
+     * @param solution   predefined string solution from which the image and the token are generated
+     * @param saltSource Object used during creation of the captcha token to ensure authenticity
+     * @return future completed with the generated captcha
+     * @see #generateAsync(String, Serializable, Executor)
+     */
+    public final CompletableFuture<Captcha> generateAsync(final String solution, final Serializable saltSource) {
+        return generateAsync(solution, saltSource, VIRTUAL_THREAD_EXECUTOR);
+    }
+
+    /**
+     * Generates a captcha asynchronously on the given executor. The token and the image are generated in separate
+     * tasks running concurrently, so the captcha is complete after the slower of both instead of after their sum.
+     * <p>
+     * If either task fails or the returned future is cancelled or times out, the other task is cancelled as well. A
+     * task that has not started yet is skipped then, a running task completes, but its result is discarded.
+     *
+     * @param solution   predefined string solution from which the image and the token are generated
+     * @param saltSource Object used during creation of the captcha token to ensure authenticity
+     * @param executor   executor running the token and the image task
+     * @return future completed with the generated captcha
+     */
+    public final CompletableFuture<Captcha> generateAsync(final String solution, final Serializable saltSource,
+                                                          final Executor executor) {
+        CompletableFuture<String> token = CompletableFuture.supplyAsync(
+                () -> captchaCipher.generateToken(solution, saltSource), executor);
+        CompletableFuture<byte[]> image = CompletableFuture.supplyAsync(
+                () -> renderer.renderAndConvertToBytes(solution), executor);
+        CompletableFuture<Captcha> captcha = token.thenCombine(image, Captcha::new);
+        captcha.whenComplete((result, failure) -> {
+            if (failure != null) {
+                token.cancel(false);
+                image.cancel(false);
+            }
+        });
+        return captcha;
+    }
+
+    /**
+     * Generates a captcha asynchronously on the given executor, failing with a
+     * {@link java.util.concurrent.TimeoutException} if it is not complete within the given time.
+     *
+     * @param solution   predefined string solution from which the image and the token are generated
+     * @param saltSource Object used during creation of the captcha token to ensure authenticity
+     * @param executor   executor running the token and the image task
+     * @param timeout    time after which the generation is abandoned
+     * @return future completed with the generated captcha
+     * @see #generateAsync(String, Serializable, Executor)
+     */
+    public final CompletableFuture<Captcha> generateAsync(final String solution, final Serializable saltSource,
+                                                          final Executor executor, final Duration timeout) {
+        return generateAsync(solution, saltSource, executor).orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Validates the token asynchronously on a new virtual thread.
+     *
+     * @param token      token generated from a previous call to the generate method.
+     * @param userInput  answer given by the user read from the rendered image
+     * @param saltSource Object used during creation of the captcha token to ensure authenticity
+     * @return future completed with true if the validation was successful
+     * @see #validate(String, String, Serializable)
+     */
+    public final CompletableFuture<Boolean> validateAsync(final String token, final String userInput,
+                                                          final Serializable saltSource) {
+        return validateAsync(token, userInput, saltSource, VIRTUAL_THREAD_EXECUTOR);
+    }
+
+    /**
+     * Validates the token asynchronously on the given executor. If the returned future is cancelled before the
+     * validation started, the validation is skipped.
+     *
+     * @param token      token generated from a previous call to the generate method.
+     * @param userInput  answer given by the user read from the rendered image
+     * @param saltSource Object used during creation of the captcha token to ensure authenticity
+     * @param executor   executor running the validation
+     * @return future completed with true if the validation was successful
+     * @see #validate(String, String, Serializable)
+     */
+    public final CompletableFuture<Boolean> validateAsync(final String token, final String userInput,
+                                                          final Serializable saltSource, final Executor executor) {
+        return CompletableFuture.supplyAsync(() -> validate(token, userInput, saltSource), executor);
+    }
+
+    /**
+     * Validates the token asynchronously on the given executor, failing with a
+     * {@link java.util.concurrent.TimeoutException} if the validation is not complete within the given time.
+     *
+     * @param token      token generated from a previous call to the generate method.
+     * @param userInput  answer given by the user read from the rendered image
+     * @param saltSource Object used during creation of the captcha token to ensure authenticity
+     * @param executor   executor running the validation
+     * @param timeout    time after which the validation is abandoned
+     * @return future completed with true if the validation was successful
+     */
+    public final CompletableFuture<Boolean> validateAsync(final String token, final String userInput,
+                                                          final Serializable saltSource, final Executor executor,
+                                                          final Duration timeout) {
+        return validateAsync(token, userInput, saltSource, executor).orTimeout(timeout.toNanos(),
+                TimeUnit.NANOSECONDS);
+    }
+
+    private static byte[] getRenderedImage(Future<byte[]> image) {
+        try {
+            return image.get();
+        }
+        catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new CaptchaRenderingException("Interrupted during batch rendering.", interruptedException);
+        }
+        catch (ExecutionException executionException) {
+            if (executionException.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new CaptchaRenderingException(executionException.getCause());
+        }
+    }
 }
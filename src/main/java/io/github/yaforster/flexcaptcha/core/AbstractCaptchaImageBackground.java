@@ -1,5 +1,7 @@
 package io.github.yaforster.flexcaptcha.core;
 
+import io.github.yaforster.flexcaptcha.util.AbstractRandomSource;
+
 import java.awt.image.BufferedImage;
 
 public abstract class AbstractCaptchaImageBackground {
@@ -11,4 +13,15 @@ public abstract class AbstractCaptchaImageBackground {
      */
     public abstract void drawBackground(final BufferedImage captchaImage);
 
+    /**
+     * Draws the background into the given {@link BufferedImage} of the captcha image, allowing the background to vary
+     * randomly between captchas. Delegates to {@link #drawBackground(BufferedImage)} by default.
+     *
+     * @param captchaImage {@link BufferedImage} to draw the background of.
+     * @param randomSource source of the random values of the renderer
+     */
+    public void drawBackground(final BufferedImage captchaImage, final AbstractRandomSource randomSource) {
+        drawBackground(captchaImage);
+    }
+
 }
@@ -0,0 +1,41 @@
+package io.github.yaforster.flexcaptcha.core;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Encodes the rendered captcha image into the bytes of an image file format.
+ *
+ * @author Yannick Forster
+ */
+public abstract class AbstractCaptchaImageEncoder {
+
+    /**
+     * @return informal name of the image file format written by this encoder, e.g. "JPG" or "PNG"
+     */
+    public abstract String getFormatName();
+
+    /**
+     * Writes the encoded image to the given stream. The stream is not closed.
+     *
+     * @param image  the rendered captcha image
+     * @param output stream the encoded image is written to
+     * @throws IOException if the image could not be encoded or written
+     */
+    public abstract void encode(final BufferedImage image, final OutputStream output) throws IOException;
+
+    /**
+     * Encodes the image into a new byte array. Writes into a {@link ByteArrayOutputStream} of default size by default.
+     *
+     * @param image the rendered captcha image
+     * @return the encoded image
+     * @throws IOException if the image could not be encoded
+     */
+    public byte[] encode(final BufferedImage image) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        encode(image, output);
+        return output.toByteArray();
+    }
+}
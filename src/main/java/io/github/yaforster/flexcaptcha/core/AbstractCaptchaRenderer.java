@@ -1,10 +1,16 @@
 package io.github.yaforster.flexcaptcha.core;
 
+import io.github.yaforster.flexcaptcha.impl.rendering.ImageIOCaptchaImageEncoder;
+import io.github.yaforster.flexcaptcha.util.AbstractRandomSource;
+import io.github.yaforster.flexcaptcha.util.FastRandomSource;
 import lombok.AllArgsConstructor;
 
 import java.awt.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
 
 @AllArgsConstructor
 public abstract class AbstractCaptchaRenderer {
@@ -13,6 +19,34 @@ public abstract class AbstractCaptchaRenderer {
     protected int pictureWidth;
     protected List<Color> availableTextColors;
     protected String imgFileFormat;
+    /**
+     * Source of the random values used for colors, angles and noise
+     */
+    protected AbstractRandomSource randomSource;
+    /**
+     * Encoder writing the rendered image in the image file format
+     */
+    protected AbstractCaptchaImageEncoder imageEncoder;
+
+    /**
+     * Creates a renderer drawing its random values from a {@link FastRandomSource}, as the rendering only needs visual
+     * randomness, and encoding its images through an {@link ImageIOCaptchaImageEncoder} for the given format with the
+     * default settings of the writer.
+     */
+    public AbstractCaptchaRenderer(int pictureHeight, int pictureWidth, List<Color> availableTextColors,
+                                   String imgFileFormat) {
+        this(pictureHeight, pictureWidth, availableTextColors, imgFileFormat, new FastRandomSource());
+    }
+
+    /**
+     * Creates a renderer encoding its images through an {@link ImageIOCaptchaImageEncoder} for the given format with
+     * the default settings of the writer.
+     */
+    protected AbstractCaptchaRenderer(int pictureHeight, int pictureWidth, List<Color> availableTextColors,
+                                      String imgFileFormat, AbstractRandomSource randomSource) {
+        this(pictureHeight, pictureWidth, availableTextColors, imgFileFormat, randomSource,
+                ImageIOCaptchaImageEncoder.builder().formatName(imgFileFormat).build());
+    }
 
     /**
      * Generates the visual representation of the captcha and return it as array of bytes.
@@ -23,6 +57,32 @@ public abstract class AbstractCaptchaRenderer {
      */
     public abstract byte[] renderAndConvertToBytes(final String textToRender);
 
+    /**
+     * Generates the visual representation of the captcha and writes it to the given stream, which is not closed.
+     * Writes the result of {@link #renderAndConvertToBytes(String)} by default.
+     *
+     * @param textToRender String respresentation of the captcha solution that should be visible in the rendering
+     *                     result.
+     * @param output       stream the encoded image is written to
+     * @throws IOException if the image could not be encoded or written
+     */
+    public void renderTo(final String textToRender, final OutputStream output) throws IOException {
+        output.write(renderAndConvertToBytes(textToRender));
+    }
+
+    /**
+     * Generates the visual representation of the captcha and writes it to the given channel, which is not closed.
+     *
+     * @param textToRender String respresentation of the captcha solution that should be visible in the rendering
+     *                     result.
+     * @param channel      channel the encoded image is written to
+     * @throws IOException if the image could not be encoded or written
+     * @see #renderTo(String, OutputStream)
+     */
+    public final void renderTo(final String textToRender, final WritableByteChannel channel) throws IOException {
+        renderTo(textToRender, Channels.newOutputStream(channel));
+    }
+
     /**
      * Picks a random color from the array of possible text colors
      *
@@ -30,11 +90,21 @@ public abstract class AbstractCaptchaRenderer {
      * @return Color object, picked randomly out of the textCols-Field array
      */
     protected final Color pickRandomColor(List<Color> colors) {
+        return pickRandomColor(colors, randomSource);
+    }
+
+    /**
+     * Picks a random color from the array of possible text colors
+     *
+     * @param colors       Color array from which to pick a random element.
+     * @param randomSource source to draw the random value from instead of the source of the renderer, e.g. the source
+     *                     of a single worker of a batch
+     * @return Color object, picked randomly out of the textCols-Field array
+     */
+    protected final Color pickRandomColor(List<Color> colors, AbstractRandomSource randomSource) {
         if (colors.size() == 1) {
             return colors.get(0);
         }
-        ThreadLocalRandom r = ThreadLocalRandom.current();
-        int i = r.nextInt(colors.size());
-        return colors.get(i);
+        return colors.get(randomSource.nextInt(colors.size()));
     }
 }
@@ -0,0 +1,19 @@
+package io.github.yaforster.flexcaptcha.core;
+
+/**
+ * Records the fingerprints of tokens that were already validated, so every token can only be validated once.
+ *
+ * @author Yannick Forster
+ */
+public abstract class AbstractReplayStore {
+
+    /**
+     * Records the fingerprint of a token as consumed.
+     *
+     * @param fingerprint    64 bit fingerprint identifying the token
+     * @param expirationTime time in milliseconds after which the token expires and the fingerprint may be forgotten,
+     *                       or {@link Long#MAX_VALUE} if the token does not expire
+     * @return true if the token was not consumed before, false if it is a replay or could not be recorded
+     */
+    public abstract boolean markConsumed(final long fingerprint, final long expirationTime);
+}
@@ -0,0 +1,20 @@
+package io.github.yaforster.flexcaptcha.core;
+
+import java.io.Serializable;
+
+/**
+ * Converts the salt source of a token into the bytes used for key derivation or authentication. Tokens can only be
+ * validated with an encoder producing the same bytes as the encoder used during their generation.
+ *
+ * @author Yannick Forster
+ */
+public abstract class AbstractSaltEncoder {
+
+    /**
+     * Encodes the given salt source into bytes.
+     *
+     * @param saltSource object to be used as salt
+     * @return byte array representing the salt source
+     */
+    public abstract byte[] encode(final Serializable saltSource);
+}
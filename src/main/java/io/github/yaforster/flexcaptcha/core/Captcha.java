@@ -1,5 +1,9 @@
 package io.github.yaforster.flexcaptcha.core;
 
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 
 /**
@@ -20,4 +24,51 @@ public record Captcha(String token, byte[] imgData) {
     public String getImgDataAsBase64() {
         return Base64.getEncoder().encodeToString(imgData);
     }
+
+    /**
+     * Writes the image data as base64 to the given stream, encoded in small blocks without creating the base64
+     * representation of the whole image. The stream is not closed.
+     *
+     * @param output stream the base64-encoded imgData is written to
+     * @throws IOException if writing to the stream fails
+     */
+    public void writeBase64To(final OutputStream output) throws IOException {
+        try (OutputStream base64Output = Base64.getEncoder().wrap(new NonClosingOutputStream(output))) {
+            base64Output.write(imgData);
+        }
+    }
+
+    /**
+     * Writes the image as data URI, e.g. for the src attribute of an img tag, to the given stream. The stream is not
+     * closed.
+     *
+     * @param output    stream the data URI is written to
+     * @param mediaType media type of the image, e.g. "image/jpeg"
+     * @throws IOException if writing to the stream fails
+     */
+    public void writeDataUriTo(final OutputStream output, final String mediaType) throws IOException {
+        output.write(("data:" + mediaType + ";base64,").getBytes(StandardCharsets.US_ASCII));
+        writeBase64To(output);
+    }
+
+    /**
+     * Passes writes through to the wrapped stream, but only flushes it when closed, so the base64 encoder can be
+     * closed to write its final block without closing the stream of the caller.
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        private NonClosingOutputStream(OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
 }
@@ -0,0 +1,284 @@
+package io.github.yaforster.flexcaptcha.core;
+
+import io.github.yaforster.flexcaptcha.util.AbstractTextGenerator;
+import io.github.yaforster.flexcaptcha.util.TextGenerator;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of pre-rendered captchas, refilled by background workers, so rendering and encoding the images is taken off the
+ * request path. Only the token is generated when a captcha is taken from the pool, as it depends on the salt source of
+ * the caller. If the pool is empty, e.g. during a burst of requests, the captcha is generated inline as without a
+ * pool.
+ * <p>
+ * The workers wait until the depth of the pool has fallen to the low watermark, and then render captchas for random
+ * solutions until the high watermark is reached again. Every pre-rendered captcha is handed out only once.
+ *
+ * @author Yannick Forster
+ */
+public class CaptchaPool implements Closeable {
+
+    private static final int DEFAULT_HIGH_WATERMARK = 256;
+    private static final int DEFAULT_SOLUTION_LENGTH = 6;
+    private static final long DEFAULT_FAILURE_BACKOFF_MILLIS = 1000L;
+
+    private final AbstractCaptchaGenerator generator;
+    private final AbstractTextGenerator textGenerator;
+    /**
+     * Length of the random solutions of the captchas
+     */
+    @Getter
+    private final int solutionLength;
+    /**
+     * Maximum number of pre-rendered captchas, up to which the workers refill the pool
+     */
+    @Getter
+    private final int highWatermark;
+    /**
+     * Depth of the pool at or below which the workers start refilling
+     */
+    @Getter
+    private final int lowWatermark;
+    /**
+     * Time a worker waits after a failed rendering before it renders again
+     */
+    @Getter
+    private final long failureBackoffMillis;
+    private final BlockingQueue<PreRenderedCaptcha> captchas;
+    private final List<Thread> workers;
+    /**
+     * Monitor the workers wait on until the pool needs refilling
+     */
+    private final Object refillSignal = new Object();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder renderedCount = new LongAdder();
+    private final LongAdder renderingNanos = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * @param generator            generator whose cipher mints the tokens and whose renderer renders the images
+     * @param textGenerator        generator of the random solutions. Defaults to a {@link TextGenerator} with the
+     *                             default character base.
+     * @param solutionLength       length of the random solutions. Defaults to 6.
+     * @param highWatermark        maximum number of pre-rendered captchas. Defaults to 256.
+     * @param lowWatermark         depth at or below which the pool is refilled. Defaults to a quarter of the high
+     *                             watermark.
+     * @param workerCount          number of background threads rendering captchas. Defaults to 1.
+     * @param failureBackoffMillis time a worker waits after a failed rendering before it renders again, so a
+     *                             persistently failing renderer does not keep the workers busy. Defaults to 1000.
+     */
+    @Builder
+    private CaptchaPool(AbstractCaptchaGenerator generator, AbstractTextGenerator textGenerator, int solutionLength,
+                        int highWatermark, Integer lowWatermark, int workerCount, long failureBackoffMillis) {
+        this.generator = Objects.requireNonNull(generator, "A generator is required for the captcha pool.");
+        this.textGenerator = Optional.ofNullable(textGenerator).orElseGet(() -> new TextGenerator(null));
+        this.solutionLength = solutionLength > 0 ? solutionLength : DEFAULT_SOLUTION_LENGTH;
+        this.highWatermark = highWatermark > 0 ? highWatermark : DEFAULT_HIGH_WATERMARK;
+        this.lowWatermark = getLowWatermarkOrDefault(lowWatermark, this.highWatermark);
+        this.failureBackoffMillis = failureBackoffMillis > 0 ? failureBackoffMillis : DEFAULT_FAILURE_BACKOFF_MILLIS;
+        this.captchas = new ArrayBlockingQueue<>(this.highWatermark);
+        this.workers = startWorkers(workerCount > 0 ? workerCount : 1);
+    }
+
+    private static int getLowWatermarkOrDefault(Integer lowWatermark, int highWatermark) {
+        int low = Optional.ofNullable(lowWatermark).orElse(highWatermark / 4);
+        if (low < 0 || low >= highWatermark) {
+            throw new IllegalArgumentException("The low watermark must be between 0 and the high watermark.");
+        }
+        return low;
+    }
+
+    private List<Thread> startWorkers(int workerCount) {
+        List<Thread> threads = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            Thread thread = new Thread(this::refillUntilClosed, "flexcaptcha-captcha-pool-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        return threads;
+    }
+
+    /**
+     * Takes a pre-rendered captcha from the pool and generates its token for the given salt source, or generates a
+     * captcha inline if the pool is empty.
+     *
+     * @param saltSource Object used during creation of the captcha token to ensure authenticity
+     * @return Captcha object containing the image data of the visual captcha and the token
+     */
+    public Captcha generate(final Serializable saltSource) {
+        PreRenderedCaptcha preRendered = captchas.poll();
+        if (captchas.size() <= lowWatermark) {
+            synchronized (refillSignal) {
+                refillSignal.notifyAll();
+            }
+        }
+        if (preRendered == null) {
+            missCount.increment();
+            return generator.generate(textGenerator.generate(solutionLength), saltSource);
+        }
+        hitCount.increment();
+        String token = generator.captchaCipher.generateToken(preRendered.solution(), saltSource);
+        return new Captcha(token, preRendered.imgData());
+    }
+
+    /**
+     * Validates the token of a captcha from this pool.
+     *
+     * @param token      token of a captcha generated by this pool
+     * @param userInput  answer given by the user read from the rendered image
+     * @param saltSource Object used during creation of the captcha token to ensure authenticity
+     * @return true if the validation was successful
+     * @see AbstractCaptchaGenerator#validate(String, String, Serializable)
+     */
+    public boolean validate(final String token, final String userInput, final Serializable saltSource) {
+        return generator.validate(token, userInput, saltSource);
+    }
+
+    /**
+     * Waits for the pool to need refilling, then renders captchas until the high watermark is reached. After a failed
+     * rendering, the worker backs off before rendering again.
+     */
+    private void refillUntilClosed() {
+        try {
+            while (!closed) {
+                synchronized (refillSignal) {
+                    while (!closed && captchas.size() > lowWatermark) {
+                        refillSignal.wait();
+                    }
+                }
+                while (!closed && captchas.size() < highWatermark) {
+                    if (!renderIntoPool()) {
+                        awaitFailureBackoff();
+                    }
+                }
+            }
+        }
+        catch (InterruptedException interruptedException) {
+            // interrupted by close()
+        }
+    }
+
+    /**
+     * Waits for the failure backoff to pass. Refill signals do not end the wait early, so a failing renderer is not
+     * retried for every captcha taken from the pool.
+     */
+    private void awaitFailureBackoff() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(failureBackoffMillis);
+        synchronized (refillSignal) {
+            long remainingNanos;
+            while (!closed && (remainingNanos = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(refillSignal, remainingNanos);
+            }
+        }
+    }
+
+    /**
+     * @return false if the rendering failed, so the worker backs off instead of retrying at once
+     */
+    private boolean renderIntoPool() {
+        long start = System.nanoTime();
+        try {
+            String solution = textGenerator.generate(solutionLength);
+            byte[] imgData = generator.renderer.renderAndConvertToBytes(solution);
+            renderingNanos.add(System.nanoTime() - start);
+            renderedCount.increment();
+            if (!closed) {
+                captchas.offer(new PreRenderedCaptcha(solution, imgData));
+            }
+            return true;
+        }
+        catch (RuntimeException renderingException) {
+            failureCount.increment();
+            return false;
+        }
+    }
+
+    /**
+     * @return number of pre-rendered captchas currently in the pool
+     */
+    public int getDepth() {
+        return captchas.size();
+    }
+
+    /**
+     * @return number of captchas taken from the pool
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return number of captchas generated inline because the pool was empty
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return share of the generated captchas that were taken from the pool, 0 if none were generated yet
+     */
+    public double getHitRatio() {
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return total == 0 ? 0d : (double) hits / total;
+    }
+
+    /**
+     * @return number of captchas rendered by the workers
+     */
+    public long getRenderedCount() {
+        return renderedCount.sum();
+    }
+
+    /**
+     * @return number of renderings by the workers that failed
+     */
+    public long getFailureCount() {
+        return failureCount.sum();
+    }
+
+    /**
+     * @return captchas rendered per second while refilling, by all workers together, 0 if none were rendered yet
+     */
+    public double getRefillRate() {
+        long nanos = renderingNanos.sum();
+        return nanos == 0 ? 0d : renderedCount.sum() * workers.size() * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    /**
+     * Stops the workers, waiting for renderings in progress to finish, and discards the pre-rendered captchas
+     */
+    @Override
+    public void close() {
+        closed = true;
+        workers.forEach(Thread::interrupt);
+        try {
+            for (Thread worker : workers) {
+                if (worker != Thread.currentThread()) {
+                    worker.join();
+                }
+            }
+        }
+        catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        captchas.clear();
+    }
+
+    private record PreRenderedCaptcha(String solution, byte[] imgData) {
+    }
+}
@@ -0,0 +1,13 @@
+package io.github.yaforster.flexcaptcha.core;
+
+import java.io.Serializable;
+
+/**
+ * Single entry of a batch generation.
+ *
+ * @param solution   the actual captcha solution
+ * @param saltSource the salt source the token is bound to
+ * @author Yannick Forster
+ */
+public record TokenGenerationRequest(String solution, Serializable saltSource) {
+}
@@ -0,0 +1,42 @@
+package io.github.yaforster.flexcaptcha.core;
+
+/**
+ * Enum representing the reasons for which a token is rejected during validation. Every cipher counts its rejections
+ * per reason, see {@link AbstractCaptchaCipher#getRejectionCount(TokenRejectionReason)}. A validation rejected for
+ * any of these reasons returns {@code false} instead of throwing.
+ *
+ * @author Yannick Forster
+ */
+public enum TokenRejectionReason {
+
+    /**
+     * The token is not valid Base64
+     */
+    MALFORMED_BASE64,
+    /**
+     * The length of the token does not match any token layout or exceeds the configured maximum
+     */
+    MALFORMED_LENGTH,
+    /**
+     * The token is of a format the cipher is not configured to accept
+     */
+    UNSUPPORTED_FORMAT,
+    /**
+     * The expiration time of the token has passed
+     */
+    EXPIRED,
+    /**
+     * The token was not generated with the key and salt source of the validation, or was altered
+     */
+    AUTHENTICATION_FAILED,
+    /**
+     * The token was consumed before, or the replay store could not record it
+     */
+    REPLAYED,
+    /**
+     * The token is authentic, but the answer does not match its solution. Ciphers that authenticate the solution
+     * itself, like the HMAC cipher, report altered tokens under this reason as well.
+     */
+    WRONG_ANSWER
+
+}
@@ -0,0 +1,14 @@
+package io.github.yaforster.flexcaptcha.core;
+
+import java.io.Serializable;
+
+/**
+ * Single entry of a batch validation.
+ *
+ * @param token      the returned token generated with the original captcha
+ * @param saltSource the salt source used to generate the original captcha
+ * @param answer     the given answer to be validated
+ * @author Yannick Forster
+ */
+public record TokenValidationRequest(String token, Serializable saltSource, String answer) {
+}
@@ -1,24 +1,107 @@
 package io.github.yaforster.flexcaptcha.impl.rendering;
 
+import io.github.yaforster.flexcaptcha.util.AbstractRandomSource;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 
+/**
+ * Background drawing an image over the background color. The image is composed over the background color once, when
+ * the background is created, and copied row by row into the pixels of the captcha image on every render, so the type of
+ * the given image has no influence on the rendering time.
+ * <p>
+ * Images larger than the captcha can be copied from a random offset for every captcha, so each captcha shows a
+ * different window of the image at no additional cost.
+ */
 @Getter
 public class BackgroundImage extends FlatColorBackground {
 
     private final BufferedImage backgroundImage;
+    /**
+     * If true, each captcha shows a window of the image at a random offset
+     */
+    private final boolean randomOffset;
+    /**
+     * The image composed over the background color, as {@link BufferedImage#TYPE_INT_RGB}
+     */
+    @Getter(AccessLevel.NONE)
+    private final BufferedImage textureImage;
+    @Getter(AccessLevel.NONE)
+    private final int[] texture;
 
     public BackgroundImage(Color backgroundImageColor, BufferedImage backgroundImage) {
+        this(backgroundImageColor, backgroundImage, false);
+    }
+
+    /**
+     * @param backgroundImageColor color drawn where the image is transparent or does not reach
+     * @param backgroundImage      image drawn over the background color
+     * @param randomOffset         if true, images larger than the captcha are drawn from a random offset, so each
+     *                             captcha shows a different window of the image
+     */
+    public BackgroundImage(Color backgroundImageColor, BufferedImage backgroundImage, boolean randomOffset) {
         super(backgroundImageColor);
         this.backgroundImage = backgroundImage;
+        this.randomOffset = randomOffset;
+        this.textureImage = composeTexture(backgroundImageColor, backgroundImage);
+        this.texture = ((DataBufferInt) textureImage.getRaster().getDataBuffer()).getData();
+    }
+
+    private static BufferedImage composeTexture(Color backgroundImageColor, BufferedImage backgroundImage) {
+        BufferedImage texture = new BufferedImage(backgroundImage.getWidth(), backgroundImage.getHeight(),
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D textureGraphic = texture.createGraphics();
+        try {
+            textureGraphic.setColor(backgroundImageColor);
+            textureGraphic.fillRect(0, 0, texture.getWidth(), texture.getHeight());
+            textureGraphic.drawImage(backgroundImage, null, 0, 0);
+        }
+        finally {
+            textureGraphic.dispose();
+        }
+        return texture;
     }
 
     @Override
     public void drawBackground(final BufferedImage captchaImage) {
-        super.drawBackground(captchaImage);
-        Graphics2D captchaImageGraphic = captchaImage.createGraphics();
-        captchaImageGraphic.drawImage(backgroundImage, null, 0, 0);
+        drawBackground(captchaImage, null);
+    }
+
+    @Override
+    public void drawBackground(final BufferedImage captchaImage, final AbstractRandomSource randomSource) {
+        int width = captchaImage.getWidth();
+        int height = captchaImage.getHeight();
+        int textureWidth = textureImage.getWidth();
+        int textureHeight = textureImage.getHeight();
+        int offsetX = 0;
+        int offsetY = 0;
+        if (randomOffset && randomSource != null) {
+            offsetX = randomSource.nextInt(Math.max(1, textureWidth - width + 1));
+            offsetY = randomSource.nextInt(Math.max(1, textureHeight - height + 1));
+        }
+        int copyWidth = Math.min(width, textureWidth - offsetX);
+        int copyHeight = Math.min(height, textureHeight - offsetY);
+        if (copyWidth < width || copyHeight < height) {
+            super.drawBackground(captchaImage);
+        }
+        int[] pixels = getIntRgbPixels(captchaImage);
+        if (pixels != null) {
+            for (int row = 0; row < copyHeight; row++) {
+                System.arraycopy(texture, (offsetY + row) * textureWidth + offsetX, pixels, row * width, copyWidth);
+            }
+        }
+        else {
+            Graphics2D captchaImageGraphic = captchaImage.createGraphics();
+            try {
+                captchaImageGraphic.drawImage(textureImage.getSubimage(offsetX, offsetY, copyWidth, copyHeight), 0, 0,
+                        null);
+            }
+            finally {
+                captchaImageGraphic.dispose();
+            }
+        }
     }
 }
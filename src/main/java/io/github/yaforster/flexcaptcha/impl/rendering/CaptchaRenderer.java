@@ -2,20 +2,33 @@ package io.github.yaforster.flexcaptcha.impl.rendering;
 
 import com.jhlabs.image.AbstractBufferedImageOp;
 import io.github.yaforster.flexcaptcha.core.AbstractCaptchaImageBackground;
+import io.github.yaforster.flexcaptcha.core.AbstractCaptchaImageEncoder;
 import io.github.yaforster.flexcaptcha.core.AbstractCaptchaRenderer;
+import io.github.yaforster.flexcaptcha.util.AbstractRandomSource;
+import io.github.yaforster.flexcaptcha.util.FastRandomSource;
+import io.github.yaforster.flexcaptcha.util.InstancePool;
 import lombok.Builder;
 import org.apache.commons.lang3.StringUtils;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
 import java.io.IOException;
-import java.security.SecureRandom;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
 
 public class CaptchaRenderer extends AbstractCaptchaRenderer {
@@ -32,6 +45,14 @@ public class CaptchaRenderer extends AbstractCaptchaRenderer {
      */
     private static final double DEFAULT_MAX_LETTER_ROTATION_ANGLE = 0.35d;
     private static final String DEFAULT_FONT = "Verdana";
+    /**
+     * Texts up to this length have their {@link TextRenderingData} cached
+     */
+    private static final int MAXIMUM_CACHED_TEXT_LENGTH = 64;
+    /**
+     * Render contexts kept for virtual threads, each holding about four bytes per pixel of the image
+     */
+    private static final int MAXIMUM_SHARED_RENDER_CONTEXTS = 16;
     /**
      * Defines the maximum angle that can be used to rotate a single character in the captcha
      */
@@ -44,6 +65,10 @@ public class CaptchaRenderer extends AbstractCaptchaRenderer {
      * List of operations that will be applied to the image during rendering.
      */
     private final List<AbstractBufferedImageOp> imageOperationsList;
+    /**
+     * Splits the image operations into bands filtered in parallel, or null if they are applied on the calling thread
+     */
+    private final FilterTiling filterTiling;
     /**
      * Settings for how the Background of the Captcha is supposed to be rendered.
      */
@@ -52,18 +77,111 @@ public class CaptchaRenderer extends AbstractCaptchaRenderer {
      * Settings for the noise added to the image.
      */
     private final NoiseSettings noiseSettings;
+    /**
+     * Engine drawing the noise of the noise settings, or null if no noise is drawn
+     */
+    private final NoiseEngine noiseEngine;
+    /**
+     * Way the characters of the text are drawn
+     */
+    private final TextRenderingMode textRenderingMode;
+    /**
+     * Palette of the images in the {@link ColorMode#INDEXED} mode, or null if the images are rendered as RGB
+     */
+    private final IndexColorModel palette;
+    /**
+     * Font of the text, resolved once for the font name and the picture height
+     */
+    private final Font textFont;
+    private final FontMetrics textFontMetrics;
+    /**
+     * Outlines of the text font in the {@link TextRenderingMode#OUTLINE} mode, otherwise null
+     */
+    private final GlyphOutlines glyphOutlines;
+    /**
+     * Shared glyph atlas of the text font in the {@link TextRenderingMode#GLYPH_ATLAS} mode, otherwise null
+     */
+    private final GlyphAtlas glyphAtlas;
+    /**
+     * Layout of the text per text length, as it only depends on the font, the picture size and the text length
+     */
+    private final Map<Integer, TextRenderingData> textRenderingDataByLength = new ConcurrentHashMap<>();
+    /**
+     * Render contexts of single renders, kept per platform thread or, for virtual threads, in a bounded shared queue
+     */
+    private final InstancePool<RenderContext> renderContexts = new InstancePool<>(MAXIMUM_SHARED_RENDER_CONTEXTS);
 
     @Builder
     public CaptchaRenderer(int pictureHeight, int pictureWidth, List<Color> availableTextColors, String imgFileFormat
             , Double maximumLetterRotationAngle, String fontName, List<AbstractBufferedImageOp> imageOperationsList,
-                           AbstractCaptchaImageBackground imageBackground, NoiseSettings noiseSettings) {
+                           AbstractCaptchaImageBackground imageBackground, NoiseSettings noiseSettings,
+                           AbstractRandomSource randomSource, TextRenderingMode textRenderingMode,
+                           FilterTiling filterTiling, AbstractCaptchaImageEncoder imageEncoder,
+                           ColorMode colorMode) {
+        this(pictureHeight, pictureWidth, availableTextColors, maximumLetterRotationAngle, fontName,
+                imageOperationsList, imageBackground, noiseSettings, randomSource, textRenderingMode, filterTiling,
+                getImageEncoderOrDefault(imageEncoder, imgFileFormat), colorMode);
+    }
+
+    private CaptchaRenderer(int pictureHeight, int pictureWidth, List<Color> availableTextColors,
+                            Double maximumLetterRotationAngle, String fontName,
+                            List<AbstractBufferedImageOp> imageOperationsList,
+                            AbstractCaptchaImageBackground imageBackground, NoiseSettings noiseSettings,
+                            AbstractRandomSource randomSource, TextRenderingMode textRenderingMode,
+                            FilterTiling filterTiling, AbstractCaptchaImageEncoder imageEncoder,
+                            ColorMode colorMode) {
         super(getPictureHeightOrDefault(pictureHeight), getPictureWidthOrDefault(pictureWidth),
-                getAvailableTextColorsOrDefault(availableTextColors), getImageFileFormatOrDefault(imgFileFormat));
+                getAvailableTextColorsOrDefault(availableTextColors), imageEncoder.getFormatName(),
+                getRandomSourceOrDefault(randomSource), imageEncoder);
         this.maximumLetterRotationAngle = getMaximumLetterRotationAngleOrDefault(maximumLetterRotationAngle);
         this.fontName = getFontNameOrDefault(fontName);
         this.imageOperationsList = getImageOperationsListOrDefault(imageOperationsList);
+        this.filterTiling = filterTiling;
         this.imageBackground = getImageBackgroundOrDefault(imageBackground);
         this.noiseSettings = getNoiseSettingsOrDefault(noiseSettings);
+        this.noiseEngine = this.noiseSettings != null ? new NoiseEngine(this.noiseSettings) : null;
+        this.textRenderingMode = Optional.ofNullable(textRenderingMode).orElse(TextRenderingMode.JAVA2D);
+        this.textFont = new Font(this.fontName, Font.BOLD, (int) (this.pictureHeight / 2.5));
+        this.textFontMetrics = measureFont(textFont);
+        this.glyphOutlines = this.textRenderingMode == TextRenderingMode.OUTLINE
+                ? GlyphOutlines.forFont(textFont, textFontMetrics) : null;
+        this.glyphAtlas = this.textRenderingMode == TextRenderingMode.GLYPH_ATLAS
+                ? GlyphAtlas.forSettings(textFont, textFontMetrics, getCharDim(), this.maximumLetterRotationAngle)
+                : null;
+        this.palette = Optional.ofNullable(colorMode).orElse(ColorMode.RGB) == ColorMode.INDEXED ? createPalette()
+                : null;
+    }
+
+    /**
+     * Creates the palette of the {@link ColorMode#INDEXED} mode from the background, noise and text colors.
+     */
+    private IndexColorModel createPalette() {
+        if (!(imageBackground instanceof FlatColorBackground flatColorBackground)
+                || imageBackground instanceof BackgroundImage || !imageOperationsList.isEmpty()) {
+            throw new IllegalArgumentException("The indexed color mode requires a flat color background and no image "
+                    + "operations.");
+        }
+        List<Color> colors = new ArrayList<>();
+        colors.add(flatColorBackground.getBackgroundColor());
+        if (noiseSettings != null) {
+            colors.add(noiseSettings.distortionsColor().brighter());
+            colors.add(noiseSettings.distortionsColor().darker());
+        }
+        colors.addAll(availableTextColors);
+        return IndexedRaster.createPalette(colors);
+    }
+
+    /**
+     * Gets the metrics of the font as they apply to the images of the renderer
+     */
+    private static FontMetrics measureFont(Font font) {
+        Graphics2D graphic = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+        try {
+            return graphic.getFontMetrics(font);
+        }
+        finally {
+            graphic.dispose();
+        }
     }
 
     /**
@@ -85,8 +203,18 @@ public class CaptchaRenderer extends AbstractCaptchaRenderer {
                 Collections.singletonList(Color.BLACK) : availableTextColors;
     }
 
-    private static String getImageFileFormatOrDefault(String imgFileFormat) {
-        return StringUtils.isBlank(imgFileFormat) ? DEFAULT_IMAGE_FORMAT : imgFileFormat;
+    /**
+     * Uses an {@link ImageIOCaptchaImageEncoder} for the given format with the default settings of the writer, if no
+     * encoder is given. The format is ignored otherwise, as the encoder determines the format.
+     */
+    private static AbstractCaptchaImageEncoder getImageEncoderOrDefault(AbstractCaptchaImageEncoder imageEncoder,
+                                                                        String imgFileFormat) {
+        if (imageEncoder != null) {
+            return imageEncoder;
+        }
+        return ImageIOCaptchaImageEncoder.builder()
+                .formatName(StringUtils.isBlank(imgFileFormat) ? DEFAULT_IMAGE_FORMAT : imgFileFormat)
+                .build();
     }
 
     private static Double getMaximumLetterRotationAngleOrDefault(Double maxrotateAngle) {
@@ -105,6 +233,13 @@ public class CaptchaRenderer extends AbstractCaptchaRenderer {
         return Optional.ofNullable(imageBackground).orElse(DEFAULT_BACKGROUND);
     }
 
+    /**
+     * Uses a {@link FastRandomSource} by default, as the rendering only needs visual randomness
+     */
+    private static AbstractRandomSource getRandomSourceOrDefault(AbstractRandomSource randomSource) {
+        return Optional.ofNullable(randomSource).orElseGet(FastRandomSource::new);
+    }
+
     /**
      * Sets a clean NoiseSetting that will not produce any noise when rendered if the given noiseSetting is null or
      * contains no color.
@@ -125,42 +260,148 @@ public class CaptchaRenderer extends AbstractCaptchaRenderer {
         return CaptchaRenderer.builder().build();
     }
 
+    /**
+     * Renders through a pooled {@link RenderContext}, so the image, its graphics and the output buffer are reused.
+     */
     @Override
     public final byte[] renderAndConvertToBytes(String textToRender) {
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-            BufferedImage image = new BufferedImage(pictureWidth, pictureHeight, BufferedImage.TYPE_INT_RGB);
-            Graphics2D graphic = image.createGraphics();
-            imageBackground.drawBackground(image);
-            if (noiseSettings != null) {
-                drawDistortions(graphic);
-            }
-            drawText(textToRender, image);
-            graphic.dispose();
-            applyFilters(image);
-            ImageIO.write(image, imgFileFormat, bos);
-            return bos.toByteArray();
+        RenderContext context = acquireRenderContext();
+        try {
+            draw(textToRender, context);
+            return context.encode(imageEncoder);
         }
         catch (IOException e) {
             throw new CaptchaRenderingException(e);
         }
+        finally {
+            renderContexts.release(context);
+        }
     }
 
     /**
-     * Draws distortions onto the given Graphics2D object in the shape of randomly
-     * generated rectangles and dots to help obscure the text in the captcha image
+     * Encodes the image straight into the output, without buffering the encoded image.
+     */
+    @Override
+    public final void renderTo(String textToRender, OutputStream output) throws IOException {
+        RenderContext context = acquireRenderContext();
+        try {
+            imageEncoder.encode(draw(textToRender, context), output);
+        }
+        finally {
+            renderContexts.release(context);
+        }
+    }
+
+    /**
+     * Takes an idle render context drawing from the random source of the renderer out of the pool, or creates one.
+     * Contexts the pool has no room for are left to the garbage collector, as the graphics of a buffered image hold no
+     * native resources.
+     */
+    private RenderContext acquireRenderContext() {
+        RenderContext context = renderContexts.poll();
+        return context != null ? context : new RenderContext(createImage(), randomSource);
+    }
+
+    /**
+     * Renders all texts on the common {@link ForkJoinPool}, with one worker per thread of the pool.
+     *
+     * @param texts texts to render
+     * @return the encoded images in the order of the texts
+     * @see #renderBatch(List, ExecutorService, int)
+     */
+    public final List<byte[]> renderBatch(List<String> texts) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        return renderBatch(texts, pool, pool.getParallelism());
+    }
+
+    /**
+     * Renders all texts with the given number of workers running on the executor. Every worker creates a render
+     * context of its own, holding the image, its graphics and the output buffer, and reuses it for all texts it
+     * renders. The workers take the next text to render from a shared counter,
+     * so a slow worker does not hold up the batch, and draw their random values from their own
+     * {@link AbstractRandomSource#split()} of the random source of the renderer.
+     * <p>
+     * If a text fails to render, the workers stop taking further texts and the failure is thrown.
      *
-     * @param graphic the Graphics2D object onto which the distortions are to be
-     *                drawn
-     */
-    private void drawDistortions(Graphics2D graphic) {
-        int lineCount = (pictureWidth * noiseSettings.noiseIntensity()) / 100;
-        int dotCount = ((pictureHeight * pictureWidth) * noiseSettings.noiseIntensity()) / 100;
-        for (int i = 0; i < lineCount; i++) {
-            drawRectangleNoise(graphic);
+     * @param texts       texts to render
+     * @param executor    executor running the workers, e.g. a {@link ForkJoinPool} or a virtual thread executor
+     * @param workerCount number of workers, usually the number of threads of the executor
+     * @return the encoded images in the order of the texts
+     */
+    public final List<byte[]> renderBatch(List<String> texts, ExecutorService executor, int workerCount) {
+        byte[][] images = new byte[texts.size()][];
+        AtomicInteger nextIndex = new AtomicInteger();
+        int workers = Math.max(1, Math.min(workerCount, texts.size()));
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            AbstractRandomSource workerRandomSource = randomSource.split();
+            futures.add(executor.submit(() -> renderBatchPart(texts, images, nextIndex, workerRandomSource)));
         }
-        for (int j = 0; j < dotCount; j++) {
-            drawLineNoise(graphic);
+        futures.forEach(CaptchaRenderer::awaitBatchPart);
+        return Arrays.asList(images);
+    }
+
+    /**
+     * Renders texts of the batch through a render context of its own until no texts are left.
+     */
+    private void renderBatchPart(List<String> texts, byte[][] images, AtomicInteger nextIndex,
+                                 AbstractRandomSource workerRandomSource) {
+        try (RenderContext context = new RenderContext(createImage(), workerRandomSource)) {
+            for (int i = nextIndex.getAndIncrement(); i < texts.size(); i = nextIndex.getAndIncrement()) {
+                draw(texts.get(i), context);
+                images[i] = context.encode(imageEncoder);
+            }
         }
+        catch (IOException | RuntimeException renderingException) {
+            nextIndex.set(texts.size());
+            if (renderingException instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new CaptchaRenderingException(renderingException);
+        }
+    }
+
+    private static void awaitBatchPart(Future<?> batchPart) {
+        try {
+            batchPart.get();
+        }
+        catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new CaptchaRenderingException("Interrupted during batch rendering.", interruptedException);
+        }
+        catch (ExecutionException executionException) {
+            if (executionException.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new CaptchaRenderingException(executionException.getCause());
+        }
+    }
+
+    /**
+     * @return new image of the size of the captcha, with the palette in the {@link ColorMode#INDEXED} mode
+     */
+    private BufferedImage createImage() {
+        return palette == null
+                ? new BufferedImage(pictureWidth, pictureHeight, BufferedImage.TYPE_INT_RGB)
+                : new BufferedImage(pictureWidth, pictureHeight, BufferedImage.TYPE_BYTE_INDEXED, palette);
+    }
+
+    /**
+     * Clears the image of the context, draws background, noise and text into it and applies the filters.
+     *
+     * @param textToRender string containing the text to write
+     * @param context      context holding the image and the random source
+     * @return the rendered, not yet encoded image of the context
+     */
+    private BufferedImage draw(String textToRender, RenderContext context) {
+        BufferedImage image = context.clearImage();
+        imageBackground.drawBackground(image, context.getRandomSource());
+        if (noiseEngine != null) {
+            noiseEngine.drawNoise(image, context.getGraphic(), context.getRandomSource());
+        }
+        drawText(textToRender, image, context);
+        applyFilters(image);
+        return image;
     }
 
     /**
@@ -169,115 +410,209 @@ public class CaptchaRenderer extends AbstractCaptchaRenderer {
      *
      * @param textToRender string containing the text to write
      * @param image        the image on which to draw the text
+     * @param context      context holding the graphics of the image and the source of the angles and colors of the
+     *                     characters
      */
-    private void drawText(String textToRender, BufferedImage image) {
+    private void drawText(String textToRender, BufferedImage image, RenderContext context) {
+        AbstractRandomSource randomSource = context.getRandomSource();
         int chars = textToRender.length();
-        TextRenderingData textRenderingData = buildTextRenderingData(image, chars);
+        TextRenderingData textRenderingData = getTextRenderingData(chars);
+        double[] angles = new double[chars];
+        randomSource.nextDoubles(angles);
+        if (glyphAtlas != null) {
+            drawTextFromAtlas(textToRender, image, textRenderingData, angles, randomSource);
+            return;
+        }
+        if (glyphOutlines != null) {
+            drawTextFromOutlines(textToRender, image, textRenderingData, angles, randomSource);
+            return;
+        }
         IntStream.range(0, chars).boxed().forEachOrdered(i -> {
             char charToDraw = textToRender.charAt(i);
-            drawCharacter(image, textRenderingData, i, charToDraw);
+            drawCharacter(image, context, textRenderingData, i, charToDraw,
+                    getAngleWithinMaximumBounds(angles[i]));
         });
     }
 
     /**
-     * Applies the stored operations in imageOperationsList to the image.
+     * Copies each character of the text from the shared {@link GlyphAtlas}, at the quantised angle nearest to its
+     * random angle.
+     *
+     * @param textToRender string containing the text to write
+     * @param image        the image on which to draw the text
+     * @param tRD          text rendering data of the image
+     * @param angles       random value per character, from which its angle is derived
+     * @param randomSource source of the colors of the characters
+     */
+    private void drawTextFromAtlas(String textToRender, BufferedImage image, TextRenderingData tRD,
+                                   double[] angles, AbstractRandomSource randomSource) {
+        int charDim = tRD.charDim();
+        int y = (image.getHeight() - charDim) / 2;
+        for (int i = 0; i < textToRender.length(); i++) {
+            int x = tRD.characterPositions()[i];
+            glyphAtlas.drawGlyph(image, textToRender.charAt(i), GlyphAtlas.getAngleIndex(angles[i]), x, y,
+                    pickRandomColor(availableTextColors, randomSource));
+        }
+    }
+
+    /**
+     * Fills the rotated outline of each character into the pixels of the image, without going through Java2D.
+     *
+     * @param textToRender string containing the text to write
+     * @param image        the image on which to draw the text
+     * @param tRD          text rendering data of the image
+     * @param angles       random value per character, from which its angle is derived
+     * @param randomSource source of the colors of the characters
+     */
+    private void drawTextFromOutlines(String textToRender, BufferedImage image, TextRenderingData tRD,
+                                      double[] angles, AbstractRandomSource randomSource) {
+        int charDim = tRD.charDim();
+        int y = (image.getHeight() - charDim) / 2;
+        for (int i = 0; i < textToRender.length(); i++) {
+            glyphOutlines.drawGlyph(image, textToRender.charAt(i), getAngleWithinMaximumBounds(angles[i]),
+                    tRD.characterPositions()[i], y, charDim, pickRandomColor(availableTextColors, randomSource));
+        }
+    }
+
+    /**
+     * Applies the stored operations in imageOperationsList to the image, split into bands if filter tiling is set.
      *
      * @param image the image on which to render
      */
     private void applyFilters(BufferedImage image) {
+        if (filterTiling != null) {
+            filterTiling.apply(imageOperationsList, image);
+            return;
+        }
         imageOperationsList.stream().forEachOrdered(op -> op.filter(image, image));
     }
 
-    private void drawRectangleNoise(Graphics2D graphic) {
-        graphic.setColor(noiseSettings.distortionsColor());
-        SecureRandom rnd = new SecureRandom();
-        int L = (int) (rnd.nextDouble() * pictureHeight / 2.0);
-        int X = (int) (rnd.nextDouble() * pictureWidth - L);
-        int Y = (int) (rnd.nextDouble() * pictureHeight - L);
-        graphic.draw3DRect(X, Y, L << 1, L << 1, true);
+    /**
+     * @param chars number of characters of the text
+     * @return cached {@link TextRenderingData} for texts of the given length, built on first use
+     */
+    private TextRenderingData getTextRenderingData(int chars) {
+        if (chars > MAXIMUM_CACHED_TEXT_LENGTH) {
+            return buildTextRenderingData(chars);
+        }
+        return textRenderingDataByLength.computeIfAbsent(chars, this::buildTextRenderingData);
     }
 
-    private void drawLineNoise(Graphics2D graphic) {
-        Color darkerBackgrnd = noiseSettings.distortionsColor().darker();
-        graphic.setColor(darkerBackgrnd);
-        SecureRandom rnd = new SecureRandom();
-        int x = Math.abs(rnd.nextInt()) % pictureWidth;
-        int y = Math.abs(rnd.nextInt()) % pictureHeight;
-        graphic.drawLine(x, y, x, y);
+    /**
+     * @return side length of the square each character is drawn into, independent of the text length
+     */
+    private int getCharDim() {
+        return Math.max(textFontMetrics.getMaxAdvance(), textFontMetrics.getHeight());
     }
 
     /**
      * Builds a {@link TextRenderingData} object for cleaner passing of multiple arguments within this class
      *
-     * @param image the image on which to draw the text
-     * @return {@link TextRenderingData} with text rendering information derived from the given image and the number
+     * @param chars number of characters of the text
+     * @return {@link TextRenderingData} with text rendering information derived from the picture size and the number
      * of characters
      */
-    private TextRenderingData buildTextRenderingData(BufferedImage image, int chars) {
-        Graphics2D graphic = image.createGraphics();
-        Font textFont = new Font(fontName, Font.BOLD, (int) (image.getHeight() / 2.5));
-        graphic.setColor(pickRandomColor(availableTextColors));
-        graphic.setFont(textFont);
-        FontMetrics fontMetrics = graphic.getFontMetrics();
-        int maxAdvance = fontMetrics.getMaxAdvance();
-        int fontHeight = fontMetrics.getHeight();
-        int charDim = Math.max(maxAdvance, fontHeight);
-        int margin = image.getWidth() / 16;
-        float spaceForLetters = (-margin << 1) + image.getWidth();
+    private TextRenderingData buildTextRenderingData(int chars) {
+        int maxAdvance = textFontMetrics.getMaxAdvance();
+        int fontHeight = textFontMetrics.getHeight();
+        int charDim = getCharDim();
+        int margin = pictureWidth / 16;
+        float spaceForLetters = (-margin << 1) + pictureWidth;
         float spaceBetweenCharacters = spaceForLetters / (chars - 1.0f);
-        return new TextRenderingData(textFont, fontMetrics, margin, spaceBetweenCharacters, maxAdvance, fontHeight,
-                charDim);
+        int[] characterPositions = new int[chars];
+        for (int i = 0; i < chars; i++) {
+            characterPositions[i] = getHorizontalPlacementOfCharacter(margin, spaceBetweenCharacters, i, charDim);
+        }
+        return new TextRenderingData(textFont, textFontMetrics, margin, spaceBetweenCharacters, maxAdvance,
+                fontHeight, charDim, characterPositions);
     }
 
     /**
      * Measures the font and draws each character of the given string to the
      * Graphics2D object at a randomized angle.
      *
-     * @param tRD        Text rendering data used to bundle all relevant data about the font used to compute their
-     *                   placement within the captcha image.
-     * @param image      the image on which to draw the text
-     * @param charToDraw the individual character to measure and draw
-     * @param index      running index of the character in the source string
+     * @param tRD          Text rendering data used to bundle all relevant data about the font used to compute their
+     *                     placement within the captcha image.
+     * @param image        the image on which to draw the text
+     * @param context      context holding the graphics of the image, the scratch image of the character and the
+     *                     source of its color
+     * @param charToDraw   the individual character to measure and draw
+     * @param index        running index of the character in the source string
+     * @param angle        angle by which the character is rotated
      */
-    private void drawCharacter(BufferedImage image, TextRenderingData tRD, Integer index, char charToDraw) {
-        BufferedImage charImage = getImageOfAngledRenderedCharacter(tRD, charToDraw);
+    private void drawCharacter(BufferedImage image, RenderContext context, TextRenderingData tRD, int index,
+                               char charToDraw, double angle) {
+        Color color = pickRandomColor(availableTextColors, context.getRandomSource());
+        BufferedImage charImage = getImageOfAngledRenderedCharacter(context, tRD, charToDraw, angle, color);
         int charDim = tRD.charDim();
-        int x = getHorizontalPlacementOfCharacter(tRD, index, charDim);
+        int x = tRD.characterPositions()[index];
         int y = (image.getHeight() - charDim) / 2;
-        image.createGraphics().drawImage(charImage, x, y, charDim, charDim, null, null);
+        if (palette != null) {
+            drawIndexedCharacter(image, charImage, x, y, color);
+            return;
+        }
+        context.getGraphic().drawImage(charImage, x, y, charDim, charDim, null, null);
     }
 
     /**
+     * Writes the palette index of the color into every pixel of the image that the character image covers at least
+     * by half, as drawing through Java2D would map the color to the palette only approximately.
+     */
+    private static void drawIndexedCharacter(BufferedImage image, BufferedImage charImage, int x, int y,
+                                             Color color) {
+        byte[] pixels = IndexedRaster.getPixels(image);
+        byte colorIndex = (byte) IndexedRaster.getIndex(image, color);
+        int[] charPixels = ((DataBufferInt) charImage.getRaster().getDataBuffer()).getData();
+        int charDim = charImage.getWidth();
+        int width = image.getWidth();
+        for (int row = Math.max(0, -y); row < Math.min(charDim, image.getHeight() - y); row++) {
+            for (int column = Math.max(0, -x); column < Math.min(charDim, width - x); column++) {
+                if (charPixels[row * charDim + column] >>> 24 >= 128) {
+                    pixels[(y + row) * width + x + column] = colorIndex;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param context    context holding the scratch image the character is drawn into
      * @param tRD        Text rendering data used to bundle all relevant data about the font used to compute their
      *                   placement within the captcha image.
      * @param charToDraw the individual character to measure and draw
-     * @return BufferedImage containing a single rendered and angled character to be merged with the main captcha image.
+     * @param angle      angle by which the character is rotated
+     * @param color      color of the character
+     * @return BufferedImage containing a single rendered and angled character to be merged with the main captcha image,
+     * valid until the next character is drawn through the context.
      */
-    private BufferedImage getImageOfAngledRenderedCharacter(TextRenderingData tRD, char charToDraw) {
+    private BufferedImage getImageOfAngledRenderedCharacter(RenderContext context, TextRenderingData tRD,
+                                                            char charToDraw, double angle, Color color) {
         int charDim = tRD.charDim();
         int charWidth = tRD.fontMetrics().charWidth(charToDraw);
         int halfCharDim = charDim / 2;
-        double angle = getRandomAngleWithinMaximumBounds();
         int charX = (int) (0.5 * charDim - 0.5 * charWidth);
-        BufferedImage charImage = new BufferedImage(charDim, charDim, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D charGraphics = charImage.createGraphics();
+        BufferedImage charImage = context.clearCharacterImage(charDim);
+        Graphics2D charGraphics = context.getCharacterGraphic();
         charGraphics.translate(halfCharDim, halfCharDim);
         charGraphics.transform(AffineTransform.getRotateInstance(angle));
         charGraphics.translate(-halfCharDim, -halfCharDim);
-        charGraphics.setColor(pickRandomColor(availableTextColors));
+        charGraphics.setColor(color);
         charGraphics.setFont(tRD.font());
         charGraphics.drawString(String.valueOf(charToDraw), charX, (charDim - tRD.fontMetrics()
                 .getAscent()) / 2 + tRD.fontMetrics().getAscent());
-        charGraphics.dispose();
         return charImage;
     }
 
-    private static int getHorizontalPlacementOfCharacter(TextRenderingData tRD, Integer index, int charDimensions) {
-        return (int) (tRD.margin() + tRD.spaceBetweenCharacters() * (index.floatValue()) - charDimensions / 2.0f);
+    private static int getHorizontalPlacementOfCharacter(int margin, float spaceBetweenCharacters, int index,
+                                                         int charDimensions) {
+        return (int) (margin + spaceBetweenCharacters * index - charDimensions / 2.0f);
     }
 
-    private double getRandomAngleWithinMaximumBounds() {
-        return (new SecureRandom().nextDouble() - 0.5) * maximumLetterRotationAngle;
+    /**
+     * @param randomValue random value between 0 and 1
+     * @return angle between the negative and positive half of the maximum letter rotation angle
+     */
+    private double getAngleWithinMaximumBounds(double randomValue) {
+        return (randomValue - 0.5) * maximumLetterRotationAngle;
     }
 
 
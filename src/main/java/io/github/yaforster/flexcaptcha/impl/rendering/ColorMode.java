@@ -0,0 +1,22 @@
+package io.github.yaforster.flexcaptcha.impl.rendering;
+
+/**
+ * Enum representing the pixel formats a {@link CaptchaRenderer} can render the captcha in.
+ *
+ * @author Yannick Forster
+ */
+public enum ColorMode {
+
+    /**
+     * Renders into a {@link java.awt.image.BufferedImage#TYPE_INT_RGB} image, with 4 bytes per pixel. Supports all
+     * backgrounds and image operations.
+     */
+    RGB,
+    /**
+     * Renders into a {@link java.awt.image.BufferedImage#TYPE_BYTE_INDEXED} image, with 1 byte per pixel, whose palette
+     * holds the background, noise and text colors. Requires a flat color background and no image operations, as both
+     * would introduce colors outside the palette. Translucent colors are drawn opaque.
+     */
+    INDEXED
+
+}
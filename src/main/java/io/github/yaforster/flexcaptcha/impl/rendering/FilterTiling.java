@@ -0,0 +1,137 @@
+package io.github.yaforster.flexcaptcha.impl.rendering;
+
+import com.jhlabs.image.AbstractBufferedImageOp;
+import com.jhlabs.image.BoxBlurFilter;
+import com.jhlabs.image.ConvolveFilter;
+import com.jhlabs.image.GaussianFilter;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.ToIntFunction;
+
+/**
+ * Applies image operations in parallel, by splitting the image into horizontal bands that are filtered on a
+ * {@link ForkJoinPool} and stitched back together. Each band is filtered together with a halo of rows above and below
+ * it, which has to cover the vertical reach of the operation, so the stitched image equals the image filtered as a
+ * whole. As bands span the full width of the image, no horizontal halo is needed.
+ * <p>
+ * Only operations whose result for a pixel depends on a bounded neighbourhood, and not on its absolute position, can
+ * be split this way. The halo function returns the halo in rows for such operations, and a negative value for all
+ * others, which are then applied to the whole image on the calling thread. Every band works on its own clone of the
+ * operation, as the jhlabs filters keep state while filtering.
+ *
+ * @author Yannick Forster
+ */
+public class FilterTiling {
+
+    /**
+     * Bands are not made lower than this number of rows, so the halos stay small compared to the bands
+     */
+    private static final int MINIMUM_BAND_HEIGHT = 16;
+
+    /**
+     * Pool the bands are filtered on
+     */
+    private final ForkJoinPool pool;
+    /**
+     * Maximum number of bands an image is split into
+     */
+    @Getter
+    private final int maximumBands;
+    /**
+     * Halo in rows per operation, negative if the operation cannot be split
+     */
+    private final ToIntFunction<AbstractBufferedImageOp> haloFunction;
+
+    /**
+     * @param pool         pool the bands are filtered on. Defaults to the common pool.
+     * @param maximumBands maximum number of bands per image. Defaults to the parallelism of the pool.
+     * @param haloFunction halo in rows per operation, negative if the operation cannot be split. Defaults to
+     *                     {@link #getDefaultHalo(AbstractBufferedImageOp)}.
+     */
+    @Builder
+    public FilterTiling(ForkJoinPool pool, int maximumBands, ToIntFunction<AbstractBufferedImageOp> haloFunction) {
+        this.pool = Optional.ofNullable(pool).orElseGet(ForkJoinPool::commonPool);
+        this.maximumBands = maximumBands > 0 ? maximumBands : this.pool.getParallelism();
+        this.haloFunction = Optional.ofNullable(haloFunction).orElse(FilterTiling::getDefaultHalo);
+    }
+
+    /**
+     * Halos for the location independent neighbourhood filters of jhlabs: {@link GaussianFilter} and its subclasses,
+     * {@link BoxBlurFilter} and {@link ConvolveFilter}s that do not wrap around the edges.
+     *
+     * @param operation the operation to get the halo for
+     * @return the vertical reach of the operation in rows, or -1 if the operation is not known to be splittable
+     */
+    public static int getDefaultHalo(AbstractBufferedImageOp operation) {
+        if (operation instanceof GaussianFilter gaussianFilter) {
+            return (int) Math.ceil(gaussianFilter.getRadius());
+        }
+        if (operation instanceof BoxBlurFilter boxBlurFilter) {
+            // fractional radii blur one row further than the rounded radius
+            return boxBlurFilter.getIterations() * ((int) Math.ceil(boxBlurFilter.getVRadius()) + 1);
+        }
+        if (operation.getClass() == ConvolveFilter.class) {
+            ConvolveFilter convolveFilter = (ConvolveFilter) operation;
+            return convolveFilter.getEdgeAction() == ConvolveFilter.WRAP_EDGES ? -1
+                    : convolveFilter.getKernel().getHeight() / 2;
+        }
+        return -1;
+    }
+
+    /**
+     * Applies the operations to the image in the given order, each one in place.
+     *
+     * @param operations operations to apply
+     * @param image      the image to filter
+     */
+    public void apply(List<AbstractBufferedImageOp> operations, BufferedImage image) {
+        BufferedImage result = null;
+        for (AbstractBufferedImageOp operation : operations) {
+            int halo = haloFunction.applyAsInt(operation);
+            int bands = halo < 0 ? 1 : Math.min(maximumBands,
+                    image.getHeight() / Math.max(MINIMUM_BAND_HEIGHT, halo));
+            if (bands <= 1) {
+                operation.filter(image, image);
+                continue;
+            }
+            if (result == null) {
+                WritableRaster raster = image.getRaster().createCompatibleWritableRaster();
+                result = new BufferedImage(image.getColorModel(), raster, image.isAlphaPremultiplied(), null);
+            }
+            applyInBands(operation, halo, bands, image, result);
+            image.getRaster().setDataElements(0, 0, result.getRaster());
+        }
+    }
+
+    /**
+     * Filters the bands of the source concurrently and writes the rows of each band, without its halo, into the
+     * result. The source is only read until all bands are done.
+     */
+    private void applyInBands(AbstractBufferedImageOp operation, int halo, int bands, BufferedImage source,
+                              BufferedImage result) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(bands);
+        for (int band = 0; band < bands; band++) {
+            int bandTop = (int) ((long) height * band / bands);
+            int bandBottom = (int) ((long) height * (band + 1) / bands);
+            tasks.add(pool.submit(() -> {
+                int top = Math.max(0, bandTop - halo);
+                int bottom = Math.min(height, bandBottom + halo);
+                AbstractBufferedImageOp bandOperation = (AbstractBufferedImageOp) operation.clone();
+                BufferedImage filtered = bandOperation.filter(source.getSubimage(0, top, width, bottom - top), null);
+                result.getRaster().setDataElements(0, bandTop, filtered.getRaster().createChild(0, bandTop - top,
+                        width, bandBottom - bandTop, 0, 0, null));
+            }));
+        }
+        tasks.forEach(ForkJoinTask::join);
+    }
+}
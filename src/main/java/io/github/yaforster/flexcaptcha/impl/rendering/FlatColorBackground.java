@@ -6,6 +6,10 @@ import lombok.Getter;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
 
 @Getter
 @AllArgsConstructor
@@ -16,10 +20,48 @@ public class FlatColorBackground extends AbstractCaptchaImageBackground {
      */
     protected final Color backgroundColor;
 
+    /**
+     * Fills the image with the background color. Opaque colors are written directly into the pixels of
+     * {@link BufferedImage#TYPE_INT_RGB} images, and the index of the color into the pixels of indexed images whose
+     * palette holds the color. All other cases are drawn through Java2D.
+     */
     @Override
     public void drawBackground(final BufferedImage captchaImage) {
+        int[] pixels = getIntRgbPixels(captchaImage);
+        if (pixels != null && backgroundColor.getAlpha() == 255) {
+            Arrays.fill(pixels, backgroundColor.getRGB() & 0xFFFFFF);
+            return;
+        }
+        byte[] indexedPixels = IndexedRaster.getPixels(captchaImage);
+        int index = indexedPixels != null ? IndexedRaster.getIndex(captchaImage, backgroundColor) : -1;
+        if (index >= 0) {
+            Arrays.fill(indexedPixels, (byte) index);
+            return;
+        }
         Graphics captchaImageGraphic = captchaImage.getGraphics();
-        captchaImageGraphic.setColor(backgroundColor);
-        captchaImageGraphic.fillRect(0, 0, captchaImage.getWidth(), captchaImage.getHeight());
+        try {
+            captchaImageGraphic.setColor(backgroundColor);
+            captchaImageGraphic.fillRect(0, 0, captchaImage.getWidth(), captchaImage.getHeight());
+        }
+        finally {
+            captchaImageGraphic.dispose();
+        }
+    }
+
+    /**
+     * @param image image to access the pixels of
+     * @return the pixel array of the image if it is a {@link BufferedImage#TYPE_INT_RGB} image whose pixels fill the
+     * array row by row without gaps, otherwise null
+     */
+    protected static int[] getIntRgbPixels(final BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_INT_RGB) {
+            return null;
+        }
+        WritableRaster raster = image.getRaster();
+        if (raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0
+                || ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride() != image.getWidth()) {
+            return null;
+        }
+        return ((DataBufferInt) raster.getDataBuffer()).getData();
     }
 }
@@ -0,0 +1,225 @@
+package io.github.yaforster.flexcaptcha.impl.rendering;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Cache of rasterised glyphs for the {@link TextRenderingMode#GLYPH_ATLAS} mode. Each glyph is rasterised once per
+ * character and quantised rotation angle on first use, and kept as coverage mask trimmed to its bounding box. As the
+ * masks carry no color, one atlas serves all text colors, which are applied while copying a glyph into the image.
+ * <p>
+ * Atlases are shared between all renderers using the same font, character size and maximum rotation angle, each of
+ * which resolves its atlas once on construction. Both the number of shared atlases and the bytes of the masks held by
+ * each atlas are bounded. Once an atlas is full, further glyphs
+ * are rasterised on every use instead of being cached.
+ *
+ * @author Yannick Forster
+ */
+final class GlyphAtlas {
+
+    /**
+     * Number of rotation angles per character, odd so that the unrotated character is one of them
+     */
+    static final int ANGLE_STEPS = 33;
+    private static final int MAXIMUM_ATLASES = 8;
+    private static final long MAXIMUM_BYTES_PER_ATLAS = 4L << 20;
+    private static final Map<AtlasKey, GlyphAtlas> ATLASES = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<AtlasKey, GlyphAtlas> eldest) {
+            return size() > MAXIMUM_ATLASES;
+        }
+    };
+
+    private final Font font;
+    private final FontMetrics fontMetrics;
+    private final int charDim;
+    private final double maximumLetterRotationAngle;
+    /**
+     * Masks per character, indexed by the angle
+     */
+    private final Map<Character, AtomicReferenceArray<GlyphMask>> glyphs = new ConcurrentHashMap<>();
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    private GlyphAtlas(Font font, FontMetrics fontMetrics, int charDim, double maximumLetterRotationAngle) {
+        this.font = font;
+        this.fontMetrics = fontMetrics;
+        this.charDim = charDim;
+        this.maximumLetterRotationAngle = maximumLetterRotationAngle;
+    }
+
+    /**
+     * Looks up the shared atlas for the given settings. Meant to be called once per renderer, which keeps the atlas
+     * even after it is evicted from the shared atlases.
+     *
+     * @param font                       font of the characters
+     * @param fontMetrics                metrics of the font
+     * @param charDim                    side length of the square each character is drawn into
+     * @param maximumLetterRotationAngle maximum angle of the renderer, spread over {@link #ANGLE_STEPS} angles
+     * @return the shared atlas for the given settings, created if it does not exist yet
+     */
+    static GlyphAtlas forSettings(Font font, FontMetrics fontMetrics, int charDim,
+                                  double maximumLetterRotationAngle) {
+        AtlasKey key = new AtlasKey(font, charDim, maximumLetterRotationAngle);
+        synchronized (ATLASES) {
+            return ATLASES.computeIfAbsent(key, k -> new GlyphAtlas(font, fontMetrics, charDim,
+                    maximumLetterRotationAngle));
+        }
+    }
+
+    /**
+     * @param randomValue random value between 0 and 1
+     * @return index of the nearest quantised angle
+     */
+    static int getAngleIndex(double randomValue) {
+        return (int) Math.round(randomValue * (ANGLE_STEPS - 1));
+    }
+
+    /**
+     * Draws the character at the given quantised angle into the image, with the top left corner of its
+     * {@code charDim x charDim} square at the given position. Parts outside of the image are clipped.
+     *
+     * @param image      image of type {@link BufferedImage#TYPE_INT_RGB} to draw into, or an indexed image whose
+     *                   palette holds the color, into which pixels covered at least by half are drawn opaque
+     * @param charToDraw the character to draw
+     * @param angleIndex index of the quantised angle, as returned by {@link #getAngleIndex(double)}
+     * @param x          horizontal position of the character square
+     * @param y          vertical position of the character square
+     * @param color      color of the character
+     */
+    void drawGlyph(BufferedImage image, char charToDraw, int angleIndex, int x, int y, Color color) {
+        GlyphMask mask = getGlyph(charToDraw, angleIndex);
+        int imageWidth = image.getWidth();
+        int left = Math.max(0, -(x + mask.offsetX()));
+        int top = Math.max(0, -(y + mask.offsetY()));
+        int right = Math.min(mask.width(), imageWidth - (x + mask.offsetX()));
+        int bottom = Math.min(mask.height(), image.getHeight() - (y + mask.offsetY()));
+        byte[] indexedPixels = IndexedRaster.getPixels(image);
+        if (indexedPixels != null) {
+            byte index = (byte) IndexedRaster.getIndex(image, color);
+            for (int row = top; row < bottom; row++) {
+                int maskIndex = row * mask.width();
+                int pixelIndex = (y + mask.offsetY() + row) * imageWidth + x + mask.offsetX();
+                for (int column = left; column < right; column++) {
+                    if ((mask.coverage()[maskIndex + column] & 0xFF) >= 128) {
+                        indexedPixels[pixelIndex + column] = index;
+                    }
+                }
+            }
+            return;
+        }
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int rgb = color.getRGB() & 0xFFFFFF;
+        int colorAlpha = color.getAlpha();
+        for (int row = top; row < bottom; row++) {
+            int maskIndex = row * mask.width();
+            int pixelIndex = (y + mask.offsetY() + row) * imageWidth + x + mask.offsetX();
+            for (int column = left; column < right; column++) {
+                int alpha = (mask.coverage()[maskIndex + column] & 0xFF) * colorAlpha / 255;
+                if (alpha == 255) {
+                    pixels[pixelIndex + column] = rgb;
+                }
+                else if (alpha > 0) {
+                    pixels[pixelIndex + column] = blend(pixels[pixelIndex + column], rgb, alpha);
+                }
+            }
+        }
+    }
+
+    /**
+     * Blends the source RGB value over the destination RGB value with the given alpha between 0 and 255
+     */
+    static int blend(int destination, int source, int alpha) {
+        int inverse = 255 - alpha;
+        int red = ((source >> 16 & 0xFF) * alpha + (destination >> 16 & 0xFF) * inverse + 127) / 255;
+        int green = ((source >> 8 & 0xFF) * alpha + (destination >> 8 & 0xFF) * inverse + 127) / 255;
+        int blue = ((source & 0xFF) * alpha + (destination & 0xFF) * inverse + 127) / 255;
+        return red << 16 | green << 8 | blue;
+    }
+
+    private GlyphMask getGlyph(char charToDraw, int angleIndex) {
+        AtomicReferenceArray<GlyphMask> angles = glyphs.computeIfAbsent(charToDraw,
+                character -> new AtomicReferenceArray<>(ANGLE_STEPS));
+        GlyphMask mask = angles.get(angleIndex);
+        if (mask != null) {
+            return mask;
+        }
+        mask = rasterise(charToDraw, angleIndex);
+        int length = mask.coverage().length;
+        if (cachedBytes.addAndGet(length) > MAXIMUM_BYTES_PER_ATLAS) {
+            cachedBytes.addAndGet(-length);
+            return mask;
+        }
+        if (!angles.compareAndSet(angleIndex, null, mask)) {
+            cachedBytes.addAndGet(-length);
+            return angles.get(angleIndex);
+        }
+        return mask;
+    }
+
+    /**
+     * Rasterises the character the same way as the {@link TextRenderingMode#JAVA2D} mode and keeps the alpha channel
+     * within the bounding box of the glyph.
+     */
+    private GlyphMask rasterise(char charToDraw, int angleIndex) {
+        double angle = ((double) angleIndex / (ANGLE_STEPS - 1) - 0.5) * maximumLetterRotationAngle;
+        int charWidth = fontMetrics.charWidth(charToDraw);
+        int halfCharDim = charDim / 2;
+        int charX = (int) (0.5 * charDim - 0.5 * charWidth);
+        BufferedImage charImage = new BufferedImage(charDim, charDim, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D charGraphics = charImage.createGraphics();
+        charGraphics.translate(halfCharDim, halfCharDim);
+        charGraphics.transform(AffineTransform.getRotateInstance(angle));
+        charGraphics.translate(-halfCharDim, -halfCharDim);
+        charGraphics.setColor(Color.WHITE);
+        charGraphics.setFont(font);
+        charGraphics.drawString(String.valueOf(charToDraw), charX, (charDim - fontMetrics.getAscent()) / 2
+                + fontMetrics.getAscent());
+        charGraphics.dispose();
+        return trim(((DataBufferInt) charImage.getRaster().getDataBuffer()).getData());
+    }
+
+    private GlyphMask trim(int[] argb) {
+        int minX = charDim;
+        int minY = charDim;
+        int maxX = -1;
+        int maxY = -1;
+        for (int row = 0; row < charDim; row++) {
+            for (int column = 0; column < charDim; column++) {
+                if (argb[row * charDim + column] >>> 24 != 0) {
+                    minX = Math.min(minX, column);
+                    maxX = Math.max(maxX, column);
+                    minY = Math.min(minY, row);
+                    maxY = Math.max(maxY, row);
+                }
+            }
+        }
+        if (maxX < 0) {
+            return new GlyphMask(0, 0, 0, 0, new byte[0]);
+        }
+        int width = maxX - minX + 1;
+        int height = maxY - minY + 1;
+        byte[] coverage = new byte[width * height];
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                coverage[row * width + column] = (byte) (argb[(minY + row) * charDim + minX + column] >>> 24);
+            }
+        }
+        return new GlyphMask(minX, minY, width, height, coverage);
+    }
+
+    private record AtlasKey(Font font, int charDim, double maximumLetterRotationAngle) {
+    }
+
+    /**
+     * Coverage of a rasterised glyph within its bounding box, positioned relative to the character square
+     */
+    private record GlyphMask(int offsetX, int offsetY, int width, int height, byte[] coverage) {
+    }
+}
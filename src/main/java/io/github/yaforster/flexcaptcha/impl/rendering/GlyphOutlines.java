@@ -0,0 +1,181 @@
+package io.github.yaforster.flexcaptcha.impl.rendering;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Glyph outlines of a font for the {@link TextRenderingMode#OUTLINE} mode. The outline of each character is taken from
+ * the font once on first use and flattened into polygons. Drawing a character rotates the points of its polygons and
+ * fills them with the {@link ScanlineRasteriser} directly into the pixels of the image, so apart from the first use of
+ * a character, no font or Java2D code is involved.
+ * <p>
+ * The outlines are immutable once created and shared between all renderers using the same font. The number of
+ * fonts and of outlines per font is bounded. Once the outlines of a font are full, further characters are taken from
+ * the font on every use instead of being cached.
+ *
+ * @author Yannick Forster
+ */
+final class GlyphOutlines {
+
+    /**
+     * Maximum distance in pixels between the curves of an outline and the lines replacing them
+     */
+    private static final double FLATNESS = 0.1;
+    private static final int MAXIMUM_FONTS = 8;
+    private static final int MAXIMUM_OUTLINES_PER_FONT = 1024;
+    /**
+     * Same context as the graphics of an image without rendering hints, i.e. no anti-aliasing and integer metrics
+     */
+    private static final FontRenderContext FONT_RENDER_CONTEXT = new FontRenderContext(null, false, false);
+    private static final Map<Font, GlyphOutlines> OUTLINES = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Font, GlyphOutlines> eldest) {
+            return size() > MAXIMUM_FONTS;
+        }
+    };
+
+    private final Font font;
+    private final FontMetrics fontMetrics;
+    private final int ascent;
+    private final Map<Character, GlyphOutline> outlines = new ConcurrentHashMap<>();
+    private final AtomicInteger outlineCount = new AtomicInteger();
+
+    private GlyphOutlines(Font font, FontMetrics fontMetrics) {
+        this.font = font;
+        this.fontMetrics = fontMetrics;
+        this.ascent = fontMetrics.getAscent();
+    }
+
+    /**
+     * @param font        the font to draw the characters in
+     * @param fontMetrics metrics of the font, used to place the characters
+     * @return the shared outlines of the font, created if they do not exist yet
+     */
+    static GlyphOutlines forFont(Font font, FontMetrics fontMetrics) {
+        synchronized (OUTLINES) {
+            return OUTLINES.computeIfAbsent(font, key -> new GlyphOutlines(font, fontMetrics));
+        }
+    }
+
+    /**
+     * Draws the character rotated by the given angle into the image, at the same place as the
+     * {@link TextRenderingMode#JAVA2D} mode: centered in the {@code charDim x charDim} square with its top left corner
+     * at the given position, and clipped to that square and the image.
+     *
+     * @param image      image of type {@link BufferedImage#TYPE_INT_RGB}, or an indexed image whose palette holds the
+     *                   color
+     * @param charToDraw the character to draw
+     * @param angle      angle by which the character is rotated around the center of its square
+     * @param x          horizontal position of the character square
+     * @param y          vertical position of the character square
+     * @param charDim    size of the character square
+     * @param color      color of the character
+     */
+    void drawGlyph(BufferedImage image, char charToDraw, double angle, int x, int y, int charDim, Color color) {
+        GlyphOutline outline = getOutline(charToDraw);
+        if (outline.contourEnds().length == 0) {
+            return;
+        }
+        int halfCharDim = charDim / 2;
+        int charX = (int) (0.5 * charDim - 0.5 * outline.advance());
+        AffineTransform transform = AffineTransform.getTranslateInstance(x + halfCharDim, y + halfCharDim);
+        transform.rotate(angle);
+        transform.translate(charX - halfCharDim, (charDim - ascent) / 2 + ascent - halfCharDim);
+        float[] points = new float[outline.points().length];
+        transform.transform(outline.points(), 0, points, 0, points.length / 2);
+
+        int width = image.getWidth();
+        Object pixels = FlatColorBackground.getIntRgbPixels(image);
+        int value = color.getRGB() & 0xFFFFFF;
+        if (pixels == null) {
+            pixels = IndexedRaster.getPixels(image);
+            value = IndexedRaster.getIndex(image, color);
+        }
+        ScanlineRasteriser.fill(points, outline.contourEnds(), outline.nonZero(), Math.max(0, x), Math.max(0, y),
+                Math.min(width, x + charDim), Math.min(image.getHeight(), y + charDim), pixels, width, value,
+                color.getAlpha());
+    }
+
+    private GlyphOutline getOutline(char charToDraw) {
+        GlyphOutline outline = outlines.get(charToDraw);
+        if (outline != null) {
+            return outline;
+        }
+        outline = extract(charToDraw);
+        if (outlineCount.incrementAndGet() > MAXIMUM_OUTLINES_PER_FONT) {
+            outlineCount.decrementAndGet();
+            return outline;
+        }
+        GlyphOutline existing = outlines.putIfAbsent(charToDraw, outline);
+        if (existing != null) {
+            outlineCount.decrementAndGet();
+            return existing;
+        }
+        return outline;
+    }
+
+    /**
+     * Takes the outline of the character from the font, relative to the origin of its baseline, and flattens its
+     * curves into lines.
+     */
+    private GlyphOutline extract(char charToDraw) {
+        Shape shape = font.createGlyphVector(FONT_RENDER_CONTEXT, new char[]{charToDraw}).getOutline();
+        PathIterator iterator = shape.getPathIterator(null, FLATNESS);
+        float[] points = new float[64];
+        int[] contourEnds = new int[4];
+        int pointCount = 0;
+        int contourCount = 0;
+        int contourStart = 0;
+        float[] segment = new float[6];
+        for (; !iterator.isDone(); iterator.next()) {
+            int segmentType = iterator.currentSegment(segment);
+            if (segmentType == PathIterator.SEG_MOVETO || segmentType == PathIterator.SEG_CLOSE) {
+                if (pointCount > contourStart) {
+                    contourEnds = ensureCapacity(contourEnds, contourCount + 1);
+                    contourEnds[contourCount++] = pointCount;
+                }
+                contourStart = pointCount;
+                if (segmentType == PathIterator.SEG_CLOSE) {
+                    continue;
+                }
+            }
+            points = ensureCapacity(points, 2 * pointCount + 2);
+            points[2 * pointCount] = segment[0];
+            points[2 * pointCount + 1] = segment[1];
+            pointCount++;
+        }
+        if (pointCount > contourStart) {
+            contourEnds = ensureCapacity(contourEnds, contourCount + 1);
+            contourEnds[contourCount++] = pointCount;
+        }
+        return new GlyphOutline(Arrays.copyOf(points, 2 * pointCount), Arrays.copyOf(contourEnds, contourCount),
+                iterator.getWindingRule() == PathIterator.WIND_NON_ZERO, fontMetrics.charWidth(charToDraw));
+    }
+
+    private static float[] ensureCapacity(float[] array, int length) {
+        return array.length >= length ? array : Arrays.copyOf(array, Math.max(length, 2 * array.length));
+    }
+
+    private static int[] ensureCapacity(int[] array, int length) {
+        return array.length >= length ? array : Arrays.copyOf(array, Math.max(length, 2 * array.length));
+    }
+
+    /**
+     * Flattened outline of a glyph, relative to the origin of its baseline
+     *
+     * @param points      x and y coordinates of the points of all contours
+     * @param contourEnds index of the first point after each contour
+     * @param nonZero     true if the outline is filled by the non-zero winding rule, false for the even-odd rule
+     * @param advance     width of the character as used to center it
+     */
+    private record GlyphOutline(float[] points, int[] contourEnds, boolean nonZero, int advance) {
+    }
+}
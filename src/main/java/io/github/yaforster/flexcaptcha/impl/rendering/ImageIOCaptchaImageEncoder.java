@@ -0,0 +1,184 @@
+package io.github.yaforster.flexcaptcha.impl.rendering;
+
+import io.github.yaforster.flexcaptcha.core.AbstractCaptchaImageEncoder;
+import io.github.yaforster.flexcaptcha.util.InstancePool;
+import lombok.Builder;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.spi.ImageWriterSpi;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Encodes captcha images through the Image I/O writer of the configured format. Unlike {@link ImageIO#write}, the
+ * writer is looked up once instead of on every call, writer instances are reused through an {@link InstancePool}, and
+ * the output is buffered in memory instead of in a temporary file.
+ * <p>
+ * The writers of JPEG, PNG and BMP copy the pixels of {@link BufferedImage#TYPE_INT_RGB} images into a byte raster
+ * of their own on every write. For these formats, the pixels are copied into a pooled
+ * {@link BufferedImage#TYPE_3BYTE_BGR} image instead, which the writers encode directly into the same bytes.
+ * <p>
+ * The compression quality, if set, is passed to the writer explicitly. For JPEG it is the image quality, for PNG it
+ * selects the deflate level, from 9 at 0 to no compression at 1. Otherwise the defaults of the writer are used, which
+ * produces the same bytes as {@link ImageIO#write}.
+ *
+ * @author Yannick Forster
+ */
+public class ImageIOCaptchaImageEncoder extends AbstractCaptchaImageEncoder {
+
+    private static final String DEFAULT_FORMAT_NAME = "JPG";
+    /**
+     * Size of the first output buffer, before the size of the encoded images is known
+     */
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+    /**
+     * Formats whose writers encode {@link BufferedImage#TYPE_3BYTE_BGR} images without copying their pixels
+     */
+    private static final Set<String> BYTE_RASTER_FORMATS = Set.of("jpeg", "png", "bmp");
+
+    /**
+     * Informal name of the image file format
+     */
+    @Getter
+    private final String formatName;
+    /**
+     * Compression quality between 0 and 1 passed to the writer, or null to use the default of the writer
+     */
+    @Getter
+    private final Float compressionQuality;
+    private final ImageWriterSpi writerSpi;
+    private final InstancePool<ImageWriter> writers = new InstancePool<>(64);
+    /**
+     * True if the images are copied into a byte raster before writing
+     */
+    private final boolean byteRasterFormat;
+    private final InstancePool<BufferedImage> byteRasterImages = new InstancePool<>(64);
+    /**
+     * Moving average of the sizes of the encoded images, used to size the output buffers
+     */
+    private final AtomicInteger expectedSize = new AtomicInteger(INITIAL_BUFFER_SIZE);
+
+    /**
+     * @param formatName         informal name of the image file format. Defaults to "JPG".
+     * @param compressionQuality compression quality between 0 and 1. Defaults to the default of the writer.
+     */
+    @Builder
+    public ImageIOCaptchaImageEncoder(String formatName, Float compressionQuality) {
+        this.formatName = StringUtils.isBlank(formatName) ? DEFAULT_FORMAT_NAME : formatName;
+        if (compressionQuality != null && (compressionQuality < 0f || compressionQuality > 1f)) {
+            throw new IllegalArgumentException("Compression quality must be between 0 and 1.");
+        }
+        this.compressionQuality = compressionQuality;
+        Iterator<ImageWriter> availableWriters = ImageIO.getImageWritersByFormatName(this.formatName);
+        if (!availableWriters.hasNext()) {
+            throw new IllegalArgumentException("No image writer available for format " + this.formatName + ".");
+        }
+        ImageWriter writer = availableWriters.next();
+        this.writerSpi = writer.getOriginatingProvider();
+        writer.dispose();
+        this.byteRasterFormat = Arrays.stream(writerSpi.getFormatNames())
+                .anyMatch(name -> BYTE_RASTER_FORMATS.contains(name.toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * Writes the image through a pooled writer. A writer that failed is disposed instead of being reused.
+     */
+    @Override
+    public void encode(final BufferedImage image, final OutputStream output) throws IOException {
+        if (!writerSpi.canEncodeImage(image)) {
+            throw new IOException("The " + formatName + " writer cannot encode images of type " + image.getType() + ".");
+        }
+        ImageWriter writer = writers.poll();
+        if (writer == null) {
+            writer = writerSpi.createWriterInstance();
+        }
+        BufferedImage byteRasterImage = byteRasterFormat ? copyToByteRaster(image) : null;
+        boolean written = false;
+        try (ImageOutputStream imageOutput = new MemoryCacheImageOutputStream(output)) {
+            writer.setOutput(imageOutput);
+            writer.write(null, new IIOImage(byteRasterImage != null ? byteRasterImage : image, null, null),
+                    getWriteParam(writer));
+            written = true;
+        }
+        finally {
+            byteRasterImages.release(byteRasterImage);
+            if (written) {
+                writer.setOutput(null);
+                writers.release(writer);
+            }
+            else {
+                writer.dispose();
+            }
+        }
+    }
+
+    /**
+     * Copies the pixels of a {@link BufferedImage#TYPE_INT_RGB} image into a pooled {@link BufferedImage#TYPE_3BYTE_BGR}
+     * image of the same size.
+     *
+     * @return the copy, or null if the image is of any other type
+     */
+    private BufferedImage copyToByteRaster(BufferedImage image) {
+        int[] pixels = FlatColorBackground.getIntRgbPixels(image);
+        if (pixels == null) {
+            return null;
+        }
+        BufferedImage byteRasterImage = byteRasterImages.poll();
+        if (byteRasterImage == null || byteRasterImage.getWidth() != image.getWidth()
+                || byteRasterImage.getHeight() != image.getHeight()) {
+            byteRasterImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+        }
+        byte[] bytes = ((DataBufferByte) byteRasterImage.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < pixels.length; i++) {
+            int rgb = pixels[i];
+            bytes[3 * i] = (byte) rgb;
+            bytes[3 * i + 1] = (byte) (rgb >> 8);
+            bytes[3 * i + 2] = (byte) (rgb >> 16);
+        }
+        return byteRasterImage;
+    }
+
+    /**
+     * Encodes into a buffer sized from the recent image sizes, so the buffer usually does not have to grow.
+     */
+    @Override
+    public byte[] encode(final BufferedImage image) throws IOException {
+        int expected = expectedSize.get();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(expected + (expected >> 3));
+        encode(image, output);
+        int size = output.size();
+        expectedSize.lazySet(expected - (expected >> 3) + (size >> 3));
+        return output.toByteArray();
+    }
+
+    private ImageWriteParam getWriteParam(ImageWriter writer) {
+        if (compressionQuality == null) {
+            return null;
+        }
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (!param.canWriteCompressed()) {
+            return param;
+        }
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        if (param.getCompressionType() == null) {
+            param.setCompressionType(param.getCompressionTypes()[0]);
+        }
+        param.setCompressionQuality(compressionQuality);
+        return param;
+    }
+}
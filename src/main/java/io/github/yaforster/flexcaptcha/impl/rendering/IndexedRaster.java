@@ -0,0 +1,71 @@
+package io.github.yaforster.flexcaptcha.impl.rendering;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Access to the pixels of the {@link BufferedImage#TYPE_BYTE_INDEXED} images of the {@link ColorMode#INDEXED} mode.
+ * The renderer writes palette indices directly instead of drawing through Java2D, which maps colors to the palette
+ * through an approximate inverse color map and dithering.
+ *
+ * @author Yannick Forster
+ */
+final class IndexedRaster {
+
+    private IndexedRaster() {
+    }
+
+    /**
+     * @param colors colors the palette has to contain, duplicates are stored once
+     * @return palette holding the opaque variants of the given colors
+     */
+    static IndexColorModel createPalette(Collection<Color> colors) {
+        Set<Integer> rgbs = new LinkedHashSet<>();
+        colors.forEach(color -> rgbs.add(color.getRGB() & 0xFFFFFF));
+        if (rgbs.size() > 256) {
+            throw new IllegalArgumentException("The indexed color mode supports at most 256 colors.");
+        }
+        int[] palette = rgbs.stream().mapToInt(Integer::intValue).toArray();
+        return new IndexColorModel(8, palette.length, palette, 0, false, -1, DataBufferByte.TYPE_BYTE);
+    }
+
+    /**
+     * @param image image to access the pixels of
+     * @return the pixel array of the image if it is a {@link BufferedImage#TYPE_BYTE_INDEXED} image whose pixels fill
+     * the array row by row without gaps, otherwise null
+     */
+    static byte[] getPixels(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_BYTE_INDEXED) {
+            return null;
+        }
+        WritableRaster raster = image.getRaster();
+        if (raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0
+                || ((ComponentSampleModel) raster.getSampleModel()).getScanlineStride() != image.getWidth()) {
+            return null;
+        }
+        return ((DataBufferByte) raster.getDataBuffer()).getData();
+    }
+
+    /**
+     * @param image indexed image
+     * @param color color to look up, its alpha is ignored
+     * @return index of the color in the palette of the image, or -1 if the palette does not hold the color exactly
+     */
+    static int getIndex(BufferedImage image, Color color) {
+        IndexColorModel palette = (IndexColorModel) image.getColorModel();
+        int rgb = color.getRGB() & 0xFFFFFF;
+        for (int index = 0; index < palette.getMapSize(); index++) {
+            if ((palette.getRGB(index) & 0xFFFFFF) == rgb) {
+                return index;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,177 @@
+package io.github.yaforster.flexcaptcha.impl.rendering;
+
+import io.github.yaforster.flexcaptcha.util.AbstractRandomSource;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Draws the noise of a {@link CaptchaRenderer}: raised 3D rectangle outlines and single dots, both in numbers
+ * proportional to the {@link NoiseSettings#noiseIntensity()}. Opaque noise on {@link BufferedImage#TYPE_INT_RGB} images
+ * and noise on indexed images whose palette holds the noise colors is written directly into the pixels, reproducing
+ * {@link Graphics2D#draw3DRect(int, int, int, int, boolean)} and single pixel lines exactly. All other cases are drawn
+ * through Java2D.
+ * <p>
+ * The colors are derived once per engine, and the random values are drawn in chunks of fixed size, so the work and
+ * the allocated memory per image do not grow beyond the number of shapes drawn.
+ *
+ * @author Yannick Forster
+ */
+final class NoiseEngine {
+
+    /**
+     * Number of random values drawn at once
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    private final int noiseIntensity;
+    private final Color rectangleColor;
+    private final Color brighterColor;
+    private final Color dotColor;
+    private final boolean opaque;
+    private final int brighterRgb;
+    /**
+     * Darker shade of the noise color, used for the lower right edges of the rectangles and for the dots
+     */
+    private final int darkerRgb;
+
+    NoiseEngine(NoiseSettings noiseSettings) {
+        this.noiseIntensity = noiseSettings.noiseIntensity();
+        this.rectangleColor = noiseSettings.distortionsColor();
+        this.brighterColor = rectangleColor.brighter();
+        this.dotColor = rectangleColor.darker();
+        this.opaque = rectangleColor.getAlpha() == 255;
+        this.brighterRgb = brighterColor.getRGB() & 0xFFFFFF;
+        this.darkerRgb = dotColor.getRGB() & 0xFFFFFF;
+    }
+
+    /**
+     * Draws a rectangle per pixel of width and a dot per pixel of the image, both scaled by the noise intensity in
+     * percent.
+     *
+     * @param image        image to draw the noise onto
+     * @param graphic      the graphics of the image, used if the pixels cannot be written directly
+     * @param randomSource source of the sizes and positions of the shapes
+     */
+    void drawNoise(BufferedImage image, Graphics2D graphic, AbstractRandomSource randomSource) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int rectangleCount = (int) ((long) width * noiseIntensity / 100);
+        int dotCount = (int) ((long) width * height * noiseIntensity / 100);
+        int[] pixels = opaque ? FlatColorBackground.getIntRgbPixels(image) : null;
+        if (pixels != null) {
+            drawRectangles(pixels, width, height, rectangleCount, brighterRgb, darkerRgb, randomSource);
+            drawDots(pixels, width * height, dotCount, darkerRgb, randomSource);
+            return;
+        }
+        byte[] indexedPixels = IndexedRaster.getPixels(image);
+        int brighterIndex = indexedPixels != null ? IndexedRaster.getIndex(image, brighterColor) : -1;
+        int darkerIndex = indexedPixels != null ? IndexedRaster.getIndex(image, dotColor) : -1;
+        if (brighterIndex >= 0 && darkerIndex >= 0) {
+            drawRectangles(indexedPixels, width, height, rectangleCount, brighterIndex, darkerIndex, randomSource);
+            drawDots(indexedPixels, width * height, dotCount, darkerIndex, randomSource);
+            return;
+        }
+        drawRectangles(graphic, width, height, rectangleCount, randomSource);
+        drawDots(graphic, width, width * height, dotCount, randomSource);
+    }
+
+    /**
+     * Draws the rectangles into a pixel array, either the RGB values of an int array or the palette indices of a
+     * byte array.
+     */
+    private static void drawRectangles(Object pixels, int width, int height, int count, int brighter, int darker,
+                                       AbstractRandomSource randomSource) {
+        double[] randomValues = new double[3 * Math.min(count, CHUNK_SIZE)];
+        for (int drawn = 0; drawn < count; drawn += CHUNK_SIZE) {
+            int chunk = Math.min(CHUNK_SIZE, count - drawn);
+            randomSource.nextDoubles(randomValues);
+            for (int i = 0; i < chunk; i++) {
+                int l = (int) (randomValues[3 * i] * height / 2.0);
+                int x = (int) (randomValues[3 * i + 1] * width - l);
+                int y = (int) (randomValues[3 * i + 2] * height - l);
+                int size = l << 1;
+                // same edges as Graphics2D.draw3DRect with raised set to true
+                fillRect(pixels, width, height, x, y, 1, size + 1, brighter);
+                fillRect(pixels, width, height, x + 1, y, size - 1, 1, brighter);
+                fillRect(pixels, width, height, x + 1, y + size, size, 1, darker);
+                fillRect(pixels, width, height, x + size, y, 1, size, darker);
+            }
+        }
+    }
+
+    private void drawRectangles(Graphics2D graphic, int width, int height, int count,
+                                AbstractRandomSource randomSource) {
+        double[] randomValues = new double[3 * Math.min(count, CHUNK_SIZE)];
+        graphic.setColor(rectangleColor);
+        for (int drawn = 0; drawn < count; drawn += CHUNK_SIZE) {
+            int chunk = Math.min(CHUNK_SIZE, count - drawn);
+            randomSource.nextDoubles(randomValues);
+            for (int i = 0; i < chunk; i++) {
+                int l = (int) (randomValues[3 * i] * height / 2.0);
+                int x = (int) (randomValues[3 * i + 1] * width - l);
+                int y = (int) (randomValues[3 * i + 2] * height - l);
+                graphic.draw3DRect(x, y, l << 1, l << 1, true);
+            }
+        }
+    }
+
+    /**
+     * Fills the part of the rectangle within the image with the given value
+     */
+    private static void fillRect(Object pixels, int width, int height, int x, int y, int rectangleWidth,
+                                 int rectangleHeight, int value) {
+        int left = Math.max(x, 0);
+        int right = Math.min(x + rectangleWidth, width);
+        int top = Math.max(y, 0);
+        int bottom = Math.min(y + rectangleHeight, height);
+        if (left >= right) {
+            return;
+        }
+        for (int row = top; row < bottom; row++) {
+            int rowOffset = row * width;
+            if (pixels instanceof int[] rgbPixels) {
+                Arrays.fill(rgbPixels, rowOffset + left, rowOffset + right, value);
+            }
+            else {
+                Arrays.fill((byte[]) pixels, rowOffset + left, rowOffset + right, (byte) value);
+            }
+        }
+    }
+
+    private static void drawDots(Object pixels, int pixelCount, int count, int value,
+                                 AbstractRandomSource randomSource) {
+        int[] positions = new int[Math.min(count, CHUNK_SIZE)];
+        for (int drawn = 0; drawn < count; drawn += CHUNK_SIZE) {
+            int chunk = Math.min(CHUNK_SIZE, count - drawn);
+            randomSource.nextInts(positions, pixelCount);
+            if (pixels instanceof int[] rgbPixels) {
+                for (int i = 0; i < chunk; i++) {
+                    rgbPixels[positions[i]] = value;
+                }
+            }
+            else {
+                byte[] indexedPixels = (byte[]) pixels;
+                for (int i = 0; i < chunk; i++) {
+                    indexedPixels[positions[i]] = (byte) value;
+                }
+            }
+        }
+    }
+
+    private void drawDots(Graphics2D graphic, int width, int pixelCount, int count,
+                          AbstractRandomSource randomSource) {
+        int[] positions = new int[Math.min(count, CHUNK_SIZE)];
+        graphic.setColor(dotColor);
+        for (int drawn = 0; drawn < count; drawn += CHUNK_SIZE) {
+            int chunk = Math.min(CHUNK_SIZE, count - drawn);
+            randomSource.nextInts(positions, pixelCount);
+            for (int i = 0; i < chunk; i++) {
+                int x = positions[i] % width;
+                int y = positions[i] / width;
+                graphic.drawLine(x, y, x, y);
+            }
+        }
+    }
+}
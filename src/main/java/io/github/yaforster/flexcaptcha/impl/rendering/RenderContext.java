@@ -0,0 +1,110 @@
+package io.github.yaforster.flexcaptcha.impl.rendering;
+
+import io.github.yaforster.flexcaptcha.core.AbstractCaptchaImageEncoder;
+import io.github.yaforster.flexcaptcha.util.AbstractRandomSource;
+import lombok.Getter;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Everything a {@link CaptchaRenderer} reuses from one captcha to the next: the image with its graphics, the scratch
+ * image single characters are rotated in, the output buffer of the encoder, and the random source. Contexts are either
+ * pooled by the renderer for single renders, or owned by a worker of
+ * {@link CaptchaRenderer#renderBatch(java.util.List)} with a random source of its own, and disposed once at the end of
+ * the batch. A context is only ever used by one thread at a time.
+ *
+ * @author Yannick Forster
+ */
+final class RenderContext implements AutoCloseable {
+
+    /**
+     * Image the captchas are drawn into, one after the other
+     */
+    private final BufferedImage image;
+    @Getter
+    private final Graphics2D graphic;
+    @Getter
+    private final AbstractRandomSource randomSource;
+    /**
+     * Buffer the encoded images are written to, which keeps its capacity between the images
+     */
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    /**
+     * Scratch image of a single character, created on first use
+     */
+    private BufferedImage characterImage;
+    @Getter
+    private Graphics2D characterGraphic;
+
+    RenderContext(BufferedImage image, AbstractRandomSource randomSource) {
+        this.image = image;
+        this.graphic = image.createGraphics();
+        this.randomSource = randomSource;
+    }
+
+    /**
+     * Resets all pixels to zero, as in a newly created image, so nothing of the previous captcha remains even if the
+     * background does not cover the whole image.
+     *
+     * @return the cleared image
+     */
+    BufferedImage clearImage() {
+        DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+        if (dataBuffer instanceof DataBufferInt intBuffer) {
+            Arrays.fill(intBuffer.getData(), 0);
+        }
+        else {
+            Arrays.fill(((DataBufferByte) dataBuffer).getData(), (byte) 0);
+        }
+        return image;
+    }
+
+    /**
+     * Resets the scratch image of a single character to transparent, and the transform of its graphics to the
+     * identity.
+     *
+     * @param charDim size of the character square
+     * @return the cleared {@link BufferedImage#TYPE_INT_ARGB} scratch image of the given size
+     */
+    BufferedImage clearCharacterImage(int charDim) {
+        if (characterImage == null || characterImage.getWidth() != charDim) {
+            if (characterGraphic != null) {
+                characterGraphic.dispose();
+            }
+            characterImage = new BufferedImage(charDim, charDim, BufferedImage.TYPE_INT_ARGB);
+            characterGraphic = characterImage.createGraphics();
+        }
+        else {
+            Arrays.fill(((DataBufferInt) characterImage.getRaster().getDataBuffer()).getData(), 0);
+            characterGraphic.setTransform(new AffineTransform());
+        }
+        return characterImage;
+    }
+
+    /**
+     * @param imageEncoder encoder writing the image into the output buffer
+     * @return copy of the encoded image
+     * @throws IOException if the image could not be encoded
+     */
+    byte[] encode(AbstractCaptchaImageEncoder imageEncoder) throws IOException {
+        output.reset();
+        imageEncoder.encode(image, output);
+        return output.toByteArray();
+    }
+
+    @Override
+    public void close() {
+        graphic.dispose();
+        if (characterGraphic != null) {
+            characterGraphic.dispose();
+        }
+    }
+}
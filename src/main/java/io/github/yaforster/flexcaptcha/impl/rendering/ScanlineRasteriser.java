@@ -0,0 +1,129 @@
+package io.github.yaforster.flexcaptcha.impl.rendering;
+
+import java.util.Arrays;
+
+/**
+ * Fills polygons into a pixel array without anti-aliasing, the same way as Java2D fills shapes with
+ * {@link java.awt.RenderingHints#VALUE_STROKE_PURE}: a pixel is filled if its center lies inside the polygon, where
+ * the left and top edges of the polygon count as inside and the right and bottom edges as outside.
+ * <p>
+ * The rasteriser keeps no state between calls, so any number of threads can fill polygons at the same time.
+ *
+ * @author Yannick Forster
+ */
+final class ScanlineRasteriser {
+
+    private ScanlineRasteriser() {
+    }
+
+    /**
+     * Fills the polygon made up of the given closed contours into the part of the pixel array within the clip.
+     *
+     * @param points      x and y coordinates of the points of all contours, one contour after the other
+     * @param contourEnds index of the first point after each contour, in points, not coordinates
+     * @param nonZero     true for the non-zero winding rule, false for the even-odd rule
+     * @param clipLeft    first column that may be filled
+     * @param clipTop     first row that may be filled
+     * @param clipRight   column after the last column that may be filled
+     * @param clipBottom  row after the last row that may be filled
+     * @param pixels      the RGB values of an int array, or the palette indices of a byte array, row by row
+     * @param width       number of pixels per row
+     * @param value       RGB value or palette index to fill with
+     * @param alpha       alpha of the RGB value, with which it is blended over the pixels of an int array
+     */
+    static void fill(float[] points, int[] contourEnds, boolean nonZero, int clipLeft, int clipTop, int clipRight,
+                     int clipBottom, Object pixels, int width, int value, int alpha) {
+        int pointCount = contourEnds.length == 0 ? 0 : contourEnds[contourEnds.length - 1];
+        // top, bottom, x at the top and inverse slope of every edge that is not horizontal
+        double[] edges = new double[4 * pointCount];
+        int[] directions = new int[pointCount];
+        int edgeCount = 0;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        int contourStart = 0;
+        for (int contourEnd : contourEnds) {
+            for (int point = contourStart; point < contourEnd; point++) {
+                int next = point + 1 < contourEnd ? point + 1 : contourStart;
+                double x0 = points[2 * point];
+                double y0 = points[2 * point + 1];
+                double x1 = points[2 * next];
+                double y1 = points[2 * next + 1];
+                if (y0 == y1) {
+                    continue;
+                }
+                int direction = y0 < y1 ? 1 : -1;
+                if (direction < 0) {
+                    double swap = x0;
+                    x0 = x1;
+                    x1 = swap;
+                    swap = y0;
+                    y0 = y1;
+                    y1 = swap;
+                }
+                edges[4 * edgeCount] = y0;
+                edges[4 * edgeCount + 1] = y1;
+                edges[4 * edgeCount + 2] = x0;
+                edges[4 * edgeCount + 3] = (x1 - x0) / (y1 - y0);
+                directions[edgeCount++] = direction;
+                minY = Math.min(minY, y0);
+                maxY = Math.max(maxY, y1);
+            }
+            contourStart = contourEnd;
+        }
+        if (edgeCount == 0) {
+            return;
+        }
+        int firstRow = Math.max(clipTop, (int) Math.ceil(minY - 0.5));
+        int lastRow = Math.min(clipBottom, (int) Math.ceil(maxY - 0.5));
+        double[] crossings = new double[edgeCount];
+        int[] crossingDirections = new int[edgeCount];
+        for (int row = firstRow; row < lastRow; row++) {
+            double sampleY = row + 0.5;
+            int crossingCount = 0;
+            for (int edge = 0; edge < edgeCount; edge++) {
+                double top = edges[4 * edge];
+                if (top <= sampleY && sampleY < edges[4 * edge + 1]) {
+                    double x = edges[4 * edge + 2] + (sampleY - top) * edges[4 * edge + 3];
+                    int direction = directions[edge];
+                    // insertion sort, as a row crosses only a few edges
+                    int position = crossingCount++;
+                    while (position > 0 && crossings[position - 1] > x) {
+                        crossings[position] = crossings[position - 1];
+                        crossingDirections[position] = crossingDirections[position - 1];
+                        position--;
+                    }
+                    crossings[position] = x;
+                    crossingDirections[position] = direction;
+                }
+            }
+            int winding = 0;
+            for (int crossing = 0; crossing < crossingCount - 1; crossing++) {
+                winding += crossingDirections[crossing];
+                boolean inside = nonZero ? winding != 0 : (winding & 1) != 0;
+                if (inside) {
+                    int from = Math.max(clipLeft, (int) Math.ceil(crossings[crossing] - 0.5));
+                    int to = Math.min(clipRight, (int) Math.ceil(crossings[crossing + 1] - 0.5));
+                    fillSpan(pixels, row * width, from, to, value, alpha);
+                }
+            }
+        }
+    }
+
+    private static void fillSpan(Object pixels, int rowOffset, int from, int to, int value, int alpha) {
+        if (from >= to) {
+            return;
+        }
+        if (pixels instanceof byte[] indexedPixels) {
+            Arrays.fill(indexedPixels, rowOffset + from, rowOffset + to, (byte) value);
+            return;
+        }
+        int[] rgbPixels = (int[]) pixels;
+        if (alpha == 255) {
+            Arrays.fill(rgbPixels, rowOffset + from, rowOffset + to, value);
+            return;
+        }
+        for (int pixel = rowOffset + from; pixel < rowOffset + to; pixel++) {
+            rgbPixels[pixel] = GlyphAtlas.blend(rgbPixels[pixel], value, alpha);
+        }
+    }
+}
@@ -2,6 +2,11 @@ package io.github.yaforster.flexcaptcha.impl.rendering;
 
 import java.awt.*;
 
+/**
+ * Layout of a captcha text of a given length, computed once per text length by the {@link CaptchaRenderer}.
+ *
+ * @param characterPositions horizontal position of the square of each character, by its index in the text
+ */
 public record TextRenderingData(Font font, FontMetrics fontMetrics, int margin, float spaceBetweenCharacters,
-                                int maxAdvance, int fontHeight, int charDim) {
+                                int maxAdvance, int fontHeight, int charDim, int[] characterPositions) {
 }
@@ -0,0 +1,27 @@
+package io.github.yaforster.flexcaptcha.impl.rendering;
+
+/**
+ * Enum representing the ways a {@link CaptchaRenderer} can draw the characters of the captcha text.
+ *
+ * @author Yannick Forster
+ */
+public enum TextRenderingMode {
+
+    /**
+     * Rasterises every character through the Java2D font pipeline at its exact random angle.
+     */
+    JAVA2D,
+    /**
+     * Copies every character from a shared atlas of pre-rasterised glyphs, which holds each character at a fixed
+     * number of rotation angles. The random angle of a character is rounded to the nearest angle of the atlas.
+     */
+    GLYPH_ATLAS,
+    /**
+     * Rotates the outline of every character, taken from the font once per character, and fills it directly into the
+     * pixels of the image at its exact random angle. Besides taking the outlines from the font, no font or Java2D
+     * code is involved, so rendering threads do not contend for the shared caches of the font pipeline. The outlines
+     * are filled without hinting, so stems may be placed up to a pixel apart from the {@link #JAVA2D} mode.
+     */
+    OUTLINE
+
+}
@@ -1,28 +1,134 @@
 package io.github.yaforster.flexcaptcha.impl.token;
 
 import io.github.yaforster.flexcaptcha.core.AbstractCaptchaCipher;
+import io.github.yaforster.flexcaptcha.core.AbstractReplayStore;
+import io.github.yaforster.flexcaptcha.core.AbstractSaltEncoder;
+import io.github.yaforster.flexcaptcha.core.TokenRejectionReason;
+import io.github.yaforster.flexcaptcha.core.TokenValidationRequest;
+import io.github.yaforster.flexcaptcha.util.AbstractRandomSource;
+import io.github.yaforster.flexcaptcha.util.Base64Decoder;
+import io.github.yaforster.flexcaptcha.util.InstancePool;
+import io.github.yaforster.flexcaptcha.util.StrongRandomSource;
+import io.github.yaforster.flexcaptcha.util.Utf8Comparison;
 import lombok.Builder;
 import org.apache.commons.lang3.StringUtils;
 
+import javax.crypto.AEADBadTagException;
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
-import java.util.Arrays;
 import java.util.Base64;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
+/**
+ * Cipher encrypting the captcha solution into the token, in one of the layouts of {@link TokenFormat}.
+ * <p>
+ * Validation rejects tokens as early as possible: tokens exceeding the maximum length are rejected before decoding,
+ * tokens whose decoded length or header match no accepted format before any cryptographic operation, and
+ * {@link TokenFormat#COMPACT} tokens whose authenticated header carries a passed expiration time before their
+ * authentication. Only legacy tokens require a key derivation per salt source, so restricting the accepted formats to
+ * {@link TokenFormat#AES_GCM} and {@link TokenFormat#COMPACT} keeps malformed or forged tokens from causing any key
+ * derivation at all. Rejections are counted per {@link TokenRejectionReason}.
+ *
+ * @author Yannick Forster
+ */
 public class CaptchaCipher extends AbstractCaptchaCipher {
 
+    /**
+     * Leading byte of tokens in the {@link TokenFormat#AES_GCM} format
+     */
+    private static final byte GCM_TOKEN_VERSION = 0x02;
+    private static final String GCM_CIPHER_ALGORITHM = "AES/GCM/NoPadding";
+    private static final int GCM_NONCE_LENGTH = 12;
+    private static final int GCM_TAG_LENGTH = 16;
+    private static final int GCM_HEADER_LENGTH = 1 + GCM_NONCE_LENGTH;
+    /**
+     * Fixed salt for deriving the instance key of the {@link TokenFormat#AES_GCM} format. The salt source of each
+     * token is bound as additional authenticated data instead.
+     */
+    private static final byte[] GCM_KEY_DERIVATION_SALT = "flexcaptcha-gcm-token-key".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] GCM_VERSION_AAD = {GCM_TOKEN_VERSION};
+    /**
+     * Leading byte of tokens in the {@link TokenFormat#COMPACT} format
+     */
+    private static final byte COMPACT_TOKEN_VERSION = 0x03;
+    /**
+     * Flag set in the second byte of a {@link TokenFormat#COMPACT} token if an expiration time follows
+     */
+    private static final byte COMPACT_FLAG_EXPIRATION_TIME = 0x01;
+    private static final int COMPACT_MINIMUM_HEADER_LENGTH = 2;
+    private static final int MAXIMUM_VARINT_LENGTH = 10;
+    private static final Base64.Encoder COMPACT_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final int LEGACY_BLOCK_SIZE = 16;
+    /**
+     * Per-thread buffers used during validation
+     */
+    private static final InstancePool<TokenBuffers> TOKEN_BUFFERS = new InstancePool<>(64);
+    private static final int INITIAL_BUFFER_LENGTH = 128;
+    /**
+     * Buffers grown beyond this length by unusually long tokens are dropped instead of pooled
+     */
+    private static final int MAXIMUM_POOLED_BUFFER_LENGTH = 4096;
+    private static final int DEFAULT_MAXIMUM_TOKEN_LENGTH = 1024;
+
+    /**
+     * Layout used for newly generated tokens
+     */
+    private final TokenFormat tokenFormat;
+    /**
+     * Layouts accepted during validation
+     */
+    private final Set<TokenFormat> acceptedTokenFormats;
+    /**
+     * Number of Base64 characters above which a token is rejected without decoding
+     */
+    private final int maximumTokenLength;
+    /**
+     * Key of the {@link TokenFormat#AES_GCM} format, derived on first use
+     */
+    private volatile SecretKey gcmKey;
+
+    /**
+     * @param acceptedTokenFormats formats accepted during validation, which have to include the format used for
+     *                             generation. Defaults to all formats.
+     * @param maximumTokenLength   number of Base64 characters above which tokens are rejected without decoding.
+     *                             Defaults to 1024.
+     */
     @Builder
     private CaptchaCipher(CipherSettings cipherSettings, String encryptionPassword,
-                          ExpirationTimeSettings expirationTimeSettings) {
+                          ExpirationTimeSettings expirationTimeSettings, DerivedKeyCache derivedKeyCache,
+                          CryptoInstancePool cryptoInstancePool, AbstractSaltEncoder saltEncoder,
+                          TokenFormat tokenFormat, AbstractReplayStore replayStore,
+                          AbstractRandomSource randomSource, Set<TokenFormat> acceptedTokenFormats,
+                          Integer maximumTokenLength) {
         super(getCipherSettingsOrDefault(cipherSettings), getEncryptionPasswordOrDefault(encryptionPassword),
                 expirationTimeSettings);
+        setDerivedKeyCache(derivedKeyCache);
+        setCryptoInstancePool(cryptoInstancePool);
+        setSaltEncoder(getSaltEncoderOrDefault(saltEncoder));
+        setReplayStore(replayStore);
+        setRandomSource(getRandomSourceOrDefault(randomSource));
+        this.tokenFormat = getTokenFormatOrDefault(tokenFormat);
+        this.acceptedTokenFormats = getAcceptedTokenFormatsOrDefault(acceptedTokenFormats);
+        this.maximumTokenLength = Optional.ofNullable(maximumTokenLength).orElse(DEFAULT_MAXIMUM_TOKEN_LENGTH);
+        if (!this.acceptedTokenFormats.contains(this.tokenFormat)) {
+            throw new IllegalArgumentException("The accepted token formats must include the format " + this.tokenFormat + ".");
+        }
+        if (this.maximumTokenLength <= 0) {
+            throw new IllegalArgumentException("Maximum token length must be positive.");
+        }
     }
 
     private static CipherSettings getCipherSettingsOrDefault(CipherSettings cipherSettings) {
@@ -33,24 +139,132 @@ public class CaptchaCipher extends AbstractCaptchaCipher {
         return Optional.ofNullable(encryptionPassword).orElse(StringUtils.EMPTY);
     }
 
+    private static AbstractSaltEncoder getSaltEncoderOrDefault(AbstractSaltEncoder saltEncoder) {
+        return Optional.ofNullable(saltEncoder).orElseGet(SerializingSaltEncoder::new);
+    }
+
+    private static AbstractRandomSource getRandomSourceOrDefault(AbstractRandomSource randomSource) {
+        return Optional.ofNullable(randomSource).orElseGet(StrongRandomSource::new);
+    }
+
+    private static TokenFormat getTokenFormatOrDefault(TokenFormat tokenFormat) {
+        return Optional.ofNullable(tokenFormat).orElse(TokenFormat.LEGACY_CBC);
+    }
+
+    private static Set<TokenFormat> getAcceptedTokenFormatsOrDefault(Set<TokenFormat> acceptedTokenFormats) {
+        if (acceptedTokenFormats == null || acceptedTokenFormats.isEmpty()) {
+            return EnumSet.allOf(TokenFormat.class);
+        }
+        return EnumSet.copyOf(acceptedTokenFormats);
+    }
+
     @Override
     public final String generateToken(String captchaSolution, Serializable saltSource) {
-        try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-            byte[] ivBytes = generateIV().getIV();
-            Cipher cipher = getCipher(encryptionPassword, saltSource, Cipher.ENCRYPT_MODE, ivBytes);
-            byte[] cipherBytes = cipher.doFinal(captchaSolution.getBytes());
-            outputStream.write(ivBytes);
-            if (expirationTimeSettings != null) {
-                appendExpirationDateBytes(cipher, outputStream);
-            }
-            outputStream.write(cipherBytes);
-            return Base64.getEncoder().encodeToString(outputStream.toByteArray());
+        return generateToken(captchaSolution, new SaltKeyMaterial(saltSource));
+    }
+
+    @Override
+    protected final List<String> generateTokensWithSameSalt(Serializable saltSource, List<String> solutions) {
+        SaltKeyMaterial keyMaterial = new SaltKeyMaterial(saltSource);
+        return solutions.stream().map(solution -> generateToken(solution, keyMaterial)).toList();
+    }
+
+    private String generateToken(String captchaSolution, SaltKeyMaterial keyMaterial) {
+        try {
+            return switch (tokenFormat) {
+                case LEGACY_CBC -> Base64.getEncoder().encodeToString(
+                        generateLegacyTokenBytes(captchaSolution, keyMaterial));
+                case AES_GCM -> Base64.getEncoder().encodeToString(
+                        generateGcmTokenBytes(captchaSolution, keyMaterial));
+                case COMPACT -> COMPACT_ENCODER.encodeToString(
+                        generateCompactTokenBytes(captchaSolution, keyMaterial));
+            };
         }
         catch (Exception originalException) {
             throw mapEncryptionException(originalException);
         }
     }
 
+    private byte[] generateLegacyTokenBytes(String captchaSolution, SaltKeyMaterial keyMaterial) throws GeneralSecurityException, IOException {
+        try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+            byte[] ivBytes = generateRandomBytes(LEGACY_BLOCK_SIZE);
+            Cipher cipher = getCipher(keyMaterial.getLegacyKey(), Cipher.ENCRYPT_MODE, ivBytes);
+            try {
+                byte[] cipherBytes = cipher.doFinal(captchaSolution.getBytes());
+                outputStream.write(ivBytes);
+                if (expirationTimeSettings != null) {
+                    appendExpirationDateBytes(cipher, outputStream);
+                }
+                outputStream.write(cipherBytes);
+            }
+            finally {
+                releaseCipher(cipher);
+            }
+            return outputStream.toByteArray();
+        }
+    }
+
+    /**
+     * Generates a token of the {@link TokenFormat#AES_GCM} format. The expiration time and the solution are encrypted
+     * in a single pass, laid out as version byte, nonce and the ciphertext with its authentication tag.
+     */
+    private byte[] generateGcmTokenBytes(String captchaSolution, SaltKeyMaterial keyMaterial) throws GeneralSecurityException {
+        byte[] solutionBytes = captchaSolution.getBytes(StandardCharsets.UTF_8);
+        byte[] plainBytes = ByteBuffer.allocate(Long.BYTES + solutionBytes.length)
+                .putLong(getExpirationTime())
+                .put(solutionBytes)
+                .array();
+        byte[] nonce = generateRandomBytes(GCM_NONCE_LENGTH);
+        byte[] tokenBytes = new byte[GCM_HEADER_LENGTH + plainBytes.length + GCM_TAG_LENGTH];
+        tokenBytes[0] = GCM_TOKEN_VERSION;
+        System.arraycopy(nonce, 0, tokenBytes, 1, GCM_NONCE_LENGTH);
+        Cipher cipher = acquireCipher(GCM_CIPHER_ALGORITHM);
+        try {
+            initGcmCipher(cipher, Cipher.ENCRYPT_MODE, tokenBytes, keyMaterial);
+            cipher.doFinal(plainBytes, 0, plainBytes.length, tokenBytes, GCM_HEADER_LENGTH);
+        }
+        finally {
+            releaseCipher(cipher);
+        }
+        return tokenBytes;
+    }
+
+    /**
+     * Generates a token of the {@link TokenFormat#COMPACT} format. The header, nonce and ciphertext are written
+     * directly into the token array, whose length is known up front.
+     */
+    private byte[] generateCompactTokenBytes(String captchaSolution, SaltKeyMaterial keyMaterial) throws GeneralSecurityException {
+        byte[] solutionBytes = captchaSolution.getBytes(StandardCharsets.UTF_8);
+        long expirationTime = getExpirationTime();
+        int headerLength = COMPACT_MINIMUM_HEADER_LENGTH;
+        if (expirationTimeSettings != null) {
+            headerLength += getVarintLength(expirationTime);
+        }
+        byte[] tokenBytes = new byte[headerLength + GCM_NONCE_LENGTH + solutionBytes.length + GCM_TAG_LENGTH];
+        tokenBytes[0] = COMPACT_TOKEN_VERSION;
+        if (expirationTimeSettings != null) {
+            tokenBytes[1] = COMPACT_FLAG_EXPIRATION_TIME;
+            writeVarint(expirationTime, tokenBytes, COMPACT_MINIMUM_HEADER_LENGTH);
+        }
+        System.arraycopy(generateRandomBytes(GCM_NONCE_LENGTH), 0, tokenBytes, headerLength, GCM_NONCE_LENGTH);
+        Cipher cipher = acquireCipher(GCM_CIPHER_ALGORITHM);
+        try {
+            initCompactCipher(cipher, Cipher.ENCRYPT_MODE, tokenBytes, headerLength, keyMaterial);
+            cipher.doFinal(solutionBytes, 0, solutionBytes.length, tokenBytes, headerLength + GCM_NONCE_LENGTH);
+        }
+        finally {
+            releaseCipher(cipher);
+        }
+        return tokenBytes;
+    }
+
+    private long getExpirationTime() {
+        if (expirationTimeSettings == null) {
+            return 0L;
+        }
+        return expirationTimeSettings.expirationTimeMillisOffset() + expirationTimeSettings.getTime();
+    }
+
     private void appendExpirationDateBytes(Cipher cipher, ByteArrayOutputStream outputStream) throws IOException {
         byte[] encryptedExpirationDateBytes = encryptExpirationDateBytes(cipher);
         outputStream.write(encryptedExpirationDateBytes);
@@ -80,36 +294,475 @@ public class CaptchaCipher extends AbstractCaptchaCipher {
 
     @Override
     public final boolean validateToken(String tokenString, Serializable saltSource, String userAnswer) {
+        return validateToken((CharSequence) tokenString, new SaltKeyMaterial(saltSource), userAnswer);
+    }
+
+    @Override
+    public final boolean validateToken(CharSequence token, Serializable saltSource, CharSequence answer) {
+        return validateToken(token, new SaltKeyMaterial(saltSource), answer);
+    }
+
+    @Override
+    public final boolean validateToken(byte[] token, int offset, int length, Serializable saltSource,
+                                       CharSequence answer) {
+        if (length > maximumTokenLength) {
+            return recordRejection(TokenRejectionReason.MALFORMED_LENGTH);
+        }
+        TokenBuffers buffers = acquireTokenBuffers();
         try {
-            int ivBytesEnd = 16;
-            int cipherBytesStartIndexInToken = 16;
-            byte[] tokenbytes = Base64.getDecoder().decode(tokenString.getBytes());
-            byte[] ivBytes = Arrays.copyOfRange(tokenbytes, 0, ivBytesEnd);
-            Cipher cipher = getCipher(encryptionPassword, saltSource, Cipher.DECRYPT_MODE, ivBytes);
-            if (expirationTimeSettings != null) {
-                cipherBytesStartIndexInToken += 16;
-                if (isTokenExpired(tokenbytes, cipherBytesStartIndexInToken, cipher)) {
-                    return false;
-                }
+            int tokenLength = Base64Decoder.decode(token, offset, length, buffers.getDecoded(length));
+            return validateDecodedToken(buffers, tokenLength, new SaltKeyMaterial(saltSource), answer);
+        }
+        catch (Exception originalException) {
+            throw mapEncryptionException(originalException);
+        }
+        finally {
+            releaseTokenBuffers(buffers);
+        }
+    }
+
+    @Override
+    public final boolean validateToken(ByteBuffer token, Serializable saltSource, CharSequence answer) {
+        if (token.hasArray()) {
+            return validateToken(token.array(), token.arrayOffset() + token.position(), token.remaining(),
+                    saltSource, answer);
+        }
+        if (token.remaining() > maximumTokenLength) {
+            return recordRejection(TokenRejectionReason.MALFORMED_LENGTH);
+        }
+        TokenBuffers buffers = acquireTokenBuffers();
+        try {
+            int length = token.remaining();
+            byte[] encoded = buffers.getEncoded(length);
+            token.get(token.position(), encoded, 0, length);
+            int tokenLength = Base64Decoder.decode(encoded, 0, length, buffers.getDecoded(length));
+            return validateDecodedToken(buffers, tokenLength, new SaltKeyMaterial(saltSource), answer);
+        }
+        catch (Exception originalException) {
+            throw mapEncryptionException(originalException);
+        }
+        finally {
+            releaseTokenBuffers(buffers);
+        }
+    }
+
+    @Override
+    protected final boolean[] validateTokensWithSameSalt(Serializable saltSource,
+                                                         List<TokenValidationRequest> requests) {
+        SaltKeyMaterial keyMaterial = new SaltKeyMaterial(saltSource);
+        boolean[] results = new boolean[requests.size()];
+        for (int i = 0; i < results.length; i++) {
+            TokenValidationRequest request = requests.get(i);
+            try {
+                results[i] = validateToken(request.token(), keyMaterial, request.answer());
+            }
+            catch (RuntimeException validationFailure) {
+                results[i] = false;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Copies the characters of the token as ASCII bytes into the reused buffer and validates it from there. Characters
+     * outside of the ASCII range are replaced by a byte that is not valid Base64.
+     */
+    private boolean validateToken(CharSequence token, SaltKeyMaterial keyMaterial, CharSequence userAnswer) {
+        if (token.length() > maximumTokenLength) {
+            return recordRejection(TokenRejectionReason.MALFORMED_LENGTH);
+        }
+        TokenBuffers buffers = acquireTokenBuffers();
+        try {
+            int length = token.length();
+            byte[] encoded = buffers.getEncoded(length);
+            for (int i = 0; i < length; i++) {
+                char c = token.charAt(i);
+                encoded[i] = c < 0x80 ? (byte) c : (byte) 0xFF;
             }
-            byte[] cipherBytes = Arrays.copyOfRange(tokenbytes, cipherBytesStartIndexInToken, tokenbytes.length);
-            byte[] decryptedBytes = cipher.doFinal(cipherBytes);
-            return userAnswer.equals(new String(decryptedBytes));
+            int tokenLength = Base64Decoder.decode(encoded, 0, length, buffers.getDecoded(length));
+            return validateDecodedToken(buffers, tokenLength, keyMaterial, userAnswer);
         }
         catch (Exception originalException) {
             throw mapEncryptionException(originalException);
         }
+        finally {
+            releaseTokenBuffers(buffers);
+        }
     }
 
-    private boolean isTokenExpired(byte[] tokenbytes, int cipherBytesStartIndexInToken, Cipher cipher) throws IllegalBlockSizeException, BadPaddingException {
-        long expirationTime = getDecryptedExpirationTimeMillis(tokenbytes, cipherBytesStartIndexInToken, cipher);
-        long currentTimeMillis = expirationTimeSettings.getTime();
-        return currentTimeMillis > expirationTime;
+    private boolean validateDecodedToken(TokenBuffers buffers, int tokenLength, SaltKeyMaterial keyMaterial,
+                                         CharSequence userAnswer) throws GeneralSecurityException {
+        if (tokenLength < 0) {
+            return recordRejection(TokenRejectionReason.MALFORMED_BASE64);
+        }
+        if (isGcmToken(buffers.decoded, tokenLength) && acceptedTokenFormats.contains(TokenFormat.AES_GCM)
+                || getCompactHeaderLength(buffers.decoded, tokenLength) > 0
+                && acceptedTokenFormats.contains(TokenFormat.COMPACT)) {
+            return validateVersionedOrLegacyToken(buffers, tokenLength, keyMaterial, userAnswer);
+        }
+        if (!acceptedTokenFormats.contains(TokenFormat.LEGACY_CBC)) {
+            return recordRejection(TokenRejectionReason.UNSUPPORTED_FORMAT);
+        }
+        try {
+            return validateLegacyToken(buffers, tokenLength, keyMaterial, userAnswer);
+        }
+        catch (BadPaddingException decryptionFailure) {
+            return recordRejection(TokenRejectionReason.AUTHENTICATION_FAILED);
+        }
     }
 
-    private long getDecryptedExpirationTimeMillis(byte[] tokenbytes, int cipherBytesStartIndexInToken, Cipher cipher) throws IllegalBlockSizeException, BadPaddingException {
-        byte[] expirationTimeBytes = Arrays.copyOfRange(tokenbytes, 16, cipherBytesStartIndexInToken);
-        byte[] decryptedExpirationTimeBytes = cipher.doFinal(expirationTimeBytes);
-        return new BigInteger(decryptedExpirationTimeBytes).longValue();
+    /**
+     * Validates a token carrying the version byte of the {@link TokenFormat#AES_GCM} or {@link TokenFormat#COMPACT}
+     * format. Since legacy tokens start with a random IV, a legacy token can carry the same leading byte, so it is
+     * validated as legacy token if the authentication fails, legacy tokens are accepted and its length matches the
+     * legacy layout.
+     */
+    private boolean validateVersionedOrLegacyToken(TokenBuffers buffers, int tokenLength,
+                                                   SaltKeyMaterial keyMaterial,
+                                                   CharSequence userAnswer) throws GeneralSecurityException {
+        try {
+            if (buffers.decoded[0] == GCM_TOKEN_VERSION) {
+                return validateGcmToken(buffers, tokenLength, keyMaterial, userAnswer);
+            }
+            return validateCompactToken(buffers, tokenLength, keyMaterial, userAnswer);
+        }
+        catch (AEADBadTagException authenticationFailure) {
+            return validateLegacyFallback(buffers, tokenLength, keyMaterial, userAnswer,
+                    TokenRejectionReason.AUTHENTICATION_FAILED);
+        }
+    }
+
+    /**
+     * Validates a token that failed as versioned token as legacy token, if possible.
+     *
+     * @param reason reason counted if the token is no valid legacy token either
+     */
+    private boolean validateLegacyFallback(TokenBuffers buffers, int tokenLength, SaltKeyMaterial keyMaterial,
+                                           CharSequence userAnswer,
+                                           TokenRejectionReason reason) throws GeneralSecurityException {
+        if (!isLegacyLayout(tokenLength)) {
+            return recordRejection(reason);
+        }
+        try {
+            return validateLegacyToken(buffers, tokenLength, keyMaterial, userAnswer);
+        }
+        catch (BadPaddingException legacyDecryptionFailure) {
+            return recordRejection(reason);
+        }
+    }
+
+    private boolean isLegacyLayout(int tokenLength) {
+        return acceptedTokenFormats.contains(TokenFormat.LEGACY_CBC)
+                && tokenLength >= getLegacyCipherBytesOffset() + LEGACY_BLOCK_SIZE
+                && tokenLength % LEGACY_BLOCK_SIZE == 0;
+    }
+
+    private int getLegacyCipherBytesOffset() {
+        return expirationTimeSettings == null ? LEGACY_BLOCK_SIZE : 2 * LEGACY_BLOCK_SIZE;
+    }
+
+    private static boolean isGcmToken(byte[] tokenbytes, int tokenLength) {
+        return tokenLength >= GCM_HEADER_LENGTH + Long.BYTES + GCM_TAG_LENGTH && tokenbytes[0] == GCM_TOKEN_VERSION;
+    }
+
+    private boolean validateGcmToken(TokenBuffers buffers, int tokenLength, SaltKeyMaterial keyMaterial,
+                                     CharSequence userAnswer) throws GeneralSecurityException {
+        Cipher cipher = acquireCipher(GCM_CIPHER_ALGORITHM);
+        int plainLength;
+        try {
+            initGcmCipher(cipher, Cipher.DECRYPT_MODE, buffers.decoded, keyMaterial);
+            plainLength = cipher.doFinal(buffers.getDecodedRange(GCM_HEADER_LENGTH, tokenLength),
+                    buffers.getPlainOutput());
+        }
+        finally {
+            releaseCipher(cipher);
+        }
+        long expirationTime = buffers.plainBuffer.getLong(0);
+        if (isGcmTokenExpired(expirationTime)) {
+            return recordRejection(TokenRejectionReason.EXPIRED);
+        }
+        if (!consumeToken(buffers.decoded, 0, tokenLength, expirationTime == 0L ? Long.MAX_VALUE : expirationTime)) {
+            return false;
+        }
+        return isCorrectAnswer(buffers.plain, Long.BYTES, plainLength - Long.BYTES, userAnswer);
+    }
+
+    /**
+     * Validates a token of the {@link TokenFormat#COMPACT} format. Its expiration time is checked before any
+     * cryptographic operation, as it is read from the header. Since an altered header fails the authentication
+     * afterwards, a forged expiration time can only get a token past this check, never accepted.
+     */
+    private boolean validateCompactToken(TokenBuffers buffers, int tokenLength, SaltKeyMaterial keyMaterial,
+                                         CharSequence userAnswer) throws GeneralSecurityException {
+        int headerLength = getCompactHeaderLength(buffers.decoded, tokenLength);
+        long expirationTime = 0L;
+        if ((buffers.decoded[1] & COMPACT_FLAG_EXPIRATION_TIME) != 0) {
+            expirationTime = readVarint(buffers.decoded, COMPACT_MINIMUM_HEADER_LENGTH);
+        }
+        if (isGcmTokenExpired(expirationTime)) {
+            return validateLegacyFallback(buffers, tokenLength, keyMaterial, userAnswer,
+                    TokenRejectionReason.EXPIRED);
+        }
+        Cipher cipher = acquireCipher(GCM_CIPHER_ALGORITHM);
+        int plainLength;
+        try {
+            initCompactCipher(cipher, Cipher.DECRYPT_MODE, buffers.decoded, headerLength, keyMaterial);
+            plainLength = cipher.doFinal(buffers.getDecodedRange(headerLength + GCM_NONCE_LENGTH, tokenLength),
+                    buffers.getPlainOutput());
+        }
+        finally {
+            releaseCipher(cipher);
+        }
+        if (!consumeToken(buffers.decoded, 0, tokenLength, expirationTime == 0L ? Long.MAX_VALUE : expirationTime)) {
+            return false;
+        }
+        return isCorrectAnswer(buffers.plain, 0, plainLength, userAnswer);
+    }
+
+    private boolean isCorrectAnswer(byte[] solutionBytes, int offset, int length, CharSequence userAnswer) {
+        if (Utf8Comparison.equalsInConstantTime(solutionBytes, offset, length, userAnswer)) {
+            return true;
+        }
+        return recordRejection(TokenRejectionReason.WRONG_ANSWER);
+    }
+
+    /**
+     * Reads the header of a {@link TokenFormat#COMPACT} token, consisting of the version byte, the flags byte and the
+     * expiration time if flagged.
+     *
+     * @return length of the header, or -1 if the bytes do not start with a well-formed header followed by room for
+     * the nonce and the authentication tag
+     */
+    private static int getCompactHeaderLength(byte[] tokenBytes, int tokenLength) {
+        if (tokenLength < COMPACT_MINIMUM_HEADER_LENGTH + GCM_NONCE_LENGTH + GCM_TAG_LENGTH
+                || tokenBytes[0] != COMPACT_TOKEN_VERSION
+                || (tokenBytes[1] & ~COMPACT_FLAG_EXPIRATION_TIME) != 0) {
+            return -1;
+        }
+        int headerLength = COMPACT_MINIMUM_HEADER_LENGTH;
+        if (tokenBytes[1] == COMPACT_FLAG_EXPIRATION_TIME) {
+            int end = Math.min(tokenLength, COMPACT_MINIMUM_HEADER_LENGTH + MAXIMUM_VARINT_LENGTH);
+            while (headerLength < end && tokenBytes[headerLength] < 0) {
+                headerLength++;
+            }
+            if (headerLength == end) {
+                return -1;
+            }
+            headerLength++;
+        }
+        return tokenLength - headerLength >= GCM_NONCE_LENGTH + GCM_TAG_LENGTH ? headerLength : -1;
+    }
+
+    /**
+     * Initialises the cipher for the {@link TokenFormat#COMPACT} format with the nonce following the header of the
+     * given token bytes. The whole header is authenticated, so the expiration time cannot be altered.
+     */
+    private void initCompactCipher(Cipher cipher, int mode, byte[] tokenBytes, int headerLength,
+                                   SaltKeyMaterial keyMaterial) throws GeneralSecurityException {
+        cipher.init(mode, getGcmKey(), new GCMParameterSpec(GCM_TAG_LENGTH * Byte.SIZE, tokenBytes, headerLength,
+                GCM_NONCE_LENGTH));
+        cipher.updateAAD(tokenBytes, 0, headerLength);
+        cipher.updateAAD(keyMaterial.getSaltBytes());
+    }
+
+    /**
+     * @return number of bytes of the unsigned LEB128 encoding of the value
+     */
+    private static int getVarintLength(long value) {
+        return Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(value) + 6) / 7);
+    }
+
+    /**
+     * Writes the value as unsigned LEB128, seven bits per byte starting with the lowest, with the highest bit of every
+     * byte but the last set.
+     */
+    private static void writeVarint(long value, byte[] target, int offset) {
+        long remaining = value;
+        int position = offset;
+        while ((remaining & ~0x7FL) != 0) {
+            target[position++] = (byte) (remaining & 0x7F | 0x80);
+            remaining >>>= 7;
+        }
+        target[position] = (byte) remaining;
+    }
+
+    /**
+     * Reads an unsigned LEB128 value whose bounds were already checked by
+     * {@link #getCompactHeaderLength(byte[], int)}.
+     */
+    private static long readVarint(byte[] source, int offset) {
+        long value = 0L;
+        int shift = 0;
+        int position = offset;
+        byte current;
+        do {
+            current = source[position++];
+            value |= (long) (current & 0x7F) << shift;
+            shift += 7;
+        } while (current < 0);
+        return value;
+    }
+
+    /**
+     * Tokens generated without expiration time carry 0 and are rejected by ciphers that enforce an expiration time.
+     */
+    private boolean isGcmTokenExpired(long expirationTime) {
+        if (expirationTimeSettings == null) {
+            return false;
+        }
+        return expirationTime == 0L || expirationTimeSettings.getTime() > expirationTime;
+    }
+
+    /**
+     * Initialises the cipher for the {@link TokenFormat#AES_GCM} format with the nonce following the version byte of
+     * the given token bytes.
+     */
+    private void initGcmCipher(Cipher cipher, int mode, byte[] tokenBytes, SaltKeyMaterial keyMaterial) throws GeneralSecurityException {
+        cipher.init(mode, getGcmKey(), new GCMParameterSpec(GCM_TAG_LENGTH * Byte.SIZE, tokenBytes, 1,
+                GCM_NONCE_LENGTH));
+        cipher.updateAAD(GCM_VERSION_AAD);
+        cipher.updateAAD(keyMaterial.getSaltBytes());
+    }
+
+    private SecretKey getGcmKey() {
+        SecretKey key = gcmKey;
+        if (key == null) {
+            synchronized (this) {
+                if (gcmKey == null) {
+                    gcmKey = deriveSecretKey(encryptionPassword, GCM_KEY_DERIVATION_SALT,
+                            cipherSettings.secretKeySpecAlgorithm());
+                }
+                key = gcmKey;
+            }
+        }
+        return key;
+    }
+
+    private boolean validateLegacyToken(TokenBuffers buffers, int tokenLength, SaltKeyMaterial keyMaterial,
+                                        CharSequence userAnswer) throws GeneralSecurityException {
+        int cipherBytesStartIndexInToken = getLegacyCipherBytesOffset();
+        if (tokenLength < cipherBytesStartIndexInToken + LEGACY_BLOCK_SIZE || tokenLength % LEGACY_BLOCK_SIZE != 0) {
+            return recordRejection(TokenRejectionReason.MALFORMED_LENGTH);
+        }
+        Cipher cipher = getCipher(keyMaterial.getLegacyKey(), Cipher.DECRYPT_MODE, buffers.decoded, 0,
+                LEGACY_BLOCK_SIZE);
+        try {
+            long expirationTime = Long.MAX_VALUE;
+            if (expirationTimeSettings != null) {
+                int expirationTimeLength = cipher.doFinal(buffers.getDecodedRange(LEGACY_BLOCK_SIZE,
+                        cipherBytesStartIndexInToken), buffers.getPlainOutput());
+                expirationTime = readSignedBigEndian(buffers.plain, expirationTimeLength);
+                if (expirationTimeSettings.getTime() > expirationTime) {
+                    return recordRejection(TokenRejectionReason.EXPIRED);
+                }
+            }
+            int plainLength = cipher.doFinal(buffers.getDecodedRange(cipherBytesStartIndexInToken, tokenLength),
+                    buffers.getPlainOutput());
+            // IV and expiration block are excluded from the fingerprint, as both can be altered without altering the
+            // solution ciphertext, and all altered copies of a token have to share one fingerprint
+            if (!consumeToken(buffers.decoded, cipherBytesStartIndexInToken, tokenLength, expirationTime)) {
+                return false;
+            }
+            return isCorrectAnswer(buffers.plain, 0, plainLength, userAnswer);
+        }
+        finally {
+            releaseCipher(cipher);
+        }
+    }
+
+    /**
+     * Reads a big-endian two's complement number of the given length, as written by {@link BigInteger#toByteArray()},
+     * keeping its lowest 64 bits like {@link BigInteger#longValue()}.
+     */
+    private static long readSignedBigEndian(byte[] bytes, int length) {
+        long value = length > 0 && bytes[0] < 0 ? -1L : 0L;
+        for (int i = 0; i < length; i++) {
+            value = value << Byte.SIZE | bytes[i] & 0xFF;
+        }
+        return value;
+    }
+
+    private static TokenBuffers acquireTokenBuffers() {
+        TokenBuffers buffers = TOKEN_BUFFERS.poll();
+        return buffers != null ? buffers : new TokenBuffers();
+    }
+
+    private static void releaseTokenBuffers(TokenBuffers buffers) {
+        if (buffers.isPoolable()) {
+            TOKEN_BUFFERS.release(buffers);
+        }
+    }
+
+    /**
+     * Buffers for the encoded, decoded and decrypted bytes of a token, reused across validations by the same thread.
+     * The buffers grow with the tokens validated, but are only pooled as long as they stay small.
+     */
+    private static final class TokenBuffers {
+        private byte[] encoded = new byte[INITIAL_BUFFER_LENGTH];
+        private byte[] decoded = new byte[INITIAL_BUFFER_LENGTH];
+        private byte[] plain = new byte[INITIAL_BUFFER_LENGTH];
+        private ByteBuffer decodedBuffer = ByteBuffer.wrap(decoded);
+        private ByteBuffer plainBuffer = ByteBuffer.wrap(plain);
+
+        private byte[] getEncoded(int encodedLength) {
+            if (encoded.length < encodedLength) {
+                encoded = new byte[encodedLength];
+            }
+            return encoded;
+        }
+
+        /**
+         * @return array large enough for decoding the given number of Base64 characters
+         */
+        private byte[] getDecoded(int encodedLength) {
+            int decodedLength = Base64Decoder.getMaximumDecodedLength(encodedLength);
+            if (decoded.length < decodedLength) {
+                decoded = new byte[decodedLength];
+                decodedBuffer = ByteBuffer.wrap(decoded);
+                plain = new byte[decodedLength];
+                plainBuffer = ByteBuffer.wrap(plain);
+            }
+            return decoded;
+        }
+
+        private ByteBuffer getDecodedRange(int from, int to) {
+            return decodedBuffer.limit(to).position(from);
+        }
+
+        private ByteBuffer getPlainOutput() {
+            return plainBuffer.clear();
+        }
+
+        private boolean isPoolable() {
+            return encoded.length <= MAXIMUM_POOLED_BUFFER_LENGTH && decoded.length <= MAXIMUM_POOLED_BUFFER_LENGTH;
+        }
+    }
+
+    /**
+     * Key material derived from a single salt source. Shared between all tokens of a batch that use the same salt, so
+     * the salt is encoded and the legacy key is derived at most once per salt. Only used by a single thread at a time.
+     */
+    private final class SaltKeyMaterial {
+        private final Serializable saltSource;
+        private byte[] saltBytes;
+        private SecretKey legacyKey;
+
+        private SaltKeyMaterial(Serializable saltSource) {
+            this.saltSource = saltSource;
+        }
+
+        private byte[] getSaltBytes() {
+            if (saltBytes == null) {
+                saltBytes = encodeSalt(saltSource);
+            }
+            return saltBytes;
+        }
+
+        private SecretKey getLegacyKey() {
+            if (legacyKey == null) {
+                legacyKey = getSecretKey(encryptionPassword, getSaltBytes());
+            }
+            return legacyKey;
+        }
     }
 }
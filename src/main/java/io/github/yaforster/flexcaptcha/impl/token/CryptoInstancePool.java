@@ -0,0 +1,114 @@
+package io.github.yaforster.flexcaptcha.impl.token;
+
+import io.github.yaforster.flexcaptcha.util.InstancePool;
+import lombok.Builder;
+import lombok.Getter;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps {@link Cipher}, {@link SecretKeyFactory}, {@link Mac} and {@link MessageDigest} instances for reuse, so token
+ * operations do not go through the provider lookup of the JCA on every call. Instances are pooled per algorithm through
+ * an {@link InstancePool} and are re-initialised by the cipher before every use, digests are reset on release.
+ *
+ * @author Yannick Forster
+ */
+public class CryptoInstancePool {
+
+    private static final int DEFAULT_MAXIMUM_SHARED_INSTANCES = 64;
+
+    /**
+     * Maximum number of instances per algorithm shared between virtual threads
+     */
+    @Getter
+    private final int maximumSharedInstances;
+    private final Map<String, InstancePool<Cipher>> cipherPools = new ConcurrentHashMap<>();
+    private final Map<String, InstancePool<SecretKeyFactory>> secretKeyFactoryPools = new ConcurrentHashMap<>();
+    private final Map<String, InstancePool<Mac>> macPools = new ConcurrentHashMap<>();
+    private final Map<String, InstancePool<MessageDigest>> messageDigestPools = new ConcurrentHashMap<>();
+
+    @Builder
+    public CryptoInstancePool(int maximumSharedInstances) {
+        this.maximumSharedInstances = maximumSharedInstances > 0 ? maximumSharedInstances :
+                DEFAULT_MAXIMUM_SHARED_INSTANCES;
+    }
+
+    /**
+     * @param transformation the transformation of the cipher, e.g. "AES/GCM/NoPadding"
+     * @return a pooled or newly created {@link Cipher} that has to be initialised before use
+     * @throws GeneralSecurityException if no provider supports the transformation
+     */
+    public Cipher acquireCipher(final String transformation) throws GeneralSecurityException {
+        Cipher cipher = getPool(cipherPools, transformation).poll();
+        return cipher != null ? cipher : Cipher.getInstance(transformation);
+    }
+
+    /**
+     * @param cipher cipher previously acquired from this pool
+     */
+    public void releaseCipher(final Cipher cipher) {
+        getPool(cipherPools, cipher.getAlgorithm()).release(cipher);
+    }
+
+    /**
+     * @param algorithm the key derivation algorithm, e.g. "PBKDF2WithHmacSHA256"
+     * @return a pooled or newly created {@link SecretKeyFactory}
+     * @throws GeneralSecurityException if no provider supports the algorithm
+     */
+    public SecretKeyFactory acquireSecretKeyFactory(final String algorithm) throws GeneralSecurityException {
+        SecretKeyFactory factory = getPool(secretKeyFactoryPools, algorithm).poll();
+        return factory != null ? factory : SecretKeyFactory.getInstance(algorithm);
+    }
+
+    /**
+     * @param factory factory previously acquired from this pool
+     */
+    public void releaseSecretKeyFactory(final SecretKeyFactory factory) {
+        getPool(secretKeyFactoryPools, factory.getAlgorithm()).release(factory);
+    }
+
+    /**
+     * @param algorithm the MAC algorithm, e.g. "HmacSHA256"
+     * @return a pooled or newly created {@link Mac} that has to be initialised before use
+     * @throws GeneralSecurityException if no provider supports the algorithm
+     */
+    public Mac acquireMac(final String algorithm) throws GeneralSecurityException {
+        Mac mac = getPool(macPools, algorithm).poll();
+        return mac != null ? mac : Mac.getInstance(algorithm);
+    }
+
+    /**
+     * @param mac MAC previously acquired from this pool
+     */
+    public void releaseMac(final Mac mac) {
+        getPool(macPools, mac.getAlgorithm()).release(mac);
+    }
+
+    /**
+     * @param algorithm the digest algorithm, e.g. "SHA-256"
+     * @return a pooled or newly created {@link MessageDigest}
+     * @throws GeneralSecurityException if no provider supports the algorithm
+     */
+    public MessageDigest acquireMessageDigest(final String algorithm) throws GeneralSecurityException {
+        MessageDigest digest = getPool(messageDigestPools, algorithm).poll();
+        return digest != null ? digest : MessageDigest.getInstance(algorithm);
+    }
+
+    /**
+     * @param digest digest previously acquired from this pool, which is reset before it is handed out again
+     */
+    public void releaseMessageDigest(final MessageDigest digest) {
+        digest.reset();
+        getPool(messageDigestPools, digest.getAlgorithm()).release(digest);
+    }
+
+    private <T> InstancePool<T> getPool(Map<String, InstancePool<T>> pools, String algorithm) {
+        return pools.computeIfAbsent(algorithm, key -> new InstancePool<>(maximumSharedInstances));
+    }
+}
@@ -0,0 +1,233 @@
+package io.github.yaforster.flexcaptcha.impl.token;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache for keys derived from the encryption password and the salt of a token. Key derivation through PBKDF2
+ * is by far the most expensive step of generating or validating a token, so repeated salts (e.g. session IDs or
+ * retry attempts) can skip it entirely when a cache is configured on the cipher.
+ * <p>
+ * Entries are evicted after their time to live has passed, and the oldest entries are dropped once the maximum size
+ * is exceeded. Concurrent requests for the same missing key wait for a single derivation instead of running it
+ * multiple times.
+ *
+ * @author Yannick Forster
+ */
+public class DerivedKeyCache {
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+    private static final long DEFAULT_TIME_TO_LIVE_MILLIS = 5 * 60 * 1000L;
+    /**
+     * Share of the maximum size that is dropped at once when the cache overflows, so eviction does not have to scan
+     * the cache on every insert.
+     */
+    private static final double EVICTION_BATCH_RATIO = 0.1d;
+
+    /**
+     * Maximum number of derived keys held in the cache
+     */
+    @Getter
+    private final int maximumSize;
+    /**
+     * Time in milliseconds after which a derived key is removed from the cache
+     */
+    @Getter
+    private final long timeToLiveMillis;
+    /**
+     * Provides the current time in milliseconds used to check the age of the entries
+     */
+    private final Supplier<Long> currentTimeProvider;
+    private final Map<CacheKey, CacheEntry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    @Builder
+    public DerivedKeyCache(int maximumSize, Long timeToLiveMillis, Supplier<Long> currentTimeProvider) {
+        this.maximumSize = getMaximumSizeOrDefault(maximumSize);
+        this.timeToLiveMillis = getTimeToLiveMillisOrDefault(timeToLiveMillis);
+        this.currentTimeProvider = getCurrentTimeProviderOrDefault(currentTimeProvider);
+    }
+
+    private static int getMaximumSizeOrDefault(int maximumSize) {
+        return maximumSize > 0 ? maximumSize : DEFAULT_MAXIMUM_SIZE;
+    }
+
+    private static long getTimeToLiveMillisOrDefault(Long timeToLiveMillis) {
+        return Optional.ofNullable(timeToLiveMillis).orElse(DEFAULT_TIME_TO_LIVE_MILLIS);
+    }
+
+    private static Supplier<Long> getCurrentTimeProviderOrDefault(Supplier<Long> currentTimeProvider) {
+        return Optional.ofNullable(currentTimeProvider).orElse(System::currentTimeMillis);
+    }
+
+    /**
+     * Returns the cached key for the given combination of password, salt and settings, or derives and caches it if
+     * no valid entry exists.
+     *
+     * @param password       the password the key is derived from
+     * @param saltBytes      the salt the key is derived with
+     * @param cipherSettings the settings used for the derivation
+     * @param keyDerivation  derivation to run if the key is not cached
+     * @return the derived key
+     * @throws GeneralSecurityException if the key derivation fails
+     */
+    public SecretKey getOrDerive(final String password, final byte[] saltBytes, final CipherSettings cipherSettings,
+                                 final KeyDerivation keyDerivation) throws GeneralSecurityException {
+        CacheKey lookupKey = new CacheKey(password, saltBytes, cipherSettings);
+        long now = currentTimeProvider.get();
+        CacheEntry entry = entries.get(lookupKey);
+        if (entry != null && !entry.isExpired(now, timeToLiveMillis)) {
+            hitCount.increment();
+            return awaitKey(lookupKey, entry);
+        }
+        if (entry != null) {
+            evict(lookupKey, entry);
+        }
+        // the salt is only copied for keys stored in the cache, lookups use the caller's array
+        CacheKey cacheKey = new CacheKey(password, saltBytes.clone(), cipherSettings);
+        CacheEntry newEntry = new CacheEntry(new CompletableFuture<>(), now);
+        CacheEntry existingEntry = entries.putIfAbsent(cacheKey, newEntry);
+        if (existingEntry != null) {
+            hitCount.increment();
+            return awaitKey(cacheKey, existingEntry);
+        }
+        missCount.increment();
+        return deriveInto(cacheKey, newEntry, keyDerivation);
+    }
+
+    private SecretKey deriveInto(CacheKey cacheKey, CacheEntry entry, KeyDerivation keyDerivation) throws GeneralSecurityException {
+        try {
+            SecretKey key = keyDerivation.derive();
+            entry.key().complete(key);
+            evictIfOversized();
+            return key;
+        }
+        catch (GeneralSecurityException | RuntimeException originalException) {
+            entries.remove(cacheKey, entry);
+            entry.key().completeExceptionally(originalException);
+            throw originalException;
+        }
+    }
+
+    private SecretKey awaitKey(CacheKey cacheKey, CacheEntry entry) throws GeneralSecurityException {
+        try {
+            return entry.key().join();
+        }
+        catch (CompletionException completionException) {
+            entries.remove(cacheKey, entry);
+            if (completionException.getCause() instanceof GeneralSecurityException gse) {
+                throw gse;
+            }
+            throw completionException;
+        }
+    }
+
+    /**
+     * Removes all expired entries and, if the cache still exceeds its maximum size, the oldest entries until a
+     * batch of free space is available again.
+     */
+    private void evictIfOversized() {
+        if (entries.size() <= maximumSize) {
+            return;
+        }
+        long now = currentTimeProvider.get();
+        entries.forEach((cacheKey, entry) -> {
+            if (entry.isExpired(now, timeToLiveMillis)) {
+                evict(cacheKey, entry);
+            }
+        });
+        int targetSize = maximumSize - (int) (maximumSize * EVICTION_BATCH_RATIO);
+        int surplus = entries.size() - targetSize;
+        if (surplus <= 0) {
+            return;
+        }
+        entries.entrySet()
+                .stream()
+                .sorted(Comparator.comparingLong(mapEntry -> mapEntry.getValue().createdAt()))
+                .limit(surplus)
+                .forEach(mapEntry -> evict(mapEntry.getKey(), mapEntry.getValue()));
+    }
+
+    private void evict(CacheKey cacheKey, CacheEntry entry) {
+        if (entries.remove(cacheKey, entry)) {
+            evictionCount.increment();
+        }
+    }
+
+    /**
+     * Removes every entry from the cache. The statistics are kept.
+     */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * @return number of keys currently held in the cache
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return number of lookups that were answered from the cache
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return number of lookups that required a key derivation
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return number of entries removed because they expired or the cache was full
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Key derivation run by the cache when no valid entry exists for the requested key.
+     */
+    @FunctionalInterface
+    public interface KeyDerivation {
+        SecretKey derive() throws GeneralSecurityException;
+    }
+
+    private record CacheEntry(CompletableFuture<SecretKey> key, long createdAt) {
+        boolean isExpired(long now, long timeToLiveMillis) {
+            return now - createdAt >= timeToLiveMillis;
+        }
+    }
+
+    private record CacheKey(String password, byte[] saltBytes, CipherSettings cipherSettings) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof CacheKey that && Objects.equals(password, that.password) && Arrays.equals(saltBytes,
+                    that.saltBytes) && Objects.equals(cipherSettings, that.cipherSettings);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * Objects.hashCode(password) + Arrays.hashCode(saltBytes)) + Objects.hashCode(cipherSettings);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package io.github.yaforster.flexcaptcha.impl.token;
+
+import io.github.yaforster.flexcaptcha.core.AbstractCaptchaCipher;
+import io.github.yaforster.flexcaptcha.core.AbstractSaltEncoder;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Encodes the common salt types directly into a single byte array without going through Java serialization. Strings
+ * and other character sequences are encoded as UTF-8, {@link UUID}s and {@link Long}s as their big-endian bytes and
+ * byte arrays as they are. Any other type falls back to Java serialization.
+ * <p>
+ * Each encoding is prefixed with a type byte, so e.g. the String "1" and the Long 1 do not result in the same salt.
+ * Tokens generated with the {@link SerializingSaltEncoder} cannot be validated with this encoder.
+ *
+ * @author Yannick Forster
+ */
+public class FastSaltEncoder extends AbstractSaltEncoder {
+
+    private static final byte TYPE_SERIALIZED = 0;
+    private static final byte TYPE_CHARACTERS = 1;
+    private static final byte TYPE_UUID = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_BYTES = 4;
+
+    @Override
+    public byte[] encode(final Serializable saltSource) {
+        return switch (saltSource) {
+            case CharSequence characters -> encodeCharacters(characters);
+            case UUID uuid -> encodeUuid(uuid);
+            case Long number -> encodeLong(number);
+            case byte[] bytes -> encodeBytes(bytes);
+            case null, default -> encodeSerialized(saltSource);
+        };
+    }
+
+    /**
+     * Encodes the characters as UTF-8 into an array sized exactly for the type byte and the encoded characters.
+     * Unpaired surrogates are encoded as '?', in line with {@link String#getBytes}.
+     */
+    private static byte[] encodeCharacters(CharSequence characters) {
+        byte[] encoded = new byte[1 + getUtf8Length(characters)];
+        encoded[0] = TYPE_CHARACTERS;
+        int position = 1;
+        int length = characters.length();
+        for (int i = 0; i < length; i++) {
+            char c = characters.charAt(i);
+            if (c < 0x80) {
+                encoded[position++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                encoded[position++] = (byte) (0xC0 | c >> 6);
+                encoded[position++] = (byte) (0x80 | c & 0x3F);
+            }
+            else if (isSurrogatePair(characters, i)) {
+                int codePoint = Character.toCodePoint(c, characters.charAt(++i));
+                encoded[position++] = (byte) (0xF0 | codePoint >> 18);
+                encoded[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                encoded[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                encoded[position++] = (byte) (0x80 | codePoint & 0x3F);
+            }
+            else if (Character.isSurrogate(c)) {
+                encoded[position++] = '?';
+            }
+            else {
+                encoded[position++] = (byte) (0xE0 | c >> 12);
+                encoded[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                encoded[position++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return encoded;
+    }
+
+    private static int getUtf8Length(CharSequence characters) {
+        int length = characters.length();
+        int utf8Length = 0;
+        for (int i = 0; i < length; i++) {
+            char c = characters.charAt(i);
+            if (c < 0x80) {
+                utf8Length += 1;
+            }
+            else if (c < 0x800) {
+                utf8Length += 2;
+            }
+            else if (isSurrogatePair(characters, i)) {
+                utf8Length += 4;
+                i++;
+            }
+            else if (Character.isSurrogate(c)) {
+                utf8Length += 1;
+            }
+            else {
+                utf8Length += 3;
+            }
+        }
+        return utf8Length;
+    }
+
+    private static boolean isSurrogatePair(CharSequence characters, int index) {
+        return Character.isHighSurrogate(characters.charAt(index)) && index + 1 < characters.length() && Character.isLowSurrogate(characters.charAt(index + 1));
+    }
+
+    private static byte[] encodeUuid(UUID uuid) {
+        byte[] encoded = new byte[1 + 2 * Long.BYTES];
+        encoded[0] = TYPE_UUID;
+        writeLong(uuid.getMostSignificantBits(), encoded, 1);
+        writeLong(uuid.getLeastSignificantBits(), encoded, 1 + Long.BYTES);
+        return encoded;
+    }
+
+    private static byte[] encodeLong(long number) {
+        byte[] encoded = new byte[1 + Long.BYTES];
+        encoded[0] = TYPE_LONG;
+        writeLong(number, encoded, 1);
+        return encoded;
+    }
+
+    private static byte[] encodeBytes(byte[] bytes) {
+        byte[] encoded = new byte[1 + bytes.length];
+        encoded[0] = TYPE_BYTES;
+        System.arraycopy(bytes, 0, encoded, 1, bytes.length);
+        return encoded;
+    }
+
+    private static byte[] encodeSerialized(Serializable saltSource) {
+        byte[] serialized = AbstractCaptchaCipher.getSaltBytes(saltSource);
+        byte[] encoded = new byte[1 + serialized.length];
+        encoded[0] = TYPE_SERIALIZED;
+        System.arraycopy(serialized, 0, encoded, 1, serialized.length);
+        return encoded;
+    }
+
+    private static void writeLong(long value, byte[] target, int offset) {
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            target[offset + i] = (byte) value;
+            value >>>= Byte.SIZE;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package io.github.yaforster.flexcaptcha.impl.token;
+
+import io.github.yaforster.flexcaptcha.core.AbstractCaptchaCipher;
+import io.github.yaforster.flexcaptcha.core.AbstractReplayStore;
+import io.github.yaforster.flexcaptcha.core.AbstractSaltEncoder;
+import io.github.yaforster.flexcaptcha.core.TokenRejectionReason;
+import io.github.yaforster.flexcaptcha.core.TokenValidationRequest;
+import io.github.yaforster.flexcaptcha.util.AbstractRandomSource;
+import io.github.yaforster.flexcaptcha.util.StrongRandomSource;
+import lombok.Builder;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Cipher that never encrypts the captcha solution. The token only carries a truncated HMAC tag over the normalized
+ * solution, the salt, the expiration time and a random nonce. Validation recomputes the tag from the given answer and
+ * compares both tags in constant time, which is considerably cheaper than decrypting the solution and results in
+ * short tokens of fixed length.
+ * <p>
+ * The HMAC key is derived from the encryption password once when the cipher is constructed. If a replay store is
+ * configured, a token is consumed by its first correctly answered validation. Tokens of the wrong length and expired
+ * tokens are rejected before the tag is computed, as the expiration time is part of the authenticated header.
+ *
+ * @author Yannick Forster
+ */
+public class HmacCaptchaCipher extends AbstractCaptchaCipher {
+
+    /**
+     * Leading byte of tokens generated by this cipher
+     */
+    private static final byte HMAC_TOKEN_VERSION = 0x10;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int NONCE_LENGTH = 8;
+    /**
+     * Number of bytes of the HMAC kept in the token
+     */
+    private static final int TAG_LENGTH = 16;
+    private static final int TAG_OFFSET = 1 + NONCE_LENGTH + Long.BYTES;
+    private static final int TOKEN_LENGTH = TAG_OFFSET + TAG_LENGTH;
+    private static final int ENCODED_TOKEN_LENGTH = (TOKEN_LENGTH + 2) / 3 * 4;
+    private static final byte[] KEY_DERIVATION_SALT = "flexcaptcha-hmac-token-key".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * If true, solution and answer are compared regardless of their letter case
+     */
+    private final boolean ignoreCase;
+    private final SecretKey macKey;
+
+    @Builder
+    private HmacCaptchaCipher(CipherSettings cipherSettings, String encryptionPassword,
+                              ExpirationTimeSettings expirationTimeSettings, CryptoInstancePool cryptoInstancePool,
+                              AbstractSaltEncoder saltEncoder, boolean ignoreCase, AbstractReplayStore replayStore,
+                              AbstractRandomSource randomSource) {
+        super(getCipherSettingsOrDefault(cipherSettings), getEncryptionPasswordOrDefault(encryptionPassword),
+                expirationTimeSettings);
+        setCryptoInstancePool(cryptoInstancePool);
+        setSaltEncoder(getSaltEncoderOrDefault(saltEncoder));
+        setReplayStore(replayStore);
+        setRandomSource(getRandomSourceOrDefault(randomSource));
+        this.ignoreCase = ignoreCase;
+        this.macKey = deriveSecretKey(this.encryptionPassword, KEY_DERIVATION_SALT, MAC_ALGORITHM);
+    }
+
+    private static CipherSettings getCipherSettingsOrDefault(CipherSettings cipherSettings) {
+        return Optional.ofNullable(cipherSettings).orElse(CipherSettings.getDefaultCipherSettings());
+    }
+
+    private static String getEncryptionPasswordOrDefault(String encryptionPassword) {
+        return Optional.ofNullable(encryptionPassword).orElse(StringUtils.EMPTY);
+    }
+
+    private static AbstractSaltEncoder getSaltEncoderOrDefault(AbstractSaltEncoder saltEncoder) {
+        return Optional.ofNullable(saltEncoder).orElseGet(SerializingSaltEncoder::new);
+    }
+
+    private static AbstractRandomSource getRandomSourceOrDefault(AbstractRandomSource randomSource) {
+        return Optional.ofNullable(randomSource).orElseGet(StrongRandomSource::new);
+    }
+
+    @Override
+    public final String generateToken(String captchaSolution, Serializable saltSource) {
+        return generateToken(captchaSolution, encodeSalt(saltSource));
+    }
+
+    @Override
+    protected final List<String> generateTokensWithSameSalt(Serializable saltSource, List<String> solutions) {
+        byte[] saltBytes = encodeSalt(saltSource);
+        return solutions.stream().map(solution -> generateToken(solution, saltBytes)).toList();
+    }
+
+    private String generateToken(String captchaSolution, byte[] saltBytes) {
+        try {
+            byte[] tokenBytes = new byte[TOKEN_LENGTH];
+            tokenBytes[0] = HMAC_TOKEN_VERSION;
+            byte[] nonce = generateRandomBytes(NONCE_LENGTH);
+            System.arraycopy(nonce, 0, tokenBytes, 1, NONCE_LENGTH);
+            ByteBuffer.wrap(tokenBytes, 1 + NONCE_LENGTH, Long.BYTES).putLong(getExpirationTime());
+            byte[] tag = computeTag(tokenBytes, captchaSolution, saltBytes);
+            System.arraycopy(tag, 0, tokenBytes, TAG_OFFSET, TAG_LENGTH);
+            return Base64.getEncoder().encodeToString(tokenBytes);
+        }
+        catch (Exception originalException) {
+            throw mapTagComputationException(originalException);
+        }
+    }
+
+    @Override
+    public final boolean validateToken(String tokenString, Serializable saltSource, String answer) {
+        return validateToken(tokenString, encodeSalt(saltSource), answer);
+    }
+
+    @Override
+    protected final boolean[] validateTokensWithSameSalt(Serializable saltSource,
+                                                         List<TokenValidationRequest> requests) {
+        byte[] saltBytes = encodeSalt(saltSource);
+        boolean[] results = new boolean[requests.size()];
+        for (int i = 0; i < results.length; i++) {
+            TokenValidationRequest request = requests.get(i);
+            try {
+                results[i] = validateToken(request.token(), saltBytes, request.answer());
+            }
+            catch (RuntimeException validationFailure) {
+                results[i] = false;
+            }
+        }
+        return results;
+    }
+
+    private boolean validateToken(String tokenString, byte[] saltBytes, String answer) {
+        if (tokenString.length() != ENCODED_TOKEN_LENGTH) {
+            return recordRejection(TokenRejectionReason.MALFORMED_LENGTH);
+        }
+        byte[] tokenBytes;
+        try {
+            tokenBytes = Base64.getDecoder().decode(tokenString.getBytes(StandardCharsets.US_ASCII));
+        }
+        catch (IllegalArgumentException malformedBase64) {
+            return recordRejection(TokenRejectionReason.MALFORMED_BASE64);
+        }
+        try {
+            if (tokenBytes.length != TOKEN_LENGTH) {
+                return recordRejection(TokenRejectionReason.MALFORMED_LENGTH);
+            }
+            if (tokenBytes[0] != HMAC_TOKEN_VERSION) {
+                return recordRejection(TokenRejectionReason.UNSUPPORTED_FORMAT);
+            }
+            long expirationTime = ByteBuffer.wrap(tokenBytes, 1 + NONCE_LENGTH, Long.BYTES).getLong();
+            if (isTokenExpired(expirationTime)) {
+                return recordRejection(TokenRejectionReason.EXPIRED);
+            }
+            byte[] expectedTag = computeTag(tokenBytes, answer, saltBytes);
+            boolean tagMatches = MessageDigest.isEqual(Arrays.copyOf(expectedTag, TAG_LENGTH),
+                    Arrays.copyOfRange(tokenBytes, TAG_OFFSET, TOKEN_LENGTH));
+            if (!tagMatches) {
+                return recordRejection(TokenRejectionReason.WRONG_ANSWER);
+            }
+            // the tag only matches for the correct answer, so only correctly answered tokens are consumed
+            return consumeToken(tokenBytes, 0, TOKEN_LENGTH, expirationTime == 0L ? Long.MAX_VALUE : expirationTime);
+        }
+        catch (Exception originalException) {
+            throw mapTagComputationException(originalException);
+        }
+    }
+
+    /**
+     * Computes the HMAC over the token header (version, nonce and expiration time), the salt and the normalized
+     * solution. The length of the salt is included so salt and solution cannot be shifted into each other.
+     */
+    private byte[] computeTag(byte[] tokenBytes, String solution, byte[] saltBytes) throws GeneralSecurityException {
+        Mac mac = acquireMac(MAC_ALGORITHM);
+        try {
+            mac.init(macKey);
+            mac.update(tokenBytes, 0, TAG_OFFSET);
+            mac.update(ByteBuffer.allocate(Integer.BYTES).putInt(saltBytes.length).array());
+            mac.update(saltBytes);
+            return mac.doFinal(normalize(solution).getBytes(StandardCharsets.UTF_8));
+        }
+        finally {
+            releaseMac(mac);
+        }
+    }
+
+    private String normalize(String solution) {
+        String normalized = Normalizer.normalize(solution, Normalizer.Form.NFC);
+        return ignoreCase ? normalized.toLowerCase(Locale.ROOT) : normalized;
+    }
+
+    private long getExpirationTime() {
+        if (expirationTimeSettings == null) {
+            return 0L;
+        }
+        return expirationTimeSettings.expirationTimeMillisOffset() + expirationTimeSettings.getTime();
+    }
+
+    /**
+     * Tokens generated without expiration time carry 0 and are rejected by ciphers that enforce an expiration time.
+     */
+    private boolean isTokenExpired(long expirationTime) {
+        if (expirationTimeSettings == null) {
+            return false;
+        }
+        return expirationTime == 0L || expirationTimeSettings.getTime() > expirationTime;
+    }
+
+    private TokengenerationException mapTagComputationException(Exception originalException) {
+        String errorMessage = "Fatal error during cryptographic operation: " + originalException.getLocalizedMessage();
+        return new TokengenerationException(errorMessage, originalException);
+    }
+}
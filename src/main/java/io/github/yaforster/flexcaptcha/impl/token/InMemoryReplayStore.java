@@ -0,0 +1,216 @@
+package io.github.yaforster.flexcaptcha.impl.token;
+
+import io.github.yaforster.flexcaptcha.core.AbstractReplayStore;
+import lombok.Builder;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the fingerprints of consumed tokens in memory. The fingerprints are spread over shards. Each shard records
+ * every fingerprint once in a map, and groups the fingerprints into buckets by the time until which they are retained.
+ * Recording a fingerprint is a single {@code putIfAbsent} on the map, so of two concurrent validations of the same
+ * token only one succeeds, whatever the buckets they fall into. Once the end of a bucket has passed, the whole bucket
+ * is dropped at once, so cleaning up never needs to search for expired entries.
+ * <p>
+ * The number of recorded fingerprints is capped. If the cap is reached and no bucket has expired yet, new tokens are
+ * rejected rather than accepted without replay protection. For the same reason, tokens expiring later than the
+ * maximum retention time from now are rejected, as they would still be valid once their fingerprint is forgotten.
+ * <p>
+ * Tokens without expiration time are retained for the maximum retention time.
+ *
+ * @author Yannick Forster
+ */
+public class InMemoryReplayStore extends AbstractReplayStore {
+
+    private static final int BUCKETS_PER_EXPIRATION_OFFSET = 16;
+
+    private final Shard[] shards;
+    private final int shardMask;
+    private final long bucketWidthMillis;
+    private final long maximumRetentionMillis;
+    private final long maximumEntries;
+    private final Supplier<Long> currentTimeProvider;
+    private final AtomicLong size = new AtomicLong();
+    /**
+     * Index of the first bucket that was not yet due for removal during the last cleanup
+     */
+    private final AtomicLong cleanedUpToBucket = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong retentionExceededCount = new AtomicLong();
+
+    /**
+     * @param shardCount             number of independent shards, rounded up to a power of two. Defaults to four
+     *                               times the number of available processors.
+     * @param bucketWidthMillis      range of expiration times grouped into one bucket. Defaults to one second.
+     * @param maximumRetentionMillis time for which tokens without expiration time are remembered. Tokens expiring
+     *                               later than this from the time of validation are rejected, so it has to be at
+     *                               least the expiration time offset of the cipher. Defaults to 30 minutes.
+     * @param maximumEntries         maximum number of recorded fingerprints. Defaults to 1,000,000.
+     * @param currentTimeProvider    source of the current time, which should match the one of the
+     *                               {@link ExpirationTimeSettings} of the cipher. Defaults to
+     *                               {@link System#currentTimeMillis()}.
+     */
+    @Builder
+    private InMemoryReplayStore(Integer shardCount, Long bucketWidthMillis, Long maximumRetentionMillis,
+                                Long maximumEntries, Supplier<Long> currentTimeProvider) {
+        int shards = getShardCountOrDefault(shardCount);
+        this.shards = createShards(shards);
+        this.shardMask = shards - 1;
+        this.bucketWidthMillis = Optional.ofNullable(bucketWidthMillis).orElse(TimeUnit.SECONDS.toMillis(1));
+        this.maximumRetentionMillis = Optional.ofNullable(maximumRetentionMillis).orElse(TimeUnit.MINUTES.toMillis(30));
+        this.maximumEntries = Optional.ofNullable(maximumEntries).orElse(1_000_000L);
+        this.currentTimeProvider = Optional.ofNullable(currentTimeProvider).orElse(System::currentTimeMillis);
+        if (this.bucketWidthMillis <= 0 || this.maximumRetentionMillis <= 0 || this.maximumEntries <= 0) {
+            throw new IllegalArgumentException("Bucket width, retention time and maximum entries must be positive.");
+        }
+    }
+
+    /**
+     * Creates a store whose buckets and retention time match the given expiration time settings. The expiration
+     * offset is split into 16 buckets and the store uses the time provider of the settings.
+     *
+     * @param expirationTimeSettings expiration time settings of the cipher the store is used with
+     * @param maximumEntries         maximum number of recorded fingerprints
+     * @return new store
+     */
+    public static InMemoryReplayStore forExpirationTimeSettings(ExpirationTimeSettings expirationTimeSettings,
+                                                                long maximumEntries) {
+        long offset = expirationTimeSettings.expirationTimeMillisOffset();
+        return InMemoryReplayStore.builder()
+                .bucketWidthMillis(Math.max(1L, offset / BUCKETS_PER_EXPIRATION_OFFSET))
+                .maximumRetentionMillis(offset)
+                .maximumEntries(maximumEntries)
+                .currentTimeProvider(expirationTimeSettings.currentTimeProvider())
+                .build();
+    }
+
+    private static int getShardCountOrDefault(Integer shardCount) {
+        int requested = Optional.ofNullable(shardCount).orElse(4 * Runtime.getRuntime().availableProcessors());
+        if (requested <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive.");
+        }
+        return requested == 1 ? 1 : Integer.highestOneBit(requested - 1) << 1;
+    }
+
+    private static Shard[] createShards(int shardCount) {
+        Shard[] shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(new ConcurrentHashMap<>(), new ConcurrentSkipListMap<>());
+        }
+        return shards;
+    }
+
+    @Override
+    public boolean markConsumed(final long fingerprint, final long expirationTime) {
+        long now = currentTimeProvider.get();
+        if (expirationTime < now) {
+            return false;
+        }
+        long retainedUntil = expirationTime;
+        if (expirationTime == Long.MAX_VALUE) {
+            retainedUntil = now + maximumRetentionMillis;
+        }
+        else if (expirationTime - now > maximumRetentionMillis) {
+            retentionExceededCount.incrementAndGet();
+            return false;
+        }
+        removeExpiredBuckets(now);
+        Shard shard = shards[spread(fingerprint) & shardMask];
+        if (size.incrementAndGet() > maximumEntries) {
+            size.decrementAndGet();
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+        Long bucketIndex = retainedUntil / bucketWidthMillis;
+        if (shard.bucketIndices().putIfAbsent(fingerprint, bucketIndex) != null) {
+            size.decrementAndGet();
+            return false;
+        }
+        Set<Long> bucket = shard.buckets().computeIfAbsent(bucketIndex, index -> ConcurrentHashMap.newKeySet());
+        bucket.add(fingerprint);
+        if (shard.buckets().get(bucketIndex) != bucket) {
+            // a cleanup with a later current time dropped the bucket in the meantime, so the token has expired
+            forget(shard, fingerprint, bucketIndex);
+        }
+        return true;
+    }
+
+    /**
+     * Drops all buckets whose expiration times lie completely in the past, together with the fingerprints recorded
+     * in them. Only the first caller after the start of a new bucket does the cleanup, all others return immediately.
+     */
+    private void removeExpiredBuckets(long now) {
+        long currentBucket = now / bucketWidthMillis;
+        long cleanedUpTo = cleanedUpToBucket.get();
+        if (cleanedUpTo >= currentBucket || !cleanedUpToBucket.compareAndSet(cleanedUpTo, currentBucket)) {
+            return;
+        }
+        for (Shard shard : shards) {
+            for (Long bucketIndex : shard.buckets().headMap(currentBucket).keySet()) {
+                Set<Long> expiredBucket = shard.buckets().remove(bucketIndex);
+                if (expiredBucket != null) {
+                    for (Long fingerprint : expiredBucket) {
+                        forget(shard, fingerprint, bucketIndex);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the fingerprint if it is still recorded for the given bucket. Only the removal that actually takes the
+     * fingerprint out of the map reduces the size, so a fingerprint forgotten twice is only counted once.
+     */
+    private void forget(Shard shard, long fingerprint, Long bucketIndex) {
+        if (shard.bucketIndices().remove(fingerprint, bucketIndex)) {
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Mixes the upper bits of the fingerprint into the bits used to select the shard
+     */
+    private static int spread(long fingerprint) {
+        long mixed = fingerprint ^ fingerprint >>> 32;
+        return (int) (mixed ^ mixed >>> 16);
+    }
+
+    /**
+     * @return number of currently recorded fingerprints
+     */
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * @return number of tokens rejected because the maximum number of entries was reached
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * @return number of tokens rejected because they expire later than the maximum retention time from now
+     */
+    public long getRetentionExceededCount() {
+        return retentionExceededCount.get();
+    }
+
+    /**
+     * Fingerprints of one shard
+     *
+     * @param bucketIndices index of the bucket of each recorded fingerprint
+     * @param buckets       fingerprints grouped by the index of their bucket, i.e. the time until which they are
+     *                      retained divided by the bucket width
+     */
+    private record Shard(ConcurrentMap<Long, Long> bucketIndices, ConcurrentNavigableMap<Long, Set<Long>> buckets) {
+    }
+}
@@ -0,0 +1,283 @@
+package io.github.yaforster.flexcaptcha.impl.token;
+
+import io.github.yaforster.flexcaptcha.core.AbstractReplayStore;
+import lombok.Builder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the fingerprints of consumed tokens in a memory-mapped file, so the record of consumed tokens survives a
+ * restart. The file is a fixed-size open-addressing hash table of 16 byte slots, each holding a fingerprint and the
+ * time until which it is retained. Slots are read and claimed through atomic operations directly on the mapped
+ * memory, without locks or copies.
+ * <p>
+ * Writes only reach the page cache on the request path. A background thread forces the mapped pages to disk in the
+ * configured interval, so after a power loss the fingerprints recorded since the last flush may be lost. After a crash
+ * of the process, nothing is lost, and slots that were being written during the crash are released when the file is
+ * opened again.
+ * <p>
+ * Expired slots are reused by later fingerprints. If no free or expired slot is found within the maximum probe
+ * length, new tokens are rejected rather than accepted without replay protection. For the same reason, tokens expiring
+ * later than the maximum retention time from now are rejected, as they would still be valid once their slot is
+ * reused.
+ *
+ * @author Yannick Forster
+ */
+public class MappedReplayStore extends AbstractReplayStore implements Closeable {
+
+    private static final long MAGIC = 0x4643_5250_5354_4F52L;
+    private static final long FORMAT_VERSION = 1L;
+    private static final int HEADER_LENGTH = 64;
+    private static final int SLOT_LENGTH = 16;
+    private static final int MAXIMUM_CAPACITY = 1 << 26;
+    /**
+     * Expiry stamp of a slot that was never used
+     */
+    private static final long EMPTY = 0L;
+    /**
+     * Expiry stamp of a slot whose fingerprint is being written
+     */
+    private static final long WRITING = -1L;
+    /**
+     * Expiry stamp of a slot released during recovery, always in the past
+     */
+    private static final long RELEASED = 1L;
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.nativeOrder());
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int slotMask;
+    private final int slotShift;
+    private final int maximumProbes;
+    private final long maximumRetentionMillis;
+    private final Supplier<Long> currentTimeProvider;
+    private final ScheduledExecutorService flushExecutor;
+
+    /**
+     * @param file                   file backing the store, created if it does not exist
+     * @param capacity               number of slots, rounded up to a power of two. Has to match the capacity the file
+     *                               was created with. Defaults to 1,048,576 slots, i.e. a file of 16 MiB.
+     * @param maximumProbes          number of slots searched for a fingerprint before the store counts as full.
+     *                               Defaults to 64.
+     * @param maximumRetentionMillis time for which tokens without expiration time are remembered. Tokens expiring
+     *                               later than this from the time of validation are rejected, so it has to be at
+     *                               least the expiration time offset of the cipher. Defaults to 30 minutes.
+     * @param flushIntervalMillis    interval in which the mapped pages are forced to disk. Defaults to one second.
+     * @param currentTimeProvider    source of the current time, which should match the one of the
+     *                               {@link ExpirationTimeSettings} of the cipher. Defaults to
+     *                               {@link System#currentTimeMillis()}.
+     */
+    @Builder
+    private MappedReplayStore(Path file, Integer capacity, Integer maximumProbes, Long maximumRetentionMillis,
+                              Long flushIntervalMillis, Supplier<Long> currentTimeProvider) {
+        Objects.requireNonNull(file, "A file is required for the mapped replay store.");
+        int slots = getCapacityOrDefault(capacity);
+        this.slotMask = slots - 1;
+        this.slotShift = Long.SIZE - Integer.numberOfTrailingZeros(slots);
+        this.maximumProbes = Math.min(slots, Optional.ofNullable(maximumProbes).orElse(64));
+        this.maximumRetentionMillis = Optional.ofNullable(maximumRetentionMillis).orElse(TimeUnit.MINUTES.toMillis(30));
+        this.currentTimeProvider = Optional.ofNullable(currentTimeProvider).orElse(System::currentTimeMillis);
+        if (this.maximumProbes <= 0 || this.maximumRetentionMillis <= 0) {
+            throw new IllegalArgumentException("Maximum probes and retention time must be positive.");
+        }
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+        catch (IOException originalException) {
+            throw new ReplayStoreException("Could not open replay store file " + file + ": " + originalException.getLocalizedMessage(), originalException);
+        }
+        try {
+            this.buffer = mapFile(channel, slots);
+        }
+        catch (IOException | RuntimeException originalException) {
+            closeAfterFailure(channel, originalException);
+            if (originalException instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new ReplayStoreException("Could not map replay store file " + file + ": " + originalException.getLocalizedMessage(), originalException);
+        }
+        long flushInterval = Optional.ofNullable(flushIntervalMillis).orElse(TimeUnit.SECONDS.toMillis(1));
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "flexcaptcha-replay-store-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.scheduleWithFixedDelay(buffer::force, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private static int getCapacityOrDefault(Integer capacity) {
+        int requested = Optional.ofNullable(capacity).orElse(1 << 20);
+        if (requested <= 0 || requested > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + MAXIMUM_CAPACITY + ".");
+        }
+        return requested == 1 ? 1 : Integer.highestOneBit(requested - 1) << 1;
+    }
+
+    private static void closeAfterFailure(FileChannel channel, Exception failure) {
+        try {
+            channel.close();
+        }
+        catch (IOException closeException) {
+            failure.addSuppressed(closeException);
+        }
+    }
+
+    /**
+     * Maps the file, writing the header if the file is new and releasing slots left in the middle of a write
+     * otherwise.
+     */
+    private static MappedByteBuffer mapFile(FileChannel channel, int slots) throws IOException {
+        long length = HEADER_LENGTH + (long) slots * SLOT_LENGTH;
+        boolean newFile = channel.size() == 0;
+        if (!newFile && channel.size() != length) {
+            throw new ReplayStoreException("Size of the replay store file does not match a capacity of " + slots + " slots.");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        if (newFile) {
+            LONGS.set(buffer, 8, FORMAT_VERSION);
+            LONGS.set(buffer, 16, (long) slots);
+            LONGS.setVolatile(buffer, 0, MAGIC);
+            buffer.force();
+            return buffer;
+        }
+        if ((long) LONGS.get(buffer, 0) != MAGIC || (long) LONGS.get(buffer, 8) != FORMAT_VERSION
+                || (long) LONGS.get(buffer, 16) != slots) {
+            throw new ReplayStoreException("File is not a replay store of this version, capacity and byte order.");
+        }
+        for (int slot = 0; slot < slots; slot++) {
+            if ((long) LONGS.get(buffer, expiryOffset(slot)) == WRITING) {
+                LONGS.set(buffer, expiryOffset(slot), RELEASED);
+            }
+        }
+        return buffer;
+    }
+
+    @Override
+    public boolean markConsumed(final long fingerprint, final long expirationTime) {
+        long now = currentTimeProvider.get();
+        if (expirationTime < now) {
+            return false;
+        }
+        if (expirationTime != Long.MAX_VALUE && expirationTime - now > maximumRetentionMillis) {
+            return false;
+        }
+        long retainedUntil = Math.min(expirationTime, now + maximumRetentionMillis);
+        int home = homeSlot(fingerprint);
+        while (true) {
+            int freeProbe = -1;
+            long freeExpiry = EMPTY;
+            for (int probe = 0; probe < maximumProbes; probe++) {
+                int slot = home + probe & slotMask;
+                long expiry = awaitWritten(slot);
+                if (expiry == EMPTY || expiry < now) {
+                    if (freeProbe < 0) {
+                        freeProbe = probe;
+                        freeExpiry = expiry;
+                    }
+                    if (expiry == EMPTY) {
+                        break;
+                    }
+                }
+                else if ((long) LONGS.getVolatile(buffer, fingerprintOffset(slot)) == fingerprint) {
+                    return false;
+                }
+            }
+            if (freeProbe < 0) {
+                return false;
+            }
+            int slot = home + freeProbe & slotMask;
+            if (LONGS.compareAndSet(buffer, expiryOffset(slot), freeExpiry, WRITING)) {
+                LONGS.setVolatile(buffer, fingerprintOffset(slot), fingerprint);
+                LONGS.setVolatile(buffer, expiryOffset(slot), retainedUntil);
+                return !isRecordedElsewhere(home, freeProbe, fingerprint, now);
+            }
+        }
+    }
+
+    /**
+     * Searches the probe sequence for another live slot with the same fingerprint, written concurrently since the
+     * first search. If one is found, the token counts as replayed, so of two concurrent validations of the same token
+     * at most one succeeds.
+     */
+    private boolean isRecordedElsewhere(int home, int ownProbe, long fingerprint, long now) {
+        for (int probe = 0; probe < maximumProbes; probe++) {
+            int slot = home + probe & slotMask;
+            long expiry = awaitWritten(slot);
+            if (expiry == EMPTY) {
+                return false;
+            }
+            if (probe != ownProbe && expiry >= now
+                    && (long) LONGS.getVolatile(buffer, fingerprintOffset(slot)) == fingerprint) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the expiry stamp of the slot, waiting for a concurrent write to the slot to finish
+     */
+    private long awaitWritten(int slot) {
+        long expiry = (long) LONGS.getVolatile(buffer, expiryOffset(slot));
+        while (expiry == WRITING) {
+            Thread.onSpinWait();
+            expiry = (long) LONGS.getVolatile(buffer, expiryOffset(slot));
+        }
+        return expiry;
+    }
+
+    /**
+     * Spreads the fingerprint over the slots through Fibonacci hashing
+     */
+    private int homeSlot(long fingerprint) {
+        return slotShift == Long.SIZE ? 0 : (int) (fingerprint * 0x9E37_79B9_7F4A_7C15L >>> slotShift);
+    }
+
+    private static int fingerprintOffset(int slot) {
+        return HEADER_LENGTH + slot * SLOT_LENGTH;
+    }
+
+    private static int expiryOffset(int slot) {
+        return fingerprintOffset(slot) + Long.BYTES;
+    }
+
+    /**
+     * @return number of slots of the store
+     */
+    public int capacity() {
+        return slotMask + 1;
+    }
+
+    /**
+     * Forces all recorded fingerprints to disk, independent of the flush interval
+     */
+    public void flush() {
+        buffer.force();
+    }
+
+    /**
+     * Stops the background flush, forces all recorded fingerprints to disk and closes the file
+     */
+    @Override
+    public void close() throws IOException {
+        flushExecutor.shutdownNow();
+        buffer.force();
+        channel.close();
+    }
+}
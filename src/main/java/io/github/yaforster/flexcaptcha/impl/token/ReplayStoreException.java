@@ -0,0 +1,7 @@
+package io.github.yaforster.flexcaptcha.impl.token;
+
+import lombok.experimental.StandardException;
+
+@StandardException
+public class ReplayStoreException extends RuntimeException {
+}
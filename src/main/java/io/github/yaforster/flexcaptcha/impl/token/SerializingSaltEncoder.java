@@ -0,0 +1,20 @@
+package io.github.yaforster.flexcaptcha.impl.token;
+
+import io.github.yaforster.flexcaptcha.core.AbstractCaptchaCipher;
+import io.github.yaforster.flexcaptcha.core.AbstractSaltEncoder;
+
+import java.io.Serializable;
+
+/**
+ * Encodes the salt source through Java serialization. This is the original encoding, so it is the default of every
+ * cipher to keep tokens generated by earlier versions valid.
+ *
+ * @author Yannick Forster
+ */
+public class SerializingSaltEncoder extends AbstractSaltEncoder {
+
+    @Override
+    public byte[] encode(final Serializable saltSource) {
+        return AbstractCaptchaCipher.getSaltBytes(saltSource);
+    }
+}
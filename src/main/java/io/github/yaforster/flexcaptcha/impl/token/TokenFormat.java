@@ -0,0 +1,29 @@
+package io.github.yaforster.flexcaptcha.impl.token;
+
+/**
+ * Enum representing the binary layouts a {@link CaptchaCipher} can generate tokens in. Tokens of every format can be
+ * validated regardless of the format configured for generation.
+ *
+ * @author Yannick Forster
+ */
+public enum TokenFormat {
+
+    /**
+     * Original layout: 16 byte IV, the optionally encrypted expiration time block and the encrypted solution. The key
+     * is derived from the password and the salt source on every token operation.
+     */
+    LEGACY_CBC,
+    /**
+     * Versioned layout encrypting the expiration time and the solution with AES-GCM in a single pass. The key is
+     * derived from the password once per cipher instance and the salt source is bound to the token as additional
+     * authenticated data.
+     */
+    AES_GCM,
+    /**
+     * Shortest layout, encrypted with AES-GCM like {@link #AES_GCM}: version byte, flags byte, the expiration time as
+     * variable-length integer, nonce and the encrypted solution with its authentication tag, encoded as URL-safe Base64
+     * without padding. The expiration time is not encrypted, but authenticated together with the rest of the header.
+     */
+    COMPACT
+
+}
@@ -0,0 +1,57 @@
+package io.github.yaforster.flexcaptcha.util;
+
+/**
+ * Source of random values for token generation, text generation and rendering. Besides single values, every source
+ * fills whole arrays in one call, so callers that need many values, e.g. for the noise of an image, draw them at once.
+ *
+ * @author Yannick Forster
+ */
+public abstract class AbstractRandomSource {
+
+    /**
+     * Fills the array with random bytes
+     *
+     * @param target array to fill
+     */
+    public abstract void nextBytes(byte[] target);
+
+    /**
+     * Fills the array with uniformly distributed random ints between 0 (inclusive) and the bound (exclusive)
+     *
+     * @param target array to fill
+     * @param bound  upper bound of the values, must be positive
+     */
+    public abstract void nextInts(int[] target, int bound);
+
+    /**
+     * Fills the array with uniformly distributed random doubles between 0 (inclusive) and 1 (exclusive)
+     *
+     * @param target array to fill
+     */
+    public abstract void nextDoubles(double[] target);
+
+    /**
+     * @param bound upper bound of the value, must be positive
+     * @return uniformly distributed random int between 0 (inclusive) and the bound (exclusive)
+     */
+    public abstract int nextInt(int bound);
+
+    /**
+     * @return uniformly distributed random double between 0 (inclusive) and 1 (exclusive)
+     */
+    public abstract double nextDouble();
+
+    /**
+     * Creates a source for exclusive use by a single worker, e.g. one thread of a batch. Sources that can be shared
+     * between threads without contention may return themselves.
+     *
+     * @return source independent of this one
+     */
+    public abstract AbstractRandomSource split();
+
+    protected static void checkBound(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive.");
+        }
+    }
+}
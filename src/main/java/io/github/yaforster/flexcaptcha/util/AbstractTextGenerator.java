@@ -19,9 +19,19 @@ public abstract class AbstractTextGenerator {
      * String consisting of the set of letters from which the method will randomly pick characters
      */
     protected final String characterbase;
+    /**
+     * Source of the random characters and letter cases. Defaults to a {@link StrongRandomSource}, as the generated
+     * Strings are usually used as captcha solutions.
+     */
+    protected final AbstractRandomSource randomSource;
 
     protected AbstractTextGenerator(String characterbase) {
+        this(characterbase, null);
+    }
+
+    protected AbstractTextGenerator(String characterbase, AbstractRandomSource randomSource) {
         this.characterbase = getCharCaseOrDefault(characterbase);
+        this.randomSource = randomSource != null ? randomSource : new StrongRandomSource();
     }
 
     protected static String getCharCaseOrDefault(String characterbase) {
@@ -0,0 +1,78 @@
+package io.github.yaforster.flexcaptcha.util;
+
+import java.util.Arrays;
+
+/**
+ * Decodes Base64 into a caller-provided array, so tokens can be decoded into reused buffers. Accepts both the standard
+ * and the URL-safe alphabet, with or without padding, so the input of {@link java.util.Base64#getDecoder()} as well as
+ * of {@link java.util.Base64#getUrlDecoder()} is decoded.
+ *
+ * @author Yannick Forster
+ */
+public final class Base64Decoder {
+
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    private static final int[] DECODING_TABLE = new int[256];
+
+    static {
+        Arrays.fill(DECODING_TABLE, -1);
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            DECODING_TABLE[ALPHABET.charAt(i)] = i;
+        }
+        DECODING_TABLE['-'] = 62;
+        DECODING_TABLE['_'] = 63;
+    }
+
+    private Base64Decoder() {
+    }
+
+    /**
+     * @param encodedLength number of Base64 characters
+     * @return number of bytes the target array needs to provide for decoding
+     */
+    public static int getMaximumDecodedLength(int encodedLength) {
+        return (encodedLength + 3) / 4 * 3;
+    }
+
+    /**
+     * Decodes the Base64 characters in the given range of the source array.
+     *
+     * @param source Base64 characters as ASCII bytes
+     * @param offset index of the first character
+     * @param length number of characters
+     * @param target array receiving the decoded bytes from index 0, at least
+     *               {@link #getMaximumDecodedLength(int)} long
+     * @return number of decoded bytes, or -1 if the input is not valid Base64
+     */
+    public static int decode(byte[] source, int offset, int length, byte[] target) {
+        int end = offset + length;
+        if (length > 0 && source[end - 1] == '=') {
+            if (length % 4 != 0) {
+                return -1;
+            }
+            end--;
+            if (source[end - 1] == '=') {
+                end--;
+            }
+        }
+        if ((end - offset) % 4 == 1) {
+            return -1;
+        }
+        int accumulated = 0;
+        int bits = 0;
+        int position = 0;
+        for (int i = offset; i < end; i++) {
+            int value = DECODING_TABLE[source[i] & 0xFF];
+            if (value < 0) {
+                return -1;
+            }
+            accumulated = accumulated << 6 | value;
+            bits += 6;
+            if (bits >= Byte.SIZE) {
+                bits -= Byte.SIZE;
+                target[position++] = (byte) (accumulated >> bits);
+            }
+        }
+        return position;
+    }
+}
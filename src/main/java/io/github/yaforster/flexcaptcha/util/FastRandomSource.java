@@ -0,0 +1,70 @@
+package io.github.yaforster.flexcaptcha.util;
+
+import java.util.SplittableRandom;
+
+/**
+ * Fast, non-cryptographic source for visual randomness like noise, rotation angles and colors. Every thread draws from
+ * its own {@link SplittableRandom}, split off a common root, so threads never contend for the same generator.
+ * <p>
+ * The values are predictable for anyone who observes enough of them, so this source must not be used for tokens or
+ * captcha solutions.
+ *
+ * @author Yannick Forster
+ */
+public class FastRandomSource extends AbstractRandomSource {
+
+    private final SplittableRandom root;
+    private final ThreadLocal<SplittableRandom> threadRandoms;
+
+    public FastRandomSource() {
+        this(new SplittableRandom());
+    }
+
+    private FastRandomSource(SplittableRandom root) {
+        this.root = root;
+        this.threadRandoms = ThreadLocal.withInitial(this::splitRoot);
+    }
+
+    private SplittableRandom splitRoot() {
+        synchronized (root) {
+            return root.split();
+        }
+    }
+
+    @Override
+    public void nextBytes(byte[] target) {
+        threadRandoms.get().nextBytes(target);
+    }
+
+    @Override
+    public void nextInts(int[] target, int bound) {
+        checkBound(bound);
+        SplittableRandom random = threadRandoms.get();
+        for (int i = 0; i < target.length; i++) {
+            target[i] = random.nextInt(bound);
+        }
+    }
+
+    @Override
+    public void nextDoubles(double[] target) {
+        SplittableRandom random = threadRandoms.get();
+        for (int i = 0; i < target.length; i++) {
+            target[i] = random.nextDouble();
+        }
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return threadRandoms.get().nextInt(bound);
+    }
+
+    @Override
+    public double nextDouble() {
+        return threadRandoms.get().nextDouble();
+    }
+
+    @Override
+    public AbstractRandomSource split() {
+        return new FastRandomSource(splitRoot());
+    }
+}
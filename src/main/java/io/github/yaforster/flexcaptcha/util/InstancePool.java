@@ -0,0 +1,85 @@
+package io.github.yaforster.flexcaptcha.util;
+
+import lombok.Getter;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of reusable instances that are expensive to create. Every platform thread keeps one instance of its own, so
+ * the common case does not need any synchronization. Virtual threads, and platform threads whose own instance is
+ * currently in use, share a bounded queue of instances instead, since virtual threads are usually too short-lived to
+ * benefit from thread-local instances.
+ * <p>
+ * The pool never creates instances itself: {@link #poll()} returns null if no instance is available and the caller
+ * creates a new one, which it hands back through {@link #release(Object)} once it is done with it.
+ *
+ * @param <T> type of the pooled instances
+ * @author Yannick Forster
+ */
+public class InstancePool<T> {
+
+    /**
+     * Maximum number of instances kept in the queue shared by virtual threads
+     */
+    @Getter
+    private final int maximumSharedInstances;
+    private final ThreadLocal<ThreadSlot<T>> threadSlots = new ThreadLocal<>();
+    private final BlockingQueue<T> sharedInstances;
+
+    public InstancePool(int maximumSharedInstances) {
+        this.maximumSharedInstances = maximumSharedInstances;
+        this.sharedInstances = new ArrayBlockingQueue<>(Math.max(1, maximumSharedInstances));
+    }
+
+    /**
+     * Takes an idle instance out of the pool.
+     *
+     * @return an idle instance, or null if the caller has to create a new one
+     */
+    public T poll() {
+        if (!Thread.currentThread().isVirtual()) {
+            ThreadSlot<T> slot = threadSlots.get();
+            if (slot != null && !slot.inUse) {
+                slot.inUse = true;
+                return slot.instance;
+            }
+        }
+        return sharedInstances.poll();
+    }
+
+    /**
+     * Hands an instance back to the pool. Instances exceeding the capacity of the pool are dropped.
+     *
+     * @param instance the instance that is no longer used by the caller
+     */
+    public void release(T instance) {
+        if (instance == null) {
+            return;
+        }
+        if (!Thread.currentThread().isVirtual()) {
+            ThreadSlot<T> slot = threadSlots.get();
+            if (slot == null) {
+                threadSlots.set(new ThreadSlot<>(instance));
+                return;
+            }
+            if (slot.instance == instance) {
+                slot.inUse = false;
+                return;
+            }
+        }
+        sharedInstances.offer(instance);
+    }
+
+    /**
+     * Instance owned by a single platform thread. Only ever accessed by its owning thread.
+     */
+    private static final class ThreadSlot<T> {
+        private final T instance;
+        private boolean inUse;
+
+        private ThreadSlot(T instance) {
+            this.instance = instance;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.yaforster.flexcaptcha.util;
+
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic source producing the same sequence of values for the same seed, e.g. for reproducible benchmarks and
+ * tests. All threads share a single generator, so the sequence is only reproducible if the values are drawn in the
+ * same order; workers of a batch should use their own {@link #split()}.
+ * <p>
+ * Never use this source for tokens or captcha solutions in production.
+ *
+ * @author Yannick Forster
+ */
+public class SeededRandomSource extends AbstractRandomSource {
+
+    private final SplittableRandom random;
+
+    public SeededRandomSource(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    private SeededRandomSource(SplittableRandom random) {
+        this.random = random;
+    }
+
+    @Override
+    public synchronized void nextBytes(byte[] target) {
+        random.nextBytes(target);
+    }
+
+    @Override
+    public synchronized void nextInts(int[] target, int bound) {
+        checkBound(bound);
+        for (int i = 0; i < target.length; i++) {
+            target[i] = random.nextInt(bound);
+        }
+    }
+
+    @Override
+    public synchronized void nextDoubles(double[] target) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] = random.nextDouble();
+        }
+    }
+
+    @Override
+    public synchronized int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    @Override
+    public synchronized double nextDouble() {
+        return random.nextDouble();
+    }
+
+    @Override
+    public synchronized AbstractRandomSource split() {
+        return new SeededRandomSource(random.split());
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.yaforster.flexcaptcha.util;
+
+import java.security.SecureRandom;
+
+/**
+ * Cryptographically strong source backed by a single, shared {@link SecureRandom}. Meant for initialization vectors,
+ * nonces and captcha solutions. Bulk requests draw all required bytes from the {@link SecureRandom} in one call.
+ *
+ * @author Yannick Forster
+ */
+public class StrongRandomSource extends AbstractRandomSource {
+
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private final SecureRandom secureRandom;
+
+    public StrongRandomSource() {
+        this(new SecureRandom());
+    }
+
+    public StrongRandomSource(SecureRandom secureRandom) {
+        this.secureRandom = secureRandom;
+    }
+
+    @Override
+    public void nextBytes(byte[] target) {
+        secureRandom.nextBytes(target);
+    }
+
+    /**
+     * Maps 32 random bits to the bound through multiplication. Values falling into the biased range are replaced by a
+     * value drawn through {@link SecureRandom#nextInt(int)}, so the result stays uniformly distributed.
+     */
+    @Override
+    public void nextInts(int[] target, int bound) {
+        checkBound(bound);
+        byte[] bytes = new byte[target.length * Integer.BYTES];
+        secureRandom.nextBytes(bytes);
+        long threshold = (1L << Integer.SIZE) % bound;
+        for (int i = 0; i < target.length; i++) {
+            long product = (readInt(bytes, i * Integer.BYTES) & 0xFFFF_FFFFL) * bound;
+            target[i] = (product & 0xFFFF_FFFFL) < threshold ? secureRandom.nextInt(bound) :
+                    (int) (product >>> Integer.SIZE);
+        }
+    }
+
+    @Override
+    public void nextDoubles(double[] target) {
+        byte[] bytes = new byte[target.length * Long.BYTES];
+        secureRandom.nextBytes(bytes);
+        for (int i = 0; i < target.length; i++) {
+            long bits = (long) readInt(bytes, i * Long.BYTES) << Integer.SIZE | readInt(bytes,
+                    i * Long.BYTES + Integer.BYTES) & 0xFFFF_FFFFL;
+            target[i] = (bits >>> 11) * DOUBLE_UNIT;
+        }
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return secureRandom.nextInt(bound);
+    }
+
+    @Override
+    public double nextDouble() {
+        return secureRandom.nextDouble();
+    }
+
+    /**
+     * @return this source, as {@link SecureRandom} can be shared between threads
+     */
+    @Override
+    public AbstractRandomSource split() {
+        return this;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16 | (bytes[offset + 2] & 0xFF) << 8
+                | bytes[offset + 3] & 0xFF;
+    }
+}
@@ -2,9 +2,6 @@ package io.github.yaforster.flexcaptcha.util;
 
 import lombok.Builder;
 
-import java.security.SecureRandom;
-import java.util.stream.IntStream;
-
 /**
  * @author Yannick Forster
  * <p>
@@ -14,11 +11,15 @@ import java.util.stream.IntStream;
  */
 public class TextGenerator extends AbstractTextGenerator {
 
-    @Builder
     public TextGenerator(String characterbase) {
         super(characterbase);
     }
 
+    @Builder
+    public TextGenerator(String characterbase, AbstractRandomSource randomSource) {
+        super(characterbase, randomSource);
+    }
+
     /**
      * Checks the given Case enum and modifies the case of the character based on
      * the enum.
@@ -26,17 +27,17 @@ public class TextGenerator extends AbstractTextGenerator {
      * @param charTextCase Case enum defining the character to either be lowercase,
      *                     uppercase or random case.
      * @param c            the character
+     * @param caseFlip     random value of 0 or 1 deciding the case for mixed case
      * @return modified char
      */
-    private static char setCase(TextCase charTextCase, char c) {
+    private static char setCase(TextCase charTextCase, char c, int caseFlip) {
         return switch (charTextCase) {
             case LOWERCASE:
                 yield Character.toLowerCase(c);
             case UPPERCASE:
                 yield Character.toUpperCase(c);
             default:
-                SecureRandom random = new SecureRandom();
-                if (random.nextBoolean()) {
+                if (caseFlip == 1) {
                     yield Character.toUpperCase(c);
                 }
                 else {
@@ -46,23 +47,10 @@ public class TextGenerator extends AbstractTextGenerator {
     }
 
     /**
-     * Returns a single character from the String at a random position in the string
-     *
-     * @param src source String from which the character is randomly pulled
-     * @return character pulled from the String at random point
-     */
-    private static char pickRandomChar(String src) {
-        SecureRandom random = new SecureRandom();
-        int index = random.nextInt(src.length());
-        return src.charAt(index);
-    }
-
-    /**
-     * Constructs the output String by repeatedly copying a single character from
-     * the characterbase-String at a random point until the specified length is
-     * reached. The case-enum controls whether the case of the letters. Mixed
-     * case will randomize the case of each character every time it is picked from
-     * the source string
+     * Constructs the output String by copying characters from random positions of
+     * the characterbase-String until the specified length is reached. The random
+     * positions and, for mixed case, the random cases of all characters are drawn
+     * at once. The case-enum controls the case of the letters.
      *
      * @param length       the generated string is supposed to have
      * @param charTextCase Case enum with either lower-, upper-, or mixed case.
@@ -70,21 +58,17 @@ public class TextGenerator extends AbstractTextGenerator {
      * selected set of characters from the given string
      */
     private String getRandomLetters(int length, TextCase charTextCase) {
-        StringBuffer charbuf = new StringBuffer(0);
-        IntStream.range(0, length).forEach(i -> {
-            appendBufferByRandomCharOfCase(charTextCase, charbuf);
-        });
-        return charbuf.toString();
-    }
-
-    private void appendBufferByRandomCharOfCase(TextCase charTextCase, StringBuffer charbuf) {
-        char c = pickRandomCharWithCase(charTextCase);
-        charbuf.append(c);
-    }
-
-    private char pickRandomCharWithCase(TextCase charTextCase) {
-        char randomChar = pickRandomChar(characterbase);
-        return setCase(charTextCase, randomChar);
+        int[] indices = new int[length];
+        randomSource.nextInts(indices, characterbase.length());
+        int[] caseFlips = new int[length];
+        if (charTextCase == TextCase.MIXEDCASE) {
+            randomSource.nextInts(caseFlips, 2);
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = setCase(charTextCase, characterbase.charAt(indices[i]), caseFlips[i]);
+        }
+        return new String(chars);
     }
 
     /**
@@ -0,0 +1,66 @@
+package io.github.yaforster.flexcaptcha.util;
+
+/**
+ * Compares UTF-8 encoded bytes with characters without creating a String, encoding the characters on the fly. The
+ * comparison always runs over all characters and does not stop at the first difference, so its duration does not
+ * reveal how many leading bytes match.
+ *
+ * @author Yannick Forster
+ */
+public final class Utf8Comparison {
+
+    private Utf8Comparison() {
+    }
+
+    /**
+     * @param bytes      array holding the UTF-8 encoded bytes
+     * @param offset     index of the first byte
+     * @param length     number of bytes
+     * @param characters characters to compare the bytes with. Unpaired surrogates are encoded as '?', in line with
+     *                   {@link String#getBytes}.
+     * @return true if the bytes are the UTF-8 encoding of the characters
+     */
+    public static boolean equalsInConstantTime(byte[] bytes, int offset, int length, CharSequence characters) {
+        int difference = 0;
+        int position = 0;
+        int characterCount = characters.length();
+        for (int i = 0; i < characterCount; i++) {
+            char c = characters.charAt(i);
+            if (c < 0x80) {
+                difference |= compareByte(bytes, offset, length, position++, c);
+            }
+            else if (c < 0x800) {
+                difference |= compareByte(bytes, offset, length, position++, 0xC0 | c >> 6);
+                difference |= compareByte(bytes, offset, length, position++, 0x80 | c & 0x3F);
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < characterCount && Character.isLowSurrogate(characters.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, characters.charAt(++i));
+                difference |= compareByte(bytes, offset, length, position++, 0xF0 | codePoint >> 18);
+                difference |= compareByte(bytes, offset, length, position++, 0x80 | codePoint >> 12 & 0x3F);
+                difference |= compareByte(bytes, offset, length, position++, 0x80 | codePoint >> 6 & 0x3F);
+                difference |= compareByte(bytes, offset, length, position++, 0x80 | codePoint & 0x3F);
+            }
+            else if (Character.isSurrogate(c)) {
+                difference |= compareByte(bytes, offset, length, position++, '?');
+            }
+            else {
+                difference |= compareByte(bytes, offset, length, position++, 0xE0 | c >> 12);
+                difference |= compareByte(bytes, offset, length, position++, 0x80 | c >> 6 & 0x3F);
+                difference |= compareByte(bytes, offset, length, position++, 0x80 | c & 0x3F);
+            }
+        }
+        difference |= position ^ length;
+        return difference == 0;
+    }
+
+    /**
+     * @return 0 if the byte at the position equals the expected byte, anything else if it differs or the position is
+     * out of range
+     */
+    private static int compareByte(byte[] bytes, int offset, int length, int position, int expected) {
+        if (position >= length) {
+            return 1;
+        }
+        return (bytes[offset + position] ^ expected) & 0xFF;
+    }
+}
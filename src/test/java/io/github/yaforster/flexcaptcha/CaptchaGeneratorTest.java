@@ -1,16 +1,55 @@
 package io.github.yaforster.flexcaptcha;
 
+import io.github.yaforster.flexcaptcha.core.AbstractCaptchaCipher;
+import io.github.yaforster.flexcaptcha.core.AbstractCaptchaRenderer;
 import io.github.yaforster.flexcaptcha.core.Captcha;
 import io.github.yaforster.flexcaptcha.core.CaptchaGenerator;
+import io.github.yaforster.flexcaptcha.core.TokenGenerationRequest;
+import io.github.yaforster.flexcaptcha.core.TokenValidationRequest;
 import io.github.yaforster.flexcaptcha.impl.rendering.CaptchaRenderer;
 import io.github.yaforster.flexcaptcha.impl.token.CaptchaCipher;
+import io.github.yaforster.flexcaptcha.impl.token.TokengenerationException;
 import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
 
-import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class CaptchaGeneratorTest {
 
+    @Test
+    void generateTo_should_write_image_and_return_token() throws IOException {
+        CaptchaCipher cipher = CaptchaCipher.builder().build();
+        CaptchaRenderer renderer = CaptchaRenderer.builder().imgFileFormat("PNG").build();
+        CaptchaGenerator generator = new CaptchaGenerator(cipher, renderer);
+        ByteArrayOutputStream imageOutput = new ByteArrayOutputStream();
+
+        String token = generator.generateTo("abc123", "salt", imageOutput);
+
+        assertTrue(generator.validate(token, "abc123", "salt"));
+        assertEquals(300, ImageIO.read(new ByteArrayInputStream(imageOutput.toByteArray())).getWidth());
+    }
+
     @Test
     void generate_with_default_should_work() {
         CaptchaCipher cipher = CaptchaCipher.builder().build();
@@ -37,4 +76,113 @@ class CaptchaGeneratorTest {
         Captcha captcha = generator.generate(solution, someSalt);
         assertTrue(generator.validate(captcha.token(), solution, someSalt));
     }
-}
\ No newline at end of file
+
+    @Test
+    void test_can_generate_and_validate_batches() {
+        CaptchaCipher cipher = CaptchaCipher.builder().build();
+        CaptchaRenderer renderer = CaptchaRenderer.getDefaultCaptchaRenderer();
+        CaptchaGenerator generator = new CaptchaGenerator(cipher, renderer);
+
+        List<Captcha> captchas = generator.generateAll(List.of(
+                new TokenGenerationRequest("aBc123", "salt"),
+                new TokenGenerationRequest("dEf456", "otherSalt")));
+        BitSet results = generator.validateAll(List.of(
+                new TokenValidationRequest(captchas.get(0).token(), "salt", "aBc123"),
+                new TokenValidationRequest(captchas.get(1).token(), "otherSalt", "wrong")));
+
+        assertEquals(2, captchas.size());
+        assertTrue(captchas.stream().allMatch(captcha -> captcha.imgData().length > 0));
+        assertTrue(results.get(0));
+        assertFalse(results.get(1));
+    }
+
+    @Test
+    void test_can_generate_and_validate_asynchronously() {
+        CaptchaCipher cipher = CaptchaCipher.builder().build();
+        CaptchaRenderer renderer = CaptchaRenderer.getDefaultCaptchaRenderer();
+        CaptchaGenerator generator = new CaptchaGenerator(cipher, renderer);
+
+        Captcha captcha = generator.generateAsync("aBc123", "salt").join();
+
+        assertTrue(captcha.imgData().length > 0);
+        assertTrue(generator.validateAsync(captcha.token(), "aBc123", "salt").join());
+        assertFalse(generator.validateAsync(captcha.token(), "wrong", "salt").join());
+    }
+
+    @Test
+    void generateAsync_should_generate_token_and_image_concurrently() throws Exception {
+        CyclicBarrier bothStarted = new CyclicBarrier(2);
+        AbstractCaptchaCipher cipher = Mockito.mock(AbstractCaptchaCipher.class);
+        AbstractCaptchaRenderer renderer = Mockito.mock(AbstractCaptchaRenderer.class);
+        when(cipher.generateToken(any(), any())).thenAnswer(invocation -> {
+            bothStarted.await(5, TimeUnit.SECONDS);
+            return "token";
+        });
+        when(renderer.renderAndConvertToBytes(any())).thenAnswer(invocation -> {
+            bothStarted.await(5, TimeUnit.SECONDS);
+            return new byte[]{1};
+        });
+        CaptchaGenerator generator = new CaptchaGenerator(cipher, renderer);
+
+        Captcha captcha = generator.generateAsync("aBc123", "salt").get(10, TimeUnit.SECONDS);
+
+        assertEquals("token", captcha.token());
+        assertArrayEquals(new byte[]{1}, captcha.imgData());
+    }
+
+    @Test
+    void generateAsync_should_skip_pending_tasks_after_cancellation() {
+        AbstractCaptchaCipher cipher = Mockito.mock(AbstractCaptchaCipher.class);
+        AbstractCaptchaRenderer renderer = Mockito.mock(AbstractCaptchaRenderer.class);
+        CaptchaGenerator generator = new CaptchaGenerator(cipher, renderer);
+        List<Runnable> pendingTasks = new ArrayList<>();
+
+        CompletableFuture<Captcha> captcha = generator.generateAsync("aBc123", "salt", pendingTasks::add);
+        captcha.cancel(true);
+        pendingTasks.forEach(Runnable::run);
+
+        assertTrue(captcha.isCancelled());
+        verify(cipher, never()).generateToken(any(), any());
+        verify(renderer, never()).renderAndConvertToBytes(any());
+    }
+
+    @Test
+    void generateAsync_should_time_out() {
+        CountDownLatch release = new CountDownLatch(1);
+        AbstractCaptchaCipher cipher = Mockito.mock(AbstractCaptchaCipher.class);
+        AbstractCaptchaRenderer renderer = Mockito.mock(AbstractCaptchaRenderer.class);
+        when(cipher.generateToken(any(), any())).thenReturn("token");
+        when(renderer.renderAndConvertToBytes(any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return new byte[]{1};
+        });
+        CaptchaGenerator generator = new CaptchaGenerator(cipher, renderer);
+
+        CompletableFuture<Captcha> captcha = generator.generateAsync("aBc123", "salt", Thread::startVirtualThread,
+                Duration.ofMillis(50));
+
+        ExecutionException exception = assertThrows(ExecutionException.class, captcha::get);
+        assertInstanceOf(TimeoutException.class, exception.getCause());
+        release.countDown();
+    }
+
+    @Test
+    void generateAll_should_cancel_pending_renderings_if_token_generation_fails() throws InterruptedException {
+        AbstractCaptchaCipher cipher = Mockito.mock(AbstractCaptchaCipher.class);
+        AbstractCaptchaRenderer renderer = Mockito.mock(AbstractCaptchaRenderer.class);
+        when(cipher.generateTokens(any(), any())).thenThrow(new TokengenerationException("failed"));
+        CaptchaGenerator generator = new CaptchaGenerator(cipher, renderer);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit(() -> release.await(5, TimeUnit.SECONDS));
+
+        assertThrows(TokengenerationException.class, () -> generator.generateAll(List.of(
+                new TokenGenerationRequest("aBc123", "salt"),
+                new TokenGenerationRequest("dEf456", "otherSalt")), executor));
+        release.countDown();
+        executor.shutdown();
+
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        verify(renderer, never()).renderAndConvertToBytes(any());
+    }
+}
@@ -0,0 +1,157 @@
+package io.github.yaforster.flexcaptcha;
+
+import io.github.yaforster.flexcaptcha.core.AbstractCaptchaRenderer;
+import io.github.yaforster.flexcaptcha.core.Captcha;
+import io.github.yaforster.flexcaptcha.core.CaptchaGenerator;
+import io.github.yaforster.flexcaptcha.core.CaptchaPool;
+import io.github.yaforster.flexcaptcha.impl.rendering.CaptchaRenderer;
+import io.github.yaforster.flexcaptcha.impl.token.CaptchaCipher;
+import io.github.yaforster.flexcaptcha.util.TextGenerator;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+class CaptchaPoolTest {
+
+    /**
+     * Solutions consist of digits only, so they are known regardless of the random letter case
+     */
+    private static CaptchaPool.CaptchaPoolBuilder poolBuilder() {
+        CaptchaGenerator generator = new CaptchaGenerator(CaptchaCipher.builder().build(),
+                CaptchaRenderer.getDefaultCaptchaRenderer());
+        return CaptchaPool.builder()
+                .generator(generator)
+                .textGenerator(new TextGenerator("7"))
+                .solutionLength(4);
+    }
+
+    private static CaptchaPool.CaptchaPoolBuilder poolBuilder(AbstractCaptchaRenderer renderer) {
+        return CaptchaPool.builder()
+                .generator(new CaptchaGenerator(CaptchaCipher.builder().build(), renderer))
+                .textGenerator(new TextGenerator("7"))
+                .solutionLength(4);
+    }
+
+    private static void awaitDepth(CaptchaPool pool, IntPredicate condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000L;
+        while (!condition.test(pool.getDepth())) {
+            assertTrue(System.currentTimeMillis() < deadline, "Pool did not reach the expected depth.");
+            Thread.sleep(5L);
+        }
+    }
+
+    @Test
+    void generate_should_take_pre_rendered_captcha() throws InterruptedException {
+        try (CaptchaPool pool = poolBuilder().highWatermark(3).build()) {
+            awaitDepth(pool, depth -> depth == 3);
+
+            Captcha captcha = pool.generate("salt");
+
+            assertNotNull(captcha.imgData());
+            assertTrue(pool.validate(captcha.token(), "7777", "salt"));
+            assertEquals(1, pool.getHitCount());
+            assertEquals(0, pool.getMissCount());
+            assertEquals(1d, pool.getHitRatio());
+            assertTrue(pool.getRefillRate() > 0d);
+        }
+    }
+
+    @Test
+    void generate_should_render_inline_when_pool_is_empty() {
+        CaptchaPool pool = poolBuilder().highWatermark(2).build();
+        pool.close();
+
+        Captcha captcha = pool.generate("salt");
+
+        assertTrue(pool.validate(captcha.token(), "7777", "salt"));
+        assertEquals(0, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+        assertEquals(0d, pool.getHitRatio());
+    }
+
+    @Test
+    void pool_should_refill_once_low_watermark_is_reached() throws InterruptedException {
+        try (CaptchaPool pool = poolBuilder().highWatermark(4).lowWatermark(1).build()) {
+            awaitDepth(pool, depth -> depth == 4);
+            pool.generate("salt");
+            pool.generate("salt");
+            assertEquals(4, pool.getRenderedCount());
+
+            pool.generate("salt");
+            awaitDepth(pool, depth -> depth == 4);
+
+            assertEquals(7, pool.getRenderedCount());
+            assertEquals(3, pool.getHitCount());
+        }
+    }
+
+    @Test
+    void worker_should_back_off_after_failed_rendering() throws InterruptedException {
+        AbstractCaptchaRenderer renderer = Mockito.mock(AbstractCaptchaRenderer.class);
+        when(renderer.renderAndConvertToBytes(anyString())).thenThrow(new IllegalStateException("Rendering failed"));
+        try (CaptchaPool pool = poolBuilder(renderer).highWatermark(2).failureBackoffMillis(60_000L).build()) {
+            long deadline = System.currentTimeMillis() + 10_000L;
+            while (pool.getFailureCount() == 0) {
+                assertTrue(System.currentTimeMillis() < deadline, "Worker did not render.");
+                Thread.sleep(5L);
+            }
+            // the empty pool signals the worker and renders inline, which fails as well
+            assertThrows(IllegalStateException.class, () -> pool.generate("salt"));
+            Thread.sleep(100L);
+
+            assertEquals(1, pool.getFailureCount());
+        }
+    }
+
+    @Test
+    void close_should_discard_captcha_rendered_while_closing() throws InterruptedException {
+        CountDownLatch renderingStarted = new CountDownLatch(1);
+        CountDownLatch renderingReleased = new CountDownLatch(1);
+        AbstractCaptchaRenderer renderer = Mockito.mock(AbstractCaptchaRenderer.class);
+        when(renderer.renderAndConvertToBytes(anyString())).thenAnswer(invocation -> {
+            renderingStarted.countDown();
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    renderingReleased.await();
+                    break;
+                }
+                catch (InterruptedException interruptedException) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return new byte[]{1};
+        });
+        CaptchaPool pool = poolBuilder(renderer).highWatermark(2).build();
+        renderingStarted.await();
+
+        Thread closer = new Thread(pool::close);
+        closer.start();
+        while (closer.isAlive() && closer.getState() != Thread.State.WAITING) {
+            Thread.sleep(1L);
+        }
+        renderingReleased.countDown();
+        closer.join();
+        while (pool.getRenderedCount() == 0) {
+            Thread.sleep(1L);
+        }
+        Thread.sleep(50L);
+
+        assertEquals(0, pool.getDepth());
+    }
+
+    @Test
+    void builder_should_reject_invalid_watermarks() {
+        assertThrows(IllegalArgumentException.class, () -> poolBuilder().highWatermark(4).lowWatermark(4).build());
+        assertThrows(NullPointerException.class, () -> CaptchaPool.builder().build());
+    }
+}
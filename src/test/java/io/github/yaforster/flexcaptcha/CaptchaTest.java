@@ -3,7 +3,16 @@ package io.github.yaforster.flexcaptcha;
 import io.github.yaforster.flexcaptcha.core.Captcha;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
 
 class CaptchaTest {
 
@@ -13,4 +22,34 @@ class CaptchaTest {
         String imgBytesBase64 = captcha.getImgDataAsBase64();
         assertEquals("AQIDBAU=", imgBytesBase64);
     }
-}
\ No newline at end of file
+
+    @Test
+    void writeBase64To_should_match_getImgDataAsBase64() throws IOException {
+        byte[] imgData = new byte[20_000];
+        new Random(3L).nextBytes(imgData);
+        for (int length : new int[]{0, 1, 2, 3, 4, 8191, 20_000}) {
+            Captcha captcha = new Captcha("someToken", Arrays.copyOf(imgData, length));
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            captcha.writeBase64To(output);
+
+            assertEquals(captcha.getImgDataAsBase64(), output.toString(StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    void writeDataUriTo_should_not_close_stream() throws IOException {
+        Captcha captcha = new Captcha("someToken", new byte[]{1, 2, 3, 4, 5});
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        OutputStream unclosableOutput = new FilterOutputStream(output) {
+            @Override
+            public void close() {
+                fail("The stream of the caller must not be closed.");
+            }
+        };
+
+        captcha.writeDataUriTo(unclosableOutput, "image/png");
+
+        assertEquals("data:image/png;base64,AQIDBAU=", output.toString(StandardCharsets.US_ASCII));
+    }
+}
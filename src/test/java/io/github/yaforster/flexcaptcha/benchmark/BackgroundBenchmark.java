@@ -0,0 +1,55 @@
+package io.github.yaforster.flexcaptcha.benchmark;
+
+import io.github.yaforster.flexcaptcha.core.AbstractCaptchaImageBackground;
+import io.github.yaforster.flexcaptcha.impl.rendering.BackgroundImage;
+import io.github.yaforster.flexcaptcha.impl.rendering.FlatColorBackground;
+import io.github.yaforster.flexcaptcha.util.SeededRandomSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to draw the background of a 300x100 captcha, for a flat color and for a translucent 600x200 image drawn at a
+ * fixed or a random offset.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="BackgroundBenchmark"}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BackgroundBenchmark {
+
+    @Param({"FLAT_COLOR", "IMAGE", "IMAGE_RANDOM_OFFSET"})
+    public String backgroundType;
+
+    private AbstractCaptchaImageBackground background;
+    private SeededRandomSource randomSource;
+    private BufferedImage captchaImage;
+
+    @Setup
+    public void setUp() {
+        BufferedImage texture = new BufferedImage(600, 200, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D textureGraphic = texture.createGraphics();
+        textureGraphic.setPaint(new GradientPaint(0, 0, new Color(255, 0, 0, 128), 600, 200, Color.GREEN));
+        textureGraphic.fillRect(0, 0, 600, 200);
+        textureGraphic.dispose();
+        background = switch (backgroundType) {
+            case "IMAGE" -> new BackgroundImage(Color.WHITE, texture);
+            case "IMAGE_RANDOM_OFFSET" -> new BackgroundImage(Color.WHITE, texture, true);
+            default -> new FlatColorBackground(Color.WHITE);
+        };
+        randomSource = new SeededRandomSource(42L);
+        captchaImage = new BufferedImage(300, 100, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Benchmark
+    public BufferedImage drawBackground() {
+        background.drawBackground(captchaImage, randomSource);
+        return captchaImage;
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.yaforster.flexcaptcha.benchmark;
+
+import io.github.yaforster.flexcaptcha.impl.rendering.CaptchaRenderer;
+import io.github.yaforster.flexcaptcha.impl.rendering.NoiseSettings;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Throughput of rendering a batch of captchas, as one task per captcha through
+ * {@link CaptchaRenderer#renderAndConvertToBytes(String)} and through {@link CaptchaRenderer#renderBatch}, whose
+ * workers reuse their image, graphics and output buffer. Both run on a pool with the given number of threads, to show
+ * how the throughput scales from 1 to N cores.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="BatchRenderingBenchmark -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(BatchRenderingBenchmark.BATCH_SIZE)
+public class BatchRenderingBenchmark {
+
+    static final int BATCH_SIZE = 64;
+
+    @Param({"1", "2", "4", "8"})
+    public int workerCount;
+
+    private CaptchaRenderer renderer;
+    private ForkJoinPool pool;
+    private List<String> texts;
+
+    @Setup
+    public void setUp() {
+        renderer = CaptchaRenderer.builder()
+                .noiseSettings(new NoiseSettings(4, Color.GRAY))
+                .availableTextColors(List.of(Color.BLUE, Color.RED, Color.BLACK))
+                .build();
+        pool = new ForkJoinPool(workerCount);
+        texts = IntStream.range(0, BATCH_SIZE).mapToObj(i -> "abc" + (100 + i)).toList();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public List<byte[]> renderEach() throws ExecutionException, InterruptedException {
+        List<Future<byte[]>> futures = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            futures.add(pool.submit(() -> renderer.renderAndConvertToBytes(text)));
+        }
+        List<byte[]> images = new ArrayList<>(texts.size());
+        for (Future<byte[]> future : futures) {
+            images.add(future.get());
+        }
+        return images;
+    }
+
+    @Benchmark
+    public List<byte[]> renderBatch() {
+        return renderer.renderBatch(texts, pool, workerCount);
+    }
+}
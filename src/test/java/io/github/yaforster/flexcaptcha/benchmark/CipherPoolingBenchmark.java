@@ -0,0 +1,62 @@
+package io.github.yaforster.flexcaptcha.benchmark;
+
+import io.github.yaforster.flexcaptcha.core.AbstractCaptchaCipher;
+import io.github.yaforster.flexcaptcha.impl.token.CaptchaCipher;
+import io.github.yaforster.flexcaptcha.impl.token.CryptoInstancePool;
+import io.github.yaforster.flexcaptcha.impl.token.DerivedKeyCache;
+import io.github.yaforster.flexcaptcha.impl.token.HmacCaptchaCipher;
+import io.github.yaforster.flexcaptcha.impl.token.TokenFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of token generation and validation with and without a {@link CryptoInstancePool}. The legacy format is
+ * measured with a {@link DerivedKeyCache}, as the key derivation would otherwise hide any other cost.
+ * <p>
+ * Run on 1, 8 and 32 threads with
+ * {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="CipherPoolingBenchmark -t 8"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CipherPoolingBenchmark {
+
+    private static final String SOLUTION = "abc123";
+    private static final String SALT = "someSessionId";
+
+    @Param({"LEGACY_CBC", "AES_GCM", "COMPACT", "HMAC"})
+    public String cipherType;
+    @Param({"false", "true"})
+    public boolean pooled;
+
+    private AbstractCaptchaCipher cipher;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        CryptoInstancePool pool = pooled ? CryptoInstancePool.builder().build() : null;
+        cipher = switch (cipherType) {
+            case "HMAC" -> HmacCaptchaCipher.builder().cryptoInstancePool(pool).build();
+            default -> CaptchaCipher.builder()
+                    .tokenFormat(TokenFormat.valueOf(cipherType))
+                    .derivedKeyCache(DerivedKeyCache.builder().build())
+                    .cryptoInstancePool(pool)
+                    .build();
+        };
+        token = cipher.generateToken(SOLUTION, SALT);
+    }
+
+    @Benchmark
+    public String generate() {
+        return cipher.generateToken(SOLUTION, SALT);
+    }
+
+    @Benchmark
+    public boolean validate() {
+        return cipher.validateToken(token, SALT, SOLUTION);
+    }
+}
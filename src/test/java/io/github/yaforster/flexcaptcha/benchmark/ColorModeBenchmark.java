@@ -0,0 +1,52 @@
+package io.github.yaforster.flexcaptcha.benchmark;
+
+import io.github.yaforster.flexcaptcha.impl.rendering.CaptchaRenderer;
+import io.github.yaforster.flexcaptcha.impl.rendering.ColorMode;
+import io.github.yaforster.flexcaptcha.impl.rendering.NoiseSettings;
+import io.github.yaforster.flexcaptcha.util.SeededRandomSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to render and encode a 300x100 captcha with noise, in the RGB and in the indexed color mode, for different
+ * image file formats. The size of the encoded image is printed once per setting.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="ColorModeBenchmark -prof gc"}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColorModeBenchmark {
+
+    private static final String SOLUTION = "abc123";
+
+    @Param({"RGB", "INDEXED"})
+    public ColorMode colorMode;
+    @Param({"PNG", "GIF", "JPG"})
+    public String imgFileFormat;
+
+    private CaptchaRenderer renderer;
+
+    @Setup
+    public void setUp() {
+        renderer = CaptchaRenderer.builder()
+                .imgFileFormat(imgFileFormat)
+                .colorMode(colorMode)
+                .noiseSettings(new NoiseSettings(4, Color.GRAY))
+                .availableTextColors(List.of(Color.BLUE, Color.RED, Color.BLACK))
+                .randomSource(new SeededRandomSource(42L))
+                .build();
+        System.out.println("Encoded size: " + render().length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] render() {
+        return renderer.renderAndConvertToBytes(SOLUTION);
+    }
+}
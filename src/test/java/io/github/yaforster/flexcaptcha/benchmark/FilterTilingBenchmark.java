@@ -0,0 +1,67 @@
+package io.github.yaforster.flexcaptcha.benchmark;
+
+import com.jhlabs.image.AbstractBufferedImageOp;
+import com.jhlabs.image.BoxBlurFilter;
+import com.jhlabs.image.ConvolveFilter;
+import com.jhlabs.image.GaussianFilter;
+import io.github.yaforster.flexcaptcha.impl.rendering.FilterTiling;
+import io.github.yaforster.flexcaptcha.util.SeededRandomSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to apply a single filter to a 600x200 image, split into up to the given number of bands filtered on a pool of
+ * as many threads. A single band applies the filter on the calling thread, as without filter tiling. The speedup is
+ * bounded by the number of available cores.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="FilterTilingBenchmark"}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterTilingBenchmark {
+
+    @Param({"GAUSSIAN", "BOX_BLUR", "CONVOLVE"})
+    public String filter;
+    @Param({"1", "2", "4", "8", "16"})
+    public int bands;
+
+    private ForkJoinPool pool;
+    private FilterTiling filterTiling;
+    private List<AbstractBufferedImageOp> operations;
+    private BufferedImage image;
+
+    @Setup
+    public void setUp() {
+        pool = new ForkJoinPool(bands);
+        filterTiling = FilterTiling.builder().pool(pool).maximumBands(bands).build();
+        AbstractBufferedImageOp operation = switch (filter) {
+            case "BOX_BLUR" -> new BoxBlurFilter(3f, 3f, 2);
+            case "CONVOLVE" -> new ConvolveFilter(new float[]{0, -1, 0, -1, 5, -1, 0, -1, 0});
+            default -> new GaussianFilter(5f);
+        };
+        operations = List.of(operation);
+        image = new BufferedImage(600, 200, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = new int[600 * 200];
+        new SeededRandomSource(42L).nextInts(pixels, 0xFFFFFF);
+        image.setRGB(0, 0, 600, 200, pixels, 0, 600);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public BufferedImage apply() {
+        filterTiling.apply(operations, image);
+        return image;
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.yaforster.flexcaptcha.benchmark;
+
+import io.github.yaforster.flexcaptcha.impl.rendering.CaptchaRenderer;
+import io.github.yaforster.flexcaptcha.impl.rendering.ImageIOCaptchaImageEncoder;
+import io.github.yaforster.flexcaptcha.impl.rendering.NoiseSettings;
+import io.github.yaforster.flexcaptcha.util.SeededRandomSource;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to encode a rendered 300x100 captcha, through {@link ImageIO#write} and through the
+ * {@link ImageIOCaptchaImageEncoder} at different compression qualities. The size of the encoded image is printed
+ * once per setting.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="ImageEncoderBenchmark -prof gc"}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageEncoderBenchmark {
+
+    @Param({"JPG", "PNG"})
+    public String format;
+    /**
+     * Compression quality of the encoder, "IMAGEIO" for {@link ImageIO#write} and "DEFAULT" for the encoder with the
+     * defaults of the writer
+     */
+    @Param({"IMAGEIO", "DEFAULT", "0.0", "0.5", "0.9"})
+    public String quality;
+
+    private ImageIOCaptchaImageEncoder encoder;
+    private BufferedImage image;
+
+    @Setup
+    public void setUp() throws IOException {
+        CaptchaRenderer renderer = CaptchaRenderer.builder()
+                .imgFileFormat("PNG")
+                .noiseSettings(new NoiseSettings(4, Color.GRAY))
+                .randomSource(new SeededRandomSource(42L))
+                .build();
+        image = ImageIO.read(new ByteArrayInputStream(renderer.renderAndConvertToBytes("abc123")));
+        encoder = ImageIOCaptchaImageEncoder.builder()
+                .formatName(format)
+                .compressionQuality(quality.equals("IMAGEIO") || quality.equals("DEFAULT") ? null
+                        : Float.valueOf(quality))
+                .build();
+        System.out.println("Encoded size: " + encode().length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        if (quality.equals("IMAGEIO")) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ImageIO.write(image, format, output);
+            return output.toByteArray();
+        }
+        return encoder.encode(image);
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.yaforster.flexcaptcha.benchmark;
+
+import io.github.yaforster.flexcaptcha.impl.rendering.CaptchaRenderer;
+import io.github.yaforster.flexcaptcha.impl.rendering.NoiseSettings;
+import io.github.yaforster.flexcaptcha.impl.rendering.TextRenderingMode;
+import io.github.yaforster.flexcaptcha.util.SeededRandomSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to render a captcha and encode it, into a byte array or straight into a stream, for different noise
+ * intensities and text rendering modes. The renderer draws from a {@link SeededRandomSource}, so every run renders the
+ * same sequence of images.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="RenderingBenchmark -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderingBenchmark {
+
+    private static final String SOLUTION = "abc123";
+
+    @Param({"0", "1", "8"})
+    public int noiseIntensity;
+    @Param({"JAVA2D", "GLYPH_ATLAS", "OUTLINE"})
+    public TextRenderingMode textRenderingMode;
+
+    private CaptchaRenderer renderer;
+
+    @Setup
+    public void setUp() {
+        renderer = CaptchaRenderer.builder()
+                .noiseSettings(noiseIntensity > 0 ? new NoiseSettings(noiseIntensity, Color.GRAY) : null)
+                .availableTextColors(List.of(Color.BLUE, Color.RED, Color.BLACK))
+                .randomSource(new SeededRandomSource(42L))
+                .textRenderingMode(textRenderingMode)
+                .build();
+    }
+
+    @Benchmark
+    public byte[] render() {
+        return renderer.renderAndConvertToBytes(SOLUTION);
+    }
+
+    @Benchmark
+    public void renderToStream() throws IOException {
+        renderer.renderTo(SOLUTION, OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.yaforster.flexcaptcha.benchmark;
+
+import io.github.yaforster.flexcaptcha.core.AbstractReplayStore;
+import io.github.yaforster.flexcaptcha.impl.token.InMemoryReplayStore;
+import io.github.yaforster.flexcaptcha.impl.token.MappedReplayStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of the {@link InMemoryReplayStore} and the {@link MappedReplayStore} holding millions of fingerprints. The store is filled to the given
+ * number of entries up front, and the clock advances by one millisecond per recorded token while every token expires
+ * after as many milliseconds as there are entries, so the store stays at roughly that size while buckets expire.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="ReplayStoreBenchmark -t 8"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class ReplayStoreBenchmark {
+
+    @Param({"1000000", "4000000"})
+    public long entries;
+    @Param({"IN_MEMORY", "MAPPED"})
+    public String storeType;
+
+    private final AtomicLong clock = new AtomicLong();
+    private AbstractReplayStore store;
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        store = switch (storeType) {
+            case "MAPPED" -> {
+                file = Files.createTempFile("replay", ".store");
+                Files.delete(file);
+                yield MappedReplayStore.builder()
+                        .file(file)
+                        .capacity((int) (4 * entries))
+                        .maximumRetentionMillis(entries)
+                        .currentTimeProvider(clock::get)
+                        .build();
+            }
+            default -> InMemoryReplayStore.builder()
+                    .maximumEntries(2 * entries)
+                    .bucketWidthMillis(Math.max(1L, entries / 64))
+                    .maximumRetentionMillis(entries)
+                    .currentTimeProvider(clock::get)
+                    .build();
+        };
+        for (long i = 0; i < entries; i++) {
+            markNewToken();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (store instanceof MappedReplayStore mappedStore) {
+            mappedStore.close();
+            Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    public boolean markNewToken() {
+        long now = clock.incrementAndGet();
+        return store.markConsumed(ThreadLocalRandom.current().nextLong(), now + entries);
+    }
+
+    @Benchmark
+    public boolean markReplayedToken() {
+        return store.markConsumed(0L, clock.get() + entries);
+    }
+}
@@ -0,0 +1,48 @@
+package io.github.yaforster.flexcaptcha.benchmark;
+
+import io.github.yaforster.flexcaptcha.impl.rendering.CaptchaRenderer;
+import io.github.yaforster.flexcaptcha.impl.rendering.TextRenderingMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of rendering captchas per text rendering mode, with no noise and the uncompressed BMP format, so the time
+ * is dominated by drawing the text. All threads share one renderer, so running with increasing thread counts, e.g.
+ * {@code -t 1}, {@code -t 8} and {@code -t 32}, shows how each mode scales with the number of cores.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="TextRenderingBenchmark -t 8"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextRenderingBenchmark {
+
+    private static final String SOLUTION = "aBc123Xy";
+
+    @Param({"JAVA2D", "GLYPH_ATLAS", "OUTLINE"})
+    public TextRenderingMode textRenderingMode;
+
+    private CaptchaRenderer renderer;
+
+    @Setup
+    public void setUp() {
+        renderer = CaptchaRenderer.builder()
+                .imgFileFormat("BMP")
+                .availableTextColors(List.of(Color.BLUE, Color.RED, Color.BLACK))
+                .textRenderingMode(textRenderingMode)
+                .build();
+    }
+
+    @Benchmark
+    public void render() throws IOException {
+        renderer.renderTo(SOLUTION, OutputStream.nullOutputStream());
+    }
+}
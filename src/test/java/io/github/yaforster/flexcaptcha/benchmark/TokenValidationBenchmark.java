@@ -0,0 +1,65 @@
+package io.github.yaforster.flexcaptcha.benchmark;
+
+import io.github.yaforster.flexcaptcha.impl.token.CaptchaCipher;
+import io.github.yaforster.flexcaptcha.impl.token.CryptoInstancePool;
+import io.github.yaforster.flexcaptcha.impl.token.DerivedKeyCache;
+import io.github.yaforster.flexcaptcha.impl.token.FastSaltEncoder;
+import io.github.yaforster.flexcaptcha.impl.token.TokenFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and allocation of token validation from a String, a byte array slice and a direct {@link ByteBuffer}.
+ * Meant to be run with the GC profiler to compare the allocated bytes per operation:
+ * {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="TokenValidationBenchmark -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenValidationBenchmark {
+
+    private static final String SOLUTION = "abc123";
+    private static final String SALT = "someSessionId";
+
+    @Param({"LEGACY_CBC", "AES_GCM", "COMPACT"})
+    public TokenFormat tokenFormat;
+
+    private CaptchaCipher cipher;
+    private String token;
+    private byte[] tokenBytes;
+    private ByteBuffer directToken;
+
+    @Setup
+    public void setUp() {
+        cipher = CaptchaCipher.builder()
+                .tokenFormat(tokenFormat)
+                .derivedKeyCache(DerivedKeyCache.builder().build())
+                .cryptoInstancePool(CryptoInstancePool.builder().build())
+                .saltEncoder(new FastSaltEncoder())
+                .build();
+        token = cipher.generateToken(SOLUTION, SALT);
+        tokenBytes = token.getBytes(StandardCharsets.US_ASCII);
+        directToken = ByteBuffer.allocateDirect(tokenBytes.length).put(tokenBytes).flip();
+    }
+
+    @Benchmark
+    public boolean validateString() {
+        return cipher.validateToken(token, SALT, SOLUTION);
+    }
+
+    @Benchmark
+    public boolean validateBytes() {
+        return cipher.validateToken(tokenBytes, 0, tokenBytes.length, SALT, SOLUTION);
+    }
+
+    @Benchmark
+    public boolean validateDirectBuffer() {
+        return cipher.validateToken(directToken, SALT, SOLUTION);
+    }
+}
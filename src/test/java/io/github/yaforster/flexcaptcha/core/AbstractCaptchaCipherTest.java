@@ -9,6 +9,7 @@ import org.mockito.Mockito;
 
 import javax.crypto.Cipher;
 import javax.crypto.NoSuchPaddingException;
+import java.io.Serializable;
 import java.security.NoSuchAlgorithmException;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -61,4 +62,26 @@ class AbstractCaptchaCipherTest {
                 () -> captchaCipher.getCipher(FICTIONAL_PASSWORD, FICTIONAL_SALT, Cipher.ENCRYPT_MODE, FICTIONAL_IV));
         assertTrue(exception.getLocalizedMessage().contains("Fatal error during token encryption"));
     }
-}
\ No newline at end of file
+
+    @Test
+    final void three_argument_constructor_should_default_its_collaborators() {
+        AbstractCaptchaCipher captchaCipher = new AbstractCaptchaCipher(CipherSettings.getDefaultCipherSettings(),
+                FICTIONAL_PASSWORD, null) {
+            @Override
+            public String generateToken(String captchaSolution, Serializable saltSource) {
+                return captchaSolution;
+            }
+
+            @Override
+            public boolean validateToken(String tokenString, Serializable saltSource, String answer) {
+                return tokenString.equals(answer);
+            }
+        };
+        assertArrayEquals(AbstractCaptchaCipher.getSaltBytes(FICTIONAL_SALT),
+                captchaCipher.encodeSalt(FICTIONAL_SALT));
+        assertEquals(16, captchaCipher.generateRandomBytes(16).length);
+        assertDoesNotThrow(() -> captchaCipher.getCipher(FICTIONAL_PASSWORD, FICTIONAL_SALT, Cipher.ENCRYPT_MODE,
+                FICTIONAL_IV));
+        assertTrue(captchaCipher.consumeToken(FICTIONAL_IV, 0, FICTIONAL_IV.length, Long.MAX_VALUE));
+    }
+}
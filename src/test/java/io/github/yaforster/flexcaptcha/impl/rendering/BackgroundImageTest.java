@@ -1,11 +1,12 @@
 package io.github.yaforster.flexcaptcha.impl.rendering;
 
+import io.github.yaforster.flexcaptcha.util.SeededRandomSource;
 import org.junit.jupiter.api.Test;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 class BackgroundImageTest {
 
@@ -24,4 +25,56 @@ class BackgroundImageTest {
 
         assertEquals(testColor, pixelColor);
     }
-}
\ No newline at end of file
+
+    @Test
+    void drawBackground_should_match_java2d_composition() {
+        BufferedImage texture = new BufferedImage(3, 2, BufferedImage.TYPE_INT_ARGB);
+        texture.setRGB(0, 0, 0xFFFF0000);
+        texture.setRGB(1, 0, 0x8000FF00);
+        texture.setRGB(2, 1, 0x00000000);
+        BackgroundImage background = new BackgroundImage(Color.BLUE, texture);
+        BufferedImage expected = new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB);
+        Graphics2D expectedGraphic = expected.createGraphics();
+        expectedGraphic.setColor(Color.BLUE);
+        expectedGraphic.fillRect(0, 0, 4, 3);
+        expectedGraphic.drawImage(texture, null, 0, 0);
+        expectedGraphic.dispose();
+
+        for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR}) {
+            BufferedImage testImage = new BufferedImage(4, 3, type);
+
+            background.drawBackground(testImage);
+
+            assertArrayEquals(expected.getRGB(0, 0, 4, 3, null, 0, 4), testImage.getRGB(0, 0, 4, 3, null, 0, 4));
+        }
+    }
+
+    @Test
+    void drawBackground_with_random_offset_should_copy_window_of_image() {
+        BufferedImage texture = new BufferedImage(8, 4, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 8; x++) {
+                texture.setRGB(x, y, y << 8 | x);
+            }
+        }
+        BackgroundImage background = new BackgroundImage(Color.BLUE, texture, true);
+        SeededRandomSource randomSource = new SeededRandomSource(7L);
+        boolean offsetVaried = false;
+
+        for (int i = 0; i < 20; i++) {
+            BufferedImage testImage = new BufferedImage(3, 2, BufferedImage.TYPE_INT_RGB);
+
+            background.drawBackground(testImage, randomSource);
+
+            int offsetX = testImage.getRGB(0, 0) & 0xFF;
+            int offsetY = testImage.getRGB(0, 0) >> 8 & 0xFF;
+            offsetVaried |= offsetX != 0 || offsetY != 0;
+            for (int y = 0; y < 2; y++) {
+                for (int x = 0; x < 3; x++) {
+                    assertEquals(texture.getRGB(offsetX + x, offsetY + y), testImage.getRGB(x, y));
+                }
+            }
+        }
+        assertTrue(offsetVaried);
+    }
+}
@@ -1,20 +1,31 @@
 package io.github.yaforster.flexcaptcha.impl.rendering;
 
+import com.jhlabs.image.GaussianFilter;
+import io.github.yaforster.flexcaptcha.core.AbstractCaptchaImageEncoder;
+import io.github.yaforster.flexcaptcha.core.AbstractCaptchaRenderer;
+import io.github.yaforster.flexcaptcha.util.AbstractRandomSource;
+import io.github.yaforster.flexcaptcha.util.FastRandomSource;
+import io.github.yaforster.flexcaptcha.util.SeededRandomSource;
 import org.junit.jupiter.api.Test;
-import org.mockito.MockedStatic;
-import org.mockito.Mockito;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.any;
 
 class CaptchaRendererTest {
 
@@ -30,6 +41,34 @@ class CaptchaRendererTest {
         assertDoesNotThrow(() -> renderer.renderAndConvertToBytes("abc123"));
     }
 
+    @Test
+    final void four_argument_constructor_should_default_random_source_and_encoder() throws IOException {
+        AtomicReference<AbstractRandomSource> usedRandomSource = new AtomicReference<>();
+        AbstractCaptchaRenderer renderer = new AbstractCaptchaRenderer(10, 20, List.of(Color.RED, Color.BLUE), "png") {
+            @Override
+            public byte[] renderAndConvertToBytes(String textToRender) {
+                usedRandomSource.set(randomSource);
+                BufferedImage image = new BufferedImage(pictureWidth, pictureHeight, BufferedImage.TYPE_INT_RGB);
+                Graphics2D graphic = image.createGraphics();
+                graphic.setColor(pickRandomColor(availableTextColors));
+                graphic.fillRect(0, 0, pictureWidth, pictureHeight);
+                graphic.dispose();
+                try {
+                    return imageEncoder.encode(image);
+                }
+                catch (IOException e) {
+                    throw new CaptchaRenderingException(e);
+                }
+            }
+        };
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(renderer.renderAndConvertToBytes("abc123")));
+
+        assertEquals(20, image.getWidth());
+        assertTrue(List.of(Color.RED.getRGB(), Color.BLUE.getRGB()).contains(image.getRGB(0, 0)));
+        assertInstanceOf(FastRandomSource.class, usedRandomSource.get());
+    }
+
     @Test
     final void renderAndConvertToBytes_test_height() throws IOException {
         int targetHeight = 100;
@@ -89,11 +128,287 @@ class CaptchaRendererTest {
 
     @Test
     final void renderAndConvertToBytes_test_errorhandling() {
-        try (MockedStatic<ImageIO> imageIOMock = Mockito.mockStatic(ImageIO.class)) {
-            imageIOMock.when(() -> ImageIO.write(any(), any(), Mockito.any(OutputStream.class)))
-                    .thenThrow(IOException.class);
-            CaptchaRenderer renderer = CaptchaRenderer.builder().imgFileFormat(null).build();
-            assertThrows(CaptchaRenderingException.class, () -> renderer.renderAndConvertToBytes("abc123"));
+        AbstractCaptchaImageEncoder failingEncoder = new AbstractCaptchaImageEncoder() {
+            @Override
+            public String getFormatName() {
+                return "JPG";
+            }
+
+            @Override
+            public void encode(BufferedImage image, OutputStream output) throws IOException {
+                throw new IOException();
+            }
+        };
+        CaptchaRenderer renderer = CaptchaRenderer.builder().imageEncoder(failingEncoder).build();
+        assertThrows(CaptchaRenderingException.class, () -> renderer.renderAndConvertToBytes("abc123"));
+    }
+
+    @Test
+    final void renderAndConvertToBytes_with_default_encoder_matches_imageio() throws IOException {
+        CaptchaRenderer renderer = CaptchaRenderer.builder()
+                .imgFileFormat("PNG")
+                .noiseSettings(new NoiseSettings(4, Color.GRAY))
+                .randomSource(new SeededRandomSource(42L))
+                .build();
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(renderer.renderAndConvertToBytes("abc123")));
+
+        for (String format : List.of("PNG", "JPG", "BMP", "GIF")) {
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            ImageIO.write(image, format, expected);
+            ImageIOCaptchaImageEncoder encoder = ImageIOCaptchaImageEncoder.builder().formatName(format).build();
+
+            assertArrayEquals(expected.toByteArray(), encoder.encode(image), format);
+            assertArrayEquals(expected.toByteArray(), encoder.encode(image), format);
+        }
+    }
+
+    @Test
+    final void renderAndConvertToBytes_with_compression_quality() {
+        CaptchaRenderer lowQuality = CaptchaRenderer.builder()
+                .imageEncoder(ImageIOCaptchaImageEncoder.builder().compressionQuality(0.1f).build())
+                .randomSource(new SeededRandomSource(42L))
+                .build();
+        CaptchaRenderer highQuality = CaptchaRenderer.builder()
+                .imageEncoder(ImageIOCaptchaImageEncoder.builder().compressionQuality(1f).build())
+                .randomSource(new SeededRandomSource(42L))
+                .build();
+
+        assertTrue(lowQuality.renderAndConvertToBytes("abc123").length
+                < highQuality.renderAndConvertToBytes("abc123").length);
+        assertThrows(IllegalArgumentException.class,
+                () -> ImageIOCaptchaImageEncoder.builder().compressionQuality(2f).build());
+        assertThrows(IllegalArgumentException.class,
+                () -> ImageIOCaptchaImageEncoder.builder().formatName("unknown").build());
+    }
+
+    @Test
+    final void renderTo_should_write_same_image_as_renderAndConvertToBytes() throws IOException {
+        CaptchaRenderer.CaptchaRendererBuilder builder = CaptchaRenderer.builder()
+                .imgFileFormat("PNG")
+                .noiseSettings(new NoiseSettings(4, Color.GRAY));
+        byte[] expected = builder.randomSource(new SeededRandomSource(42L)).build().renderAndConvertToBytes("abc123");
+        ByteArrayOutputStream streamOutput = new ByteArrayOutputStream();
+        ByteArrayOutputStream channelOutput = new ByteArrayOutputStream();
+
+        builder.randomSource(new SeededRandomSource(42L)).build().renderTo("abc123", streamOutput);
+        builder.randomSource(new SeededRandomSource(42L)).build().renderTo("abc123",
+                Channels.newChannel(channelOutput));
+
+        assertArrayEquals(expected, streamOutput.toByteArray());
+        assertArrayEquals(expected, channelOutput.toByteArray());
+    }
+
+    @Test
+    final void renderAndConvertToBytes_with_indexed_colors_matches_rgb() throws IOException {
+        for (TextRenderingMode textRenderingMode : TextRenderingMode.values()) {
+            CaptchaRenderer.CaptchaRendererBuilder builder = CaptchaRenderer.builder()
+                    .imgFileFormat("PNG")
+                    .noiseSettings(new NoiseSettings(4, Color.GRAY))
+                    .availableTextColors(List.of(Color.BLUE, Color.RED, Color.BLACK))
+                    .textRenderingMode(textRenderingMode);
+            byte[] rgbBytes = builder.randomSource(new SeededRandomSource(42L)).colorMode(ColorMode.RGB).build()
+                    .renderAndConvertToBytes("aBc123");
+            byte[] indexedBytes = builder.randomSource(new SeededRandomSource(42L)).colorMode(ColorMode.INDEXED)
+                    .build().renderAndConvertToBytes("aBc123");
+
+            BufferedImage rgbImage = ImageIO.read(new ByteArrayInputStream(rgbBytes));
+            BufferedImage indexedImage = ImageIO.read(new ByteArrayInputStream(indexedBytes));
+
+            assertEquals(BufferedImage.TYPE_BYTE_INDEXED, indexedImage.getType());
+            assertArrayEquals(getPixels(rgbImage), getPixels(indexedImage));
+            assertTrue(indexedBytes.length < rgbBytes.length);
+        }
+    }
+
+    @Test
+    final void build_with_indexed_colors_rejects_colors_outside_palette() {
+        BufferedImage texture = new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB);
+        CaptchaRenderer.CaptchaRendererBuilder imageBackgroundBuilder = CaptchaRenderer.builder()
+                .colorMode(ColorMode.INDEXED)
+                .imageBackground(new BackgroundImage(Color.WHITE, texture));
+        CaptchaRenderer.CaptchaRendererBuilder filterBuilder = CaptchaRenderer.builder()
+                .colorMode(ColorMode.INDEXED)
+                .imageOperationsList(List.of(new GaussianFilter(2f)));
+
+        assertThrows(IllegalArgumentException.class, imageBackgroundBuilder::build);
+        assertThrows(IllegalArgumentException.class, filterBuilder::build);
+    }
+
+    @Test
+    final void renderAndConvertToBytes_with_seeded_random_source_is_reproducible() {
+        CaptchaRenderer first = CaptchaRenderer.builder()
+                .noiseSettings(new NoiseSettings(4, Color.GRAY))
+                .availableTextColors(List.of(Color.BLUE, Color.RED))
+                .randomSource(new SeededRandomSource(42L))
+                .build();
+        CaptchaRenderer second = CaptchaRenderer.builder()
+                .noiseSettings(new NoiseSettings(4, Color.GRAY))
+                .availableTextColors(List.of(Color.BLUE, Color.RED))
+                .randomSource(new SeededRandomSource(42L))
+                .build();
+
+        assertArrayEquals(first.renderAndConvertToBytes("abc123"), second.renderAndConvertToBytes("abc123"));
+    }
+
+    @Test
+    final void renderAndConvertToBytes_with_glyph_atlas_matches_java2d_for_unrotated_text() throws IOException {
+        CaptchaRenderer.CaptchaRendererBuilder builder = CaptchaRenderer.builder()
+                .imgFileFormat("PNG")
+                .maximumLetterRotationAngle(0.0d)
+                .availableTextColors(List.of(Color.BLUE));
+        CaptchaRenderer java2dRenderer = builder.textRenderingMode(TextRenderingMode.JAVA2D).build();
+        CaptchaRenderer atlasRenderer = builder.textRenderingMode(TextRenderingMode.GLYPH_ATLAS).build();
+
+        BufferedImage java2dImage = ImageIO.read(new ByteArrayInputStream(
+                java2dRenderer.renderAndConvertToBytes("aBc123")));
+        BufferedImage atlasImage = ImageIO.read(new ByteArrayInputStream(
+                atlasRenderer.renderAndConvertToBytes("aBc123")));
+
+        assertArrayEquals(getPixels(java2dImage), getPixels(atlasImage));
+    }
+
+    @Test
+    final void renderAndConvertToBytes_with_glyph_atlas_draws_rotated_text() throws IOException {
+        CaptchaRenderer renderer = CaptchaRenderer.builder()
+                .imgFileFormat("PNG")
+                .availableTextColors(List.of(Color.BLUE, Color.RED))
+                .textRenderingMode(TextRenderingMode.GLYPH_ATLAS)
+                .build();
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(renderer.renderAndConvertToBytes("aBc123")));
+
+        assertTrue(IntStream.of(getPixels(image)).anyMatch(rgb -> (rgb & 0xFFFFFF) != 0xFFFFFF));
+    }
+
+    @Test
+    final void renderAndConvertToBytes_with_outlines_matches_java2d_closely() throws IOException {
+        CaptchaRenderer.CaptchaRendererBuilder builder = CaptchaRenderer.builder()
+                .imgFileFormat("PNG")
+                .availableTextColors(List.of(Color.BLUE, Color.RED, Color.BLACK));
+        int[] java2dPixels = getPixels(ImageIO.read(new ByteArrayInputStream(builder
+                .randomSource(new SeededRandomSource(42L)).textRenderingMode(TextRenderingMode.JAVA2D).build()
+                .renderAndConvertToBytes("aBc123"))));
+        int[] outlinePixels = getPixels(ImageIO.read(new ByteArrayInputStream(builder
+                .randomSource(new SeededRandomSource(42L)).textRenderingMode(TextRenderingMode.OUTLINE).build()
+                .renderAndConvertToBytes("aBc123"))));
+
+        int java2dTextPixels = 0;
+        int outlineTextPixels = 0;
+        int differentPixels = 0;
+        for (int i = 0; i < java2dPixels.length; i++) {
+            java2dTextPixels += (java2dPixels[i] & 0xFFFFFF) != 0xFFFFFF ? 1 : 0;
+            outlineTextPixels += (outlinePixels[i] & 0xFFFFFF) != 0xFFFFFF ? 1 : 0;
+            differentPixels += java2dPixels[i] != outlinePixels[i] ? 1 : 0;
+        }
+        // the outlines are not hinted, so edges may be placed a pixel apart, but the same glyphs are drawn
+        assertTrue(java2dTextPixels > 0);
+        assertEquals(java2dTextPixels, outlineTextPixels, java2dTextPixels / 10.0);
+        assertTrue(differentPixels < java2dTextPixels / 4, differentPixels + " of " + java2dTextPixels);
+    }
+
+    @Test
+    final void renderBatch_with_single_worker_matches_sequential_rendering() {
+        List<String> texts = List.of("abc123", "XyZ", "a", "abc123", "longertext42");
+        CaptchaRenderer.CaptchaRendererBuilder builder = CaptchaRenderer.builder()
+                .imgFileFormat("PNG")
+                .noiseSettings(new NoiseSettings(4, Color.GRAY))
+                .availableTextColors(List.of(Color.BLUE, Color.RED, Color.BLACK));
+        CaptchaRenderer sequentialRenderer = builder.randomSource(new SeededRandomSource(42L).split()).build();
+        CaptchaRenderer batchRenderer = builder.randomSource(new SeededRandomSource(42L)).build();
+
+        List<byte[]> images;
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            images = batchRenderer.renderBatch(texts, executor, 1);
+        }
+
+        assertEquals(texts.size(), images.size());
+        for (int i = 0; i < texts.size(); i++) {
+            assertArrayEquals(sequentialRenderer.renderAndConvertToBytes(texts.get(i)), images.get(i));
+        }
+    }
+
+    @Test
+    final void renderBatch_returns_images_in_order_of_texts() {
+        List<String> texts = IntStream.range(0, 40).mapToObj(i -> "text" + i).toList();
+        CaptchaRenderer renderer = CaptchaRenderer.builder()
+                .imgFileFormat("PNG")
+                .maximumLetterRotationAngle(0.0d)
+                .build();
+
+        List<byte[]> images;
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            images = renderer.renderBatch(texts, executor, 4);
+        }
+
+        for (int i = 0; i < texts.size(); i++) {
+            assertArrayEquals(renderer.renderAndConvertToBytes(texts.get(i)), images.get(i));
+        }
+        assertEquals(List.of(), renderer.renderBatch(List.of()));
+    }
+
+    @Test
+    final void renderBatch_test_errorhandling() {
+        AbstractCaptchaImageEncoder failingEncoder = new AbstractCaptchaImageEncoder() {
+            @Override
+            public String getFormatName() {
+                return "JPG";
+            }
+
+            @Override
+            public void encode(BufferedImage image, OutputStream output) throws IOException {
+                throw new IOException();
+            }
+        };
+        CaptchaRenderer renderer = CaptchaRenderer.builder().imageEncoder(failingEncoder).build();
+
+        assertThrows(CaptchaRenderingException.class, () -> renderer.renderBatch(List.of("abc123", "def456")));
+    }
+
+    @Test
+    final void renderAndConvertToBytes_reusing_render_context_leaves_no_traces() {
+        for (TextRenderingMode textRenderingMode : TextRenderingMode.values()) {
+            CaptchaRenderer.CaptchaRendererBuilder builder = CaptchaRenderer.builder()
+                    .imgFileFormat("PNG")
+                    .maximumLetterRotationAngle(0.0d)
+                    .textRenderingMode(textRenderingMode);
+            CaptchaRenderer reusedRenderer = builder.build();
+            reusedRenderer.renderAndConvertToBytes("WWWWWWWW");
+
+            assertArrayEquals(builder.build().renderAndConvertToBytes("i"), reusedRenderer.renderAndConvertToBytes("i"),
+                    textRenderingMode.name());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    final void renderAndConvertToBytes_on_virtual_threads_matches_platform_thread() throws Exception {
+        CaptchaRenderer renderer = CaptchaRenderer.builder()
+                .imgFileFormat("PNG")
+                .maximumLetterRotationAngle(0.0d)
+                .build();
+        byte[] expected = renderer.renderAndConvertToBytes("abc123");
+
+        List<Future<byte[]>> images = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 32; i++) {
+                images.add(executor.submit(() -> renderer.renderAndConvertToBytes("abc123")));
+            }
+        }
+
+        for (Future<byte[]> image : images) {
+            assertArrayEquals(expected, image.get());
+        }
+    }
+
+    @Test
+    final void renderAndConvertToBytes_with_varying_text_lengths() {
+        CaptchaRenderer renderer = CaptchaRenderer.builder().build();
+
+        for (String text : List.of("a", "abc123", "abcd", "abc123", "x".repeat(70))) {
+            assertDoesNotThrow(() -> renderer.renderAndConvertToBytes(text));
+        }
+    }
+
+    private static int[] getPixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}
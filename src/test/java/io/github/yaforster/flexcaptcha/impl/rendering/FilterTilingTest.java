@@ -0,0 +1,53 @@
+package io.github.yaforster.flexcaptcha.impl.rendering;
+
+import com.jhlabs.image.AbstractBufferedImageOp;
+import com.jhlabs.image.BoxBlurFilter;
+import com.jhlabs.image.ConvolveFilter;
+import com.jhlabs.image.GaussianFilter;
+import com.jhlabs.image.TwirlFilter;
+import io.github.yaforster.flexcaptcha.util.SeededRandomSource;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilterTilingTest {
+
+    private static BufferedImage createNoiseImage() {
+        BufferedImage image = new BufferedImage(120, 90, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = new int[120 * 90];
+        new SeededRandomSource(5L).nextInts(pixels, 0xFFFFFF);
+        image.setRGB(0, 0, 120, 90, pixels, 0, 120);
+        return image;
+    }
+
+    @Test
+    void apply_should_match_sequential_filtering() {
+        ConvolveFilter convolveFilter = new ConvolveFilter(new float[]{0, 0.2f, 0, 0.2f, 0.2f, 0.2f, 0, 0.2f, 0});
+        List<AbstractBufferedImageOp> operations = List.of(new GaussianFilter(4.5f), new BoxBlurFilter(2.5f, 3.5f, 2),
+                convolveFilter, new TwirlFilter());
+        BufferedImage expected = createNoiseImage();
+        operations.forEach(operation -> operation.filter(expected, expected));
+        ForkJoinPool pool = new ForkJoinPool(3);
+        FilterTiling filterTiling = FilterTiling.builder().pool(pool).maximumBands(5).build();
+        BufferedImage tiled = createNoiseImage();
+
+        filterTiling.apply(operations, tiled);
+
+        pool.shutdown();
+        assertArrayEquals(expected.getRGB(0, 0, 120, 90, null, 0, 120), tiled.getRGB(0, 0, 120, 90, null, 0, 120));
+    }
+
+    @Test
+    void getDefaultHalo_should_reject_position_dependent_filters() {
+        ConvolveFilter wrappingFilter = new ConvolveFilter();
+        wrappingFilter.setEdgeAction(ConvolveFilter.WRAP_EDGES);
+
+        assertEquals(-1, FilterTiling.getDefaultHalo(new TwirlFilter()));
+        assertEquals(-1, FilterTiling.getDefaultHalo(wrappingFilter));
+        assertEquals(3, FilterTiling.getDefaultHalo(new GaussianFilter(3f)));
+    }
+}
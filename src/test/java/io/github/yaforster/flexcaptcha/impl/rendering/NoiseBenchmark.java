@@ -0,0 +1,54 @@
+package io.github.yaforster.flexcaptcha.impl.rendering;
+
+import io.github.yaforster.flexcaptcha.util.SeededRandomSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to draw the noise of a 300x100 captcha for different noise intensities. {@code TYPE_INT_RGB} images have their
+ * pixels written directly, {@code TYPE_3BYTE_BGR} images take the Java2D path. Placed next to the package-private
+ * {@link NoiseEngine} instead of in the benchmark package.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="NoiseBenchmark"}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NoiseBenchmark {
+
+    @Param({"1", "8", "25", "100"})
+    public int noiseIntensity;
+    @Param({"TYPE_INT_RGB", "TYPE_3BYTE_BGR"})
+    public String imageType;
+
+    private NoiseEngine noiseEngine;
+    private SeededRandomSource randomSource;
+    private BufferedImage image;
+    private Graphics2D graphic;
+
+    @Setup
+    public void setUp() {
+        noiseEngine = new NoiseEngine(new NoiseSettings(noiseIntensity, Color.GRAY));
+        randomSource = new SeededRandomSource(42L);
+        image = new BufferedImage(300, 100, "TYPE_INT_RGB".equals(imageType) ? BufferedImage.TYPE_INT_RGB
+                : BufferedImage.TYPE_3BYTE_BGR);
+        graphic = image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphic.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage drawNoise() {
+        noiseEngine.drawNoise(image, graphic, randomSource);
+        return image;
+    }
+}
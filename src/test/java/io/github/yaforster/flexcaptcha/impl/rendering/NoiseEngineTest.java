@@ -0,0 +1,49 @@
+package io.github.yaforster.flexcaptcha.impl.rendering;
+
+import io.github.yaforster.flexcaptcha.util.SeededRandomSource;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoiseEngineTest {
+
+    @Test
+    void drawNoise_on_pixels_should_match_java2d() {
+        NoiseEngine noiseEngine = new NoiseEngine(new NoiseSettings(40, new Color(40, 120, 200)));
+        BufferedImage rasterImage = new BufferedImage(120, 40, BufferedImage.TYPE_INT_RGB);
+        BufferedImage java2dImage = new BufferedImage(120, 40, BufferedImage.TYPE_3BYTE_BGR);
+
+        for (BufferedImage image : new BufferedImage[]{rasterImage, java2dImage}) {
+            Graphics2D graphic = image.createGraphics();
+            noiseEngine.drawNoise(image, graphic, new SeededRandomSource(3L));
+            graphic.dispose();
+        }
+
+        assertArrayEquals(java2dImage.getRGB(0, 0, 120, 40, null, 0, 120),
+                rasterImage.getRGB(0, 0, 120, 40, null, 0, 120));
+    }
+
+    @Test
+    void drawNoise_should_scale_with_intensity() {
+        int[] changedPixels = new int[3];
+        int[] intensities = {0, 5, 50};
+
+        for (int i = 0; i < intensities.length; i++) {
+            NoiseEngine noiseEngine = new NoiseEngine(new NoiseSettings(intensities[i], Color.GRAY));
+            BufferedImage image = new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphic = image.createGraphics();
+            noiseEngine.drawNoise(image, graphic, new SeededRandomSource(11L));
+            graphic.dispose();
+            for (int rgb : image.getRGB(0, 0, 200, 100, null, 0, 200)) {
+                changedPixels[i] += (rgb & 0xFFFFFF) != 0 ? 1 : 0;
+            }
+        }
+
+        assertEquals(0, changedPixels[0]);
+        assertTrue(changedPixels[1] > 0);
+        assertTrue(changedPixels[2] > changedPixels[1]);
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.yaforster.flexcaptcha.impl.rendering;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScanlineRasteriserTest {
+
+    @Test
+    void fill_should_match_java2d_up_to_rounding_at_edges() {
+        Random random = new Random(5L);
+        for (boolean nonZero : new boolean[]{true, false}) {
+            for (int polygon = 0; polygon < 20; polygon++) {
+                float[] points = new float[2 * 12];
+                for (int i = 0; i < points.length; i++) {
+                    points[i] = random.nextFloat() * 70f - 5f;
+                }
+                int[] contourEnds = {5, 12};
+                BufferedImage rasterImage = new BufferedImage(60, 60, BufferedImage.TYPE_INT_RGB);
+                BufferedImage java2dImage = new BufferedImage(60, 60, BufferedImage.TYPE_INT_RGB);
+
+                ScanlineRasteriser.fill(points, contourEnds, nonZero, 0, 0, 60, 60,
+                        ((DataBufferInt) rasterImage.getRaster().getDataBuffer()).getData(), 60, 0xFFFFFF, 255);
+                Graphics2D graphic = java2dImage.createGraphics();
+                graphic.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+                graphic.setColor(Color.WHITE);
+                graphic.fill(toPath(points, contourEnds, nonZero));
+                graphic.dispose();
+
+                // Java2D steps along the edges in fixed point, so pixels whose centers lie within a rounding error
+                // of an edge may differ
+                int[] java2dPixels = java2dImage.getRGB(0, 0, 60, 60, null, 0, 60);
+                int[] rasterPixels = rasterImage.getRGB(0, 0, 60, 60, null, 0, 60);
+                for (int i = 0; i < java2dPixels.length; i++) {
+                    if (java2dPixels[i] != rasterPixels[i]) {
+                        double distance = getDistanceToEdges(points, contourEnds, i % 60 + 0.5, i / 60 + 0.5);
+                        assertTrue(distance < 1 / 16.0, "pixel " + i + " is " + distance + " away from the edges");
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void fill_should_stay_within_clip() {
+        float[] square = {0f, 0f, 20f, 0f, 20f, 20f, 0f, 20f};
+        byte[] pixels = new byte[20 * 20];
+
+        ScanlineRasteriser.fill(square, new int[]{4}, true, 5, 5, 10, 15, pixels, 20, 1, 255);
+
+        for (int row = 0; row < 20; row++) {
+            for (int column = 0; column < 20; column++) {
+                boolean insideClip = column >= 5 && column < 10 && row >= 5 && row < 15;
+                assertEquals(insideClip ? 1 : 0, pixels[row * 20 + column]);
+            }
+        }
+    }
+
+    private static double getDistanceToEdges(float[] points, int[] contourEnds, double x, double y) {
+        double distance = Double.POSITIVE_INFINITY;
+        int contourStart = 0;
+        for (int contourEnd : contourEnds) {
+            for (int point = contourStart; point < contourEnd; point++) {
+                int next = point + 1 < contourEnd ? point + 1 : contourStart;
+                distance = Math.min(distance, Line2D.ptSegDist(points[2 * point], points[2 * point + 1],
+                        points[2 * next], points[2 * next + 1], x, y));
+            }
+            contourStart = contourEnd;
+        }
+        return distance;
+    }
+
+    private static Path2D toPath(float[] points, int[] contourEnds, boolean nonZero) {
+        Path2D.Float path = new Path2D.Float(nonZero ? Path2D.WIND_NON_ZERO : Path2D.WIND_EVEN_ODD);
+        int contourStart = 0;
+        for (int contourEnd : contourEnds) {
+            path.moveTo(points[2 * contourStart], points[2 * contourStart + 1]);
+            for (int point = contourStart + 1; point < contourEnd; point++) {
+                path.lineTo(points[2 * point], points[2 * point + 1]);
+            }
+            path.closePath();
+            contourStart = contourEnd;
+        }
+        return path;
+    }
+}
@@ -1,12 +1,26 @@
 package io.github.yaforster.flexcaptcha.impl.token;
 
+import io.github.yaforster.flexcaptcha.core.TokenGenerationRequest;
+import io.github.yaforster.flexcaptcha.core.TokenRejectionReason;
+import io.github.yaforster.flexcaptcha.core.TokenValidationRequest;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class CaptchaCipherTest {
@@ -93,4 +107,292 @@ class CaptchaCipherTest {
         assertTrue(exception.getLocalizedMessage().contains("Fatal error during cryptographic operation"));
     }
 
-}
\ No newline at end of file
+    @Test
+    void generate_and_validate_gcm_Token_without_expiration_time() {
+        String solution = "abc123";
+        Serializable salt = "SomeSalt";
+        CaptchaCipher cipher = CaptchaCipher.builder().tokenFormat(TokenFormat.AES_GCM).build();
+
+        String generatedToken = cipher.generateToken(solution, salt);
+        byte[] decodedToken = Base64.getDecoder().decode(generatedToken);
+
+        assertEquals(0x02, decodedToken[0]);
+        assertEquals(1 + 12 + 8 + solution.length() + 16, decodedToken.length);
+        assertTrue(cipher.validateToken(generatedToken, salt, solution));
+        assertFalse(cipher.validateToken(generatedToken, salt, "abc124"));
+    }
+
+    @Test
+    void validate_gcm_Token_with_wrong_salt_should_fail() {
+        CaptchaCipher cipher = CaptchaCipher.builder().tokenFormat(TokenFormat.AES_GCM).build();
+
+        String generatedToken = cipher.generateToken("abc12", "SomeSalt");
+
+        assertFalse(cipher.validateToken(generatedToken, "OtherSalt", "abc12"));
+    }
+
+    @Test
+    void generate_and_validate_gcm_Token_with_expiration_time() {
+        ExpirationTimeSettings mockedExpirationTime = Mockito.mock(ExpirationTimeSettings.class);
+        when(mockedExpirationTime.getTime()).thenReturn(0L);
+        when(mockedExpirationTime.expirationTimeMillisOffset()).thenReturn(1000L);
+        String solution = "abc123";
+        Serializable salt = "SomeSalt";
+        CaptchaCipher cipher = CaptchaCipher.builder()
+                .tokenFormat(TokenFormat.AES_GCM)
+                .expirationTimeSettings(mockedExpirationTime)
+                .build();
+
+        String generatedToken = cipher.generateToken(solution, salt);
+
+        when(mockedExpirationTime.getTime()).thenReturn(1000L);
+        assertTrue(cipher.validateToken(generatedToken, salt, solution));
+        when(mockedExpirationTime.getTime()).thenReturn(1001L);
+        assertFalse(cipher.validateToken(generatedToken, salt, solution));
+    }
+
+    @Test
+    void generate_and_validate_compact_Token_with_expiration_time() {
+        ExpirationTimeSettings mockedExpirationTime = Mockito.mock(ExpirationTimeSettings.class);
+        when(mockedExpirationTime.getTime()).thenReturn(1_700_000_000_000L);
+        when(mockedExpirationTime.expirationTimeMillisOffset()).thenReturn(1000L);
+        String solution = "abc123";
+        Serializable salt = "SomeSalt";
+        CaptchaCipher cipher = CaptchaCipher.builder()
+                .tokenFormat(TokenFormat.COMPACT)
+                .expirationTimeSettings(mockedExpirationTime)
+                .build();
+
+        String generatedToken = cipher.generateToken(solution, salt);
+        byte[] decodedToken = Base64.getUrlDecoder().decode(generatedToken);
+
+        assertTrue(generatedToken.matches("[A-Za-z0-9_-]+"));
+        assertEquals(0x03, decodedToken[0]);
+        assertEquals(0x01, decodedToken[1]);
+        assertEquals(2 + 6 + 12 + solution.length() + 16, decodedToken.length);
+        when(mockedExpirationTime.getTime()).thenReturn(1_700_000_001_000L);
+        assertTrue(cipher.validateToken(generatedToken, salt, solution));
+        assertFalse(cipher.validateToken(generatedToken, salt, "abc124"));
+        when(mockedExpirationTime.getTime()).thenReturn(1_700_000_001_001L);
+        assertFalse(cipher.validateToken(generatedToken, salt, solution));
+    }
+
+    @Test
+    void validate_compact_Token_with_altered_expiration_time_should_fail() {
+        ExpirationTimeSettings expirationTimeSettings = new ExpirationTimeSettings(60_000L, System::currentTimeMillis);
+        CaptchaCipher cipher = CaptchaCipher.builder()
+                .tokenFormat(TokenFormat.COMPACT)
+                .expirationTimeSettings(expirationTimeSettings)
+                .build();
+        byte[] decodedToken = Base64.getUrlDecoder().decode(cipher.generateToken("abc123", "SomeSalt"));
+
+        decodedToken[2] ^= 0x01;
+
+        assertFalse(cipher.validateToken(Base64.getUrlEncoder().encodeToString(decodedToken), "SomeSalt", "abc123"));
+    }
+
+    @Test
+    void compact_Token_should_be_shorter_than_other_formats() {
+        ExpirationTimeSettings expirationTimeSettings = new ExpirationTimeSettings(60_000L, System::currentTimeMillis);
+        int previousLength = Integer.MAX_VALUE;
+        for (TokenFormat tokenFormat : List.of(TokenFormat.LEGACY_CBC, TokenFormat.AES_GCM, TokenFormat.COMPACT)) {
+            CaptchaCipher cipher = CaptchaCipher.builder()
+                    .tokenFormat(tokenFormat)
+                    .expirationTimeSettings(expirationTimeSettings)
+                    .build();
+
+            int length = cipher.generateToken("abc123", "SomeSalt").length();
+
+            assertTrue(length < previousLength, tokenFormat.name());
+            previousLength = length;
+        }
+    }
+
+    @Test
+    void gcm_cipher_should_validate_legacy_Token() {
+        String solution = "abc123";
+        Serializable salt = "SomeSalt";
+        CaptchaCipher legacyCipher = CaptchaCipher.builder().build();
+        CaptchaCipher gcmCipher = CaptchaCipher.builder().tokenFormat(TokenFormat.AES_GCM).build();
+
+        String legacyToken = legacyCipher.generateToken(solution, salt);
+
+        assertTrue(gcmCipher.validateToken(legacyToken, salt, solution));
+        assertTrue(gcmCipher.validateToken("vnBn8x3bpm3wkvJYANdy9VNRijRowlFyq72US0ja4Jo=", "salt", "aBc123"));
+    }
+
+    @Test
+    void validateAll_should_report_results_by_index() {
+        CaptchaCipher cipher = CaptchaCipher.builder().build();
+        String tokenA = cipher.generateToken("abc123", "saltA");
+        String tokenB = cipher.generateToken("def456", "saltB");
+
+        BitSet results = cipher.validateAll(List.of(
+                new TokenValidationRequest(tokenA, "saltA", "abc123"),
+                new TokenValidationRequest(tokenB, "saltB", "wrong"),
+                new TokenValidationRequest(tokenB, "saltB", "def456"),
+                new TokenValidationRequest("malformed", "saltA", "abc123")));
+
+        assertEquals(BitSet.valueOf(new long[]{0b0101}), results);
+    }
+
+    @Test
+    void validateAll_should_derive_key_once_per_salt() {
+        DerivedKeyCache cache = DerivedKeyCache.builder().build();
+        CaptchaCipher cipher = CaptchaCipher.builder().derivedKeyCache(cache).build();
+        List<String> tokens = cipher.generateTokens(List.of(
+                new TokenGenerationRequest("abc123", "salt"),
+                new TokenGenerationRequest("def456", "salt"),
+                new TokenGenerationRequest("ghi789", "salt")));
+        cache.invalidateAll();
+        long missesBefore = cache.getMissCount();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            BitSet results = cipher.validateAll(List.of(
+                    new TokenValidationRequest(tokens.get(0), "salt", "abc123"),
+                    new TokenValidationRequest(tokens.get(1), "salt", "def456"),
+                    new TokenValidationRequest(tokens.get(2), "salt", "ghi789")), executor);
+
+            assertEquals(3, results.cardinality());
+        }
+        assertEquals(1, cache.getMissCount() - missesBefore);
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    void generateTokens_should_keep_order_of_requests() {
+        CaptchaCipher cipher = CaptchaCipher.builder().tokenFormat(TokenFormat.AES_GCM).build();
+        List<TokenGenerationRequest> requests = List.of(
+                new TokenGenerationRequest("abc123", "saltA"),
+                new TokenGenerationRequest("def456", "saltB"),
+                new TokenGenerationRequest("ghi789", "saltA"));
+
+        List<String> tokens = cipher.generateTokens(requests);
+
+        for (int i = 0; i < requests.size(); i++) {
+            assertTrue(cipher.validateToken(tokens.get(i), requests.get(i).saltSource(), requests.get(i).solution()));
+        }
+    }
+
+    @Test
+    void validateToken_should_accept_CharSequence_byte_slice_and_ByteBuffer() {
+        ExpirationTimeSettings expirationTimeSettings = new ExpirationTimeSettings(60_000L, System::currentTimeMillis);
+        for (TokenFormat tokenFormat : TokenFormat.values()) {
+            CaptchaCipher cipher = CaptchaCipher.builder()
+                    .tokenFormat(tokenFormat)
+                    .expirationTimeSettings(expirationTimeSettings)
+                    .build();
+            String token = cipher.generateToken("abcÄ€😀", "salt");
+            byte[] request = ("token=" + token + "&").getBytes(StandardCharsets.US_ASCII);
+            ByteBuffer directBuffer = ByteBuffer.allocateDirect(request.length).put(request).flip().position(6);
+
+            assertTrue(cipher.validateToken(new StringBuilder(token), "salt", new StringBuilder("abcÄ€😀")));
+            assertTrue(cipher.validateToken(request, 6, token.length(), "salt", "abcÄ€😀"));
+            assertTrue(cipher.validateToken(directBuffer.limit(6 + token.length()), "salt", "abcÄ€😀"));
+            assertEquals(6, directBuffer.position());
+            assertFalse(cipher.validateToken(request, 6, token.length(), "salt", "abcÄ€"));
+            assertFalse(cipher.validateToken(request, 6, token.length(), "salt", "abcÄ€😀?"));
+        }
+    }
+
+    @Test
+    void validateToken_should_reject_malformed_Base64() {
+        CaptchaCipher cipher = CaptchaCipher.builder().build();
+
+        assertFalse(cipher.validateToken("not base64!", "salt", "abc123"));
+        assertEquals(1, cipher.getRejectionCount(TokenRejectionReason.MALFORMED_BASE64));
+    }
+
+    @Test
+    void validateToken_should_reject_expired_compact_Token_before_encoding_the_salt() {
+        ExpirationTimeSettings mockedExpirationTime = Mockito.mock(ExpirationTimeSettings.class);
+        when(mockedExpirationTime.getTime()).thenReturn(0L);
+        when(mockedExpirationTime.expirationTimeMillisOffset()).thenReturn(1000L);
+        FastSaltEncoder saltEncoder = Mockito.spy(new FastSaltEncoder());
+        CaptchaCipher cipher = CaptchaCipher.builder()
+                .tokenFormat(TokenFormat.COMPACT)
+                .acceptedTokenFormats(Set.of(TokenFormat.COMPACT))
+                .expirationTimeSettings(mockedExpirationTime)
+                .saltEncoder(saltEncoder)
+                .build();
+        String generatedToken = cipher.generateToken("abc123", "SomeSalt");
+        Mockito.clearInvocations(saltEncoder);
+
+        when(mockedExpirationTime.getTime()).thenReturn(1001L);
+
+        assertFalse(cipher.validateToken(generatedToken, "SomeSalt", "abc123"));
+        assertEquals(1, cipher.getRejectionCount(TokenRejectionReason.EXPIRED));
+        verify(saltEncoder, never()).encode(any());
+    }
+
+    @Test
+    void validateToken_should_reject_unaccepted_formats_without_key_derivation() {
+        DerivedKeyCache cache = DerivedKeyCache.builder().build();
+        CaptchaCipher cipher = CaptchaCipher.builder()
+                .tokenFormat(TokenFormat.COMPACT)
+                .acceptedTokenFormats(Set.of(TokenFormat.COMPACT))
+                .derivedKeyCache(cache)
+                .build();
+        String legacyToken = CaptchaCipher.builder().build().generateToken("abc123", "SomeSalt");
+
+        assertFalse(cipher.validateToken(legacyToken, "SomeSalt", "abc123"));
+        assertEquals(1, cipher.getRejectionCount(TokenRejectionReason.UNSUPPORTED_FORMAT));
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    void validateToken_should_count_rejections_by_reason() {
+        CaptchaCipher cipher = CaptchaCipher.builder()
+                .tokenFormat(TokenFormat.AES_GCM)
+                .replayStore(InMemoryReplayStore.builder().build())
+                .maximumTokenLength(128)
+                .build();
+        String generatedToken = cipher.generateToken("abc123", "SomeSalt");
+
+        assertFalse(cipher.validateToken(generatedToken, "OtherSalt", "abc123"));
+        assertFalse(cipher.validateToken(generatedToken, "SomeSalt", "abc124"));
+        assertFalse(cipher.validateToken(generatedToken, "SomeSalt", "abc123"));
+        assertFalse(cipher.validateToken("A".repeat(129), "SomeSalt", "abc123"));
+        assertFalse(cipher.validateToken("A", "SomeSalt", "abc123"));
+
+        assertEquals(1, cipher.getRejectionCount(TokenRejectionReason.AUTHENTICATION_FAILED));
+        assertEquals(1, cipher.getRejectionCount(TokenRejectionReason.WRONG_ANSWER));
+        assertEquals(1, cipher.getRejectionCount(TokenRejectionReason.REPLAYED));
+        assertEquals(1, cipher.getRejectionCount(TokenRejectionReason.MALFORMED_LENGTH));
+        assertEquals(1, cipher.getRejectionCount(TokenRejectionReason.MALFORMED_BASE64));
+    }
+
+    @Test
+    void validateToken_should_reject_legacy_replay_with_altered_expiration_block() {
+        ExpirationTimeSettings expirationTimeSettings = new ExpirationTimeSettings(60_000L, System::currentTimeMillis);
+        CaptchaCipher cipher = CaptchaCipher.builder()
+                .expirationTimeSettings(expirationTimeSettings)
+                .derivedKeyCache(DerivedKeyCache.builder().build())
+                .replayStore(InMemoryReplayStore.builder().build())
+                .build();
+        byte[] tokenBytes = Base64.getDecoder().decode(cipher.generateToken("abc123", "SomeSalt"));
+        assertTrue(cipher.validateToken(Base64.getEncoder().encodeToString(tokenBytes), "SomeSalt", "abc123"));
+
+        // the expiration block is encrypted separately, so random replacements that happen to decrypt to a valid
+        // expiration time leave the solution intact
+        Random random = new Random(7L);
+        byte[] expirationBlock = new byte[16];
+        for (int attempt = 0; attempt < 20_000 && cipher.getRejectionCount(TokenRejectionReason.REPLAYED) == 0;
+             attempt++) {
+            random.nextBytes(expirationBlock);
+            System.arraycopy(expirationBlock, 0, tokenBytes, 16, 16);
+            String alteredToken = Base64.getEncoder().encodeToString(tokenBytes);
+            assertFalse(cipher.validateToken(alteredToken, "SomeSalt", "abc123"));
+        }
+
+        assertEquals(1, cipher.getRejectionCount(TokenRejectionReason.REPLAYED));
+    }
+
+    @Test
+    void builder_should_require_generated_format_to_be_accepted() {
+        assertThrows(IllegalArgumentException.class, () -> CaptchaCipher.builder()
+                .tokenFormat(TokenFormat.AES_GCM)
+                .acceptedTokenFormats(Set.of(TokenFormat.COMPACT))
+                .build());
+    }
+}
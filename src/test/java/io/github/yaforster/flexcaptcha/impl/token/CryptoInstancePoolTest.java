@@ -0,0 +1,119 @@
+package io.github.yaforster.flexcaptcha.impl.token;
+
+import io.github.yaforster.flexcaptcha.util.SeededRandomSource;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CryptoInstancePoolTest {
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    @Test
+    void acquireCipher_should_reuse_released_instance() throws GeneralSecurityException {
+        CryptoInstancePool pool = CryptoInstancePool.builder().build();
+
+        Cipher first = pool.acquireCipher(TRANSFORMATION);
+        pool.releaseCipher(first);
+        Cipher second = pool.acquireCipher(TRANSFORMATION);
+
+        assertSame(first, second);
+    }
+
+    @Test
+    void acquireCipher_should_not_hand_out_instance_in_use() throws GeneralSecurityException {
+        CryptoInstancePool pool = CryptoInstancePool.builder().build();
+        pool.releaseCipher(pool.acquireCipher(TRANSFORMATION));
+
+        Cipher first = pool.acquireCipher(TRANSFORMATION);
+        Cipher second = pool.acquireCipher(TRANSFORMATION);
+
+        assertNotSame(first, second);
+    }
+
+    @Test
+    void acquireMac_should_separate_algorithms() throws GeneralSecurityException {
+        CryptoInstancePool pool = CryptoInstancePool.builder().build();
+
+        pool.releaseMac(pool.acquireMac("HmacSHA256"));
+        Mac mac = pool.acquireMac("HmacSHA512");
+
+        assertEquals("HmacSHA512", mac.getAlgorithm());
+    }
+
+    @Test
+    void acquireMessageDigest_should_reuse_reset_instance() throws GeneralSecurityException {
+        CryptoInstancePool pool = CryptoInstancePool.builder().build();
+
+        MessageDigest first = pool.acquireMessageDigest("SHA-256");
+        first.update(new byte[]{1, 2, 3});
+        pool.releaseMessageDigest(first);
+        MessageDigest second = pool.acquireMessageDigest("SHA-256");
+
+        assertSame(first, second);
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(), second.digest());
+    }
+
+    @Test
+    void acquireCipher_should_reuse_instances_across_virtual_threads() throws Exception {
+        CryptoInstancePool pool = CryptoInstancePool.builder().maximumSharedInstances(1).build();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Cipher> first = executor.submit(() -> {
+                Cipher cipher = pool.acquireCipher(TRANSFORMATION);
+                pool.releaseCipher(cipher);
+                return cipher;
+            });
+            Cipher firstCipher = first.get();
+            Future<Cipher> second = executor.submit(() -> pool.acquireCipher(TRANSFORMATION));
+
+            assertSame(firstCipher, second.get());
+        }
+    }
+
+    @Test
+    void pooled_ciphers_should_validate_own_tokens() {
+        CryptoInstancePool pool = CryptoInstancePool.builder().build();
+        CaptchaCipher legacyCipher = CaptchaCipher.builder().cryptoInstancePool(pool).build();
+        CaptchaCipher gcmCipher = CaptchaCipher.builder()
+                .cryptoInstancePool(pool)
+                .tokenFormat(TokenFormat.AES_GCM)
+                .build();
+        HmacCaptchaCipher hmacCipher = HmacCaptchaCipher.builder().cryptoInstancePool(pool).build();
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(legacyCipher.validateToken(legacyCipher.generateToken("abc123", "salt"), "salt", "abc123"));
+            assertTrue(gcmCipher.validateToken(gcmCipher.generateToken("abc123", "salt"), "salt", "abc123"));
+            assertTrue(hmacCipher.validateToken(hmacCipher.generateToken("abc123", "salt"), "salt", "abc123"));
+        }
+    }
+
+    @Test
+    void failed_token_generation_should_return_cipher_to_pool() throws GeneralSecurityException {
+        CryptoInstancePool pool = CryptoInstancePool.builder().build();
+        Cipher pooledCipher = pool.acquireCipher(TRANSFORMATION);
+        pool.releaseCipher(pooledCipher);
+        // both ciphers draw the same nonce, which the reused GCM cipher refuses to encrypt with a second time
+        CaptchaCipher firstCipher = CaptchaCipher.builder()
+                .cryptoInstancePool(pool)
+                .tokenFormat(TokenFormat.AES_GCM)
+                .randomSource(new SeededRandomSource(1L))
+                .build();
+        CaptchaCipher secondCipher = CaptchaCipher.builder()
+                .cryptoInstancePool(pool)
+                .tokenFormat(TokenFormat.AES_GCM)
+                .randomSource(new SeededRandomSource(1L))
+                .build();
+
+        firstCipher.generateToken("abc123", "salt");
+        assertThrows(TokengenerationException.class, () -> secondCipher.generateToken("abc123", "salt"));
+
+        assertSame(pooledCipher, pool.acquireCipher(TRANSFORMATION));
+    }
+}
@@ -0,0 +1,102 @@
+package io.github.yaforster.flexcaptcha.impl.token;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DerivedKeyCacheTest {
+
+    private static final CipherSettings SETTINGS = CipherSettings.getDefaultCipherSettings();
+    private static final byte[] SALT = {1, 2, 3};
+
+    @Test
+    void getOrDerive_should_derive_only_once_for_same_input() throws GeneralSecurityException {
+        DerivedKeyCache cache = DerivedKeyCache.builder().build();
+        AtomicInteger derivations = new AtomicInteger();
+
+        SecretKey first = cache.getOrDerive("password", SALT, SETTINGS, () -> deriveCounting(derivations));
+        SecretKey second = cache.getOrDerive("password", SALT.clone(), SETTINGS, () -> deriveCounting(derivations));
+
+        assertSame(first, second);
+        assertEquals(1, derivations.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void getOrDerive_should_distinguish_salts_and_passwords() throws GeneralSecurityException {
+        DerivedKeyCache cache = DerivedKeyCache.builder().build();
+        AtomicInteger derivations = new AtomicInteger();
+
+        cache.getOrDerive("password", SALT, SETTINGS, () -> deriveCounting(derivations));
+        cache.getOrDerive("password", new byte[]{3, 2, 1}, SETTINGS, () -> deriveCounting(derivations));
+        cache.getOrDerive("other", SALT, SETTINGS, () -> deriveCounting(derivations));
+
+        assertEquals(3, derivations.get());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void getOrDerive_should_expire_entries_after_time_to_live() throws GeneralSecurityException {
+        AtomicLong time = new AtomicLong();
+        DerivedKeyCache cache = DerivedKeyCache.builder().timeToLiveMillis(100L).currentTimeProvider(time::get).build();
+        AtomicInteger derivations = new AtomicInteger();
+
+        cache.getOrDerive("password", SALT, SETTINGS, () -> deriveCounting(derivations));
+        time.set(99L);
+        cache.getOrDerive("password", SALT, SETTINGS, () -> deriveCounting(derivations));
+        time.set(100L);
+        cache.getOrDerive("password", SALT, SETTINGS, () -> deriveCounting(derivations));
+
+        assertEquals(2, derivations.get());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    void getOrDerive_should_stay_within_maximum_size() throws GeneralSecurityException {
+        DerivedKeyCache cache = DerivedKeyCache.builder().maximumSize(10).build();
+        AtomicInteger derivations = new AtomicInteger();
+
+        for (byte i = 0; i < 50; i++) {
+            cache.getOrDerive("password", new byte[]{i}, SETTINGS, () -> deriveCounting(derivations));
+        }
+
+        assertTrue(cache.size() <= 10);
+        assertEquals(50, derivations.get());
+    }
+
+    @Test
+    void getOrDerive_should_not_cache_failed_derivations() {
+        DerivedKeyCache cache = DerivedKeyCache.builder().build();
+
+        assertThrows(InvalidKeyException.class, () -> cache.getOrDerive("password", SALT, SETTINGS, () -> {
+            throw new InvalidKeyException();
+        }));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void cipher_with_cache_should_validate_own_tokens() {
+        DerivedKeyCache cache = DerivedKeyCache.builder().build();
+        CaptchaCipher cipher = CaptchaCipher.builder().derivedKeyCache(cache).build();
+
+        String token = cipher.generateToken("abc123", "salt");
+
+        assertTrue(cipher.validateToken(token, "salt", "abc123"));
+        assertFalse(cipher.validateToken(token, "salt", "abc124"));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+    }
+
+    private static SecretKey deriveCounting(AtomicInteger derivations) {
+        derivations.incrementAndGet();
+        return new SecretKeySpec(new byte[32], "AES");
+    }
+}
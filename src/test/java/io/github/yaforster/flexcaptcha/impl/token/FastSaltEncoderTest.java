@@ -0,0 +1,60 @@
+package io.github.yaforster.flexcaptcha.impl.token;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FastSaltEncoderTest {
+
+    private final FastSaltEncoder encoder = new FastSaltEncoder();
+
+    @Test
+    void encode_String_as_utf8() {
+        String salt = "sessionÄ€😀";
+
+        byte[] encoded = encoder.encode(salt);
+
+        assertEquals(1, encoded[0]);
+        assertArrayEquals(salt.getBytes(StandardCharsets.UTF_8), Arrays.copyOfRange(encoded, 1, encoded.length));
+    }
+
+    @Test
+    void encode_CharSequence_like_equal_String() {
+        assertArrayEquals(encoder.encode("session"), encoder.encode(new StringBuilder("session")));
+    }
+
+    @Test
+    void encode_UUID_and_Long_with_fixed_length() {
+        assertEquals(17, encoder.encode(UUID.randomUUID()).length);
+        assertArrayEquals(new byte[]{3, 0, 0, 0, 0, 0, 0, 1, 2}, encoder.encode(258L));
+    }
+
+    @Test
+    void encode_should_distinguish_types() {
+        assertFalse(Arrays.equals(encoder.encode("1"), encoder.encode(1L)));
+        assertFalse(Arrays.equals(encoder.encode("a"), encoder.encode(new byte[]{'a'})));
+    }
+
+    @Test
+    void encode_other_types_through_serialization() {
+        byte[] encoded = encoder.encode(LocalDate.of(2024, 1, 1));
+
+        assertEquals(0, encoded[0]);
+        assertTrue(encoded.length > 1);
+    }
+
+    @Test
+    void cipher_with_fast_encoder_should_validate_own_tokens() {
+        CaptchaCipher cipher = CaptchaCipher.builder().saltEncoder(encoder).build();
+        UUID salt = UUID.randomUUID();
+
+        String token = cipher.generateToken("abc123", salt);
+
+        assertTrue(cipher.validateToken(token, salt, "abc123"));
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.yaforster.flexcaptcha.impl.token;
+
+import io.github.yaforster.flexcaptcha.core.TokenRejectionReason;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.Serializable;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+class HmacCaptchaCipherTest {
+
+    @Test
+    void generateToken_should_have_fixed_length() {
+        HmacCaptchaCipher cipher = HmacCaptchaCipher.builder().build();
+
+        byte[] shortToken = Base64.getDecoder().decode(cipher.generateToken("abc", "SomeSalt"));
+        byte[] longToken = Base64.getDecoder().decode(cipher.generateToken("abcdefghijkl", "SomeSalt"));
+
+        assertEquals(33, shortToken.length);
+        assertEquals(33, longToken.length);
+    }
+
+    @Test
+    void generate_and_validate_Token() {
+        String solution = "abc123";
+        Serializable salt = "SomeSalt";
+        HmacCaptchaCipher cipher = HmacCaptchaCipher.builder().encryptionPassword("password").build();
+
+        String generatedToken = cipher.generateToken(solution, salt);
+
+        assertTrue(cipher.validateToken(generatedToken, salt, solution));
+        assertFalse(cipher.validateToken(generatedToken, salt, "abc124"));
+        assertFalse(cipher.validateToken(generatedToken, "OtherSalt", solution));
+        assertFalse(cipher.validateToken(generatedToken, salt, "ABC123"));
+    }
+
+    @Test
+    void validate_Token_should_fail_for_other_password() {
+        HmacCaptchaCipher cipher = HmacCaptchaCipher.builder().encryptionPassword("password").build();
+        HmacCaptchaCipher otherCipher = HmacCaptchaCipher.builder().encryptionPassword("other").build();
+
+        String generatedToken = cipher.generateToken("abc123", "SomeSalt");
+
+        assertFalse(otherCipher.validateToken(generatedToken, "SomeSalt", "abc123"));
+    }
+
+    @Test
+    void validate_Token_ignoring_case() {
+        HmacCaptchaCipher cipher = HmacCaptchaCipher.builder().ignoreCase(true).build();
+
+        String generatedToken = cipher.generateToken("aBc123", "SomeSalt");
+
+        assertTrue(cipher.validateToken(generatedToken, "SomeSalt", "ABC123"));
+    }
+
+    @Test
+    void validate_Token_with_expiration_time() {
+        ExpirationTimeSettings mockedExpirationTime = Mockito.mock(ExpirationTimeSettings.class);
+        when(mockedExpirationTime.getTime()).thenReturn(0L);
+        when(mockedExpirationTime.expirationTimeMillisOffset()).thenReturn(1000L);
+        HmacCaptchaCipher cipher = HmacCaptchaCipher.builder().expirationTimeSettings(mockedExpirationTime).build();
+
+        String generatedToken = cipher.generateToken("abc123", "SomeSalt");
+
+        when(mockedExpirationTime.getTime()).thenReturn(999L);
+        assertTrue(cipher.validateToken(generatedToken, "SomeSalt", "abc123"));
+        when(mockedExpirationTime.getTime()).thenReturn(1001L);
+        assertFalse(cipher.validateToken(generatedToken, "SomeSalt", "abc123"));
+    }
+
+    @Test
+    void validate_Token_should_reject_tokens_of_other_formats() {
+        HmacCaptchaCipher cipher = HmacCaptchaCipher.builder().build();
+
+        String legacyToken = CaptchaCipher.builder().build().generateToken("abc123", "SomeSalt");
+
+        assertFalse(cipher.validateToken(legacyToken, "SomeSalt", "abc123"));
+    }
+
+    @Test
+    void validate_Token_should_count_rejections_by_reason() {
+        HmacCaptchaCipher cipher = HmacCaptchaCipher.builder().build();
+        String generatedToken = cipher.generateToken("abc123", "SomeSalt");
+
+        assertFalse(cipher.validateToken(generatedToken, "SomeSalt", "abc124"));
+        assertFalse(cipher.validateToken(generatedToken + "AAAA", "SomeSalt", "abc123"));
+        assertFalse(cipher.validateToken("!".repeat(generatedToken.length()), "SomeSalt", "abc123"));
+
+        assertEquals(1, cipher.getRejectionCount(TokenRejectionReason.WRONG_ANSWER));
+        assertEquals(1, cipher.getRejectionCount(TokenRejectionReason.MALFORMED_LENGTH));
+        assertEquals(1, cipher.getRejectionCount(TokenRejectionReason.MALFORMED_BASE64));
+    }
+}
@@ -0,0 +1,189 @@
+package io.github.yaforster.flexcaptcha.impl.token;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryReplayStoreTest {
+
+    @Test
+    void markConsumed_should_reject_second_use() {
+        InMemoryReplayStore store = InMemoryReplayStore.builder().build();
+        long expirationTime = System.currentTimeMillis() + 60_000L;
+
+        assertTrue(store.markConsumed(42L, expirationTime));
+        assertFalse(store.markConsumed(42L, expirationTime));
+        assertTrue(store.markConsumed(43L, expirationTime));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void markConsumed_should_drop_expired_buckets() {
+        AtomicLong time = new AtomicLong(1_000L);
+        InMemoryReplayStore store = InMemoryReplayStore.builder()
+                .bucketWidthMillis(100L)
+                .currentTimeProvider(time::get)
+                .build();
+
+        store.markConsumed(1L, 1_050L);
+        store.markConsumed(2L, 1_250L);
+        time.set(1_200L);
+        store.markConsumed(3L, 1_500L);
+
+        assertEquals(2, store.size());
+        assertFalse(store.markConsumed(2L, 1_250L));
+    }
+
+    @Test
+    void markConsumed_should_reject_expired_tokens() {
+        AtomicLong time = new AtomicLong(1_000L);
+        InMemoryReplayStore store = InMemoryReplayStore.builder().currentTimeProvider(time::get).build();
+
+        assertFalse(store.markConsumed(1L, 999L));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void markConsumed_should_fail_closed_when_full() {
+        AtomicLong time = new AtomicLong(1_000L);
+        InMemoryReplayStore store = InMemoryReplayStore.builder()
+                .maximumEntries(2L)
+                .bucketWidthMillis(100L)
+                .currentTimeProvider(time::get)
+                .build();
+
+        assertTrue(store.markConsumed(1L, 1_050L));
+        assertTrue(store.markConsumed(2L, 1_050L));
+        assertFalse(store.markConsumed(3L, 1_050L));
+        assertEquals(1, store.getRejectedCount());
+
+        time.set(1_100L);
+        assertTrue(store.markConsumed(3L, 1_150L));
+    }
+
+    @Test
+    void markConsumed_should_detect_replays_of_tokens_without_expiration() {
+        AtomicLong time = new AtomicLong(1_000L);
+        InMemoryReplayStore store = InMemoryReplayStore.builder()
+                .bucketWidthMillis(100L)
+                .maximumRetentionMillis(1_000L)
+                .currentTimeProvider(time::get)
+                .build();
+
+        assertTrue(store.markConsumed(1L, Long.MAX_VALUE));
+        time.set(1_500L);
+        assertFalse(store.markConsumed(1L, Long.MAX_VALUE));
+        time.set(2_100L);
+        assertTrue(store.markConsumed(1L, Long.MAX_VALUE));
+    }
+
+    @Test
+    void markConsumed_should_reject_tokens_expiring_after_retention() {
+        AtomicLong time = new AtomicLong(1_000L);
+        InMemoryReplayStore store = InMemoryReplayStore.builder()
+                .bucketWidthMillis(100L)
+                .maximumRetentionMillis(1_000L)
+                .currentTimeProvider(time::get)
+                .build();
+
+        assertTrue(store.markConsumed(1L, 2_000L));
+        assertFalse(store.markConsumed(2L, 2_001L));
+        assertEquals(1, store.getRetentionExceededCount());
+
+        // a token accepted at all stays rejected until it expires
+        time.set(1_999L);
+        assertFalse(store.markConsumed(1L, 2_000L));
+    }
+
+    @Test
+    void markConsumed_should_accept_concurrent_uses_of_token_without_expiration_once() throws Exception {
+        AtomicLong time = new AtomicLong(1_000L);
+        InMemoryReplayStore store = InMemoryReplayStore.builder()
+                .shardCount(1)
+                .bucketWidthMillis(1L)
+                .currentTimeProvider(() -> time.getAndIncrement())
+                .build();
+        int threads = 4;
+        CyclicBarrier start = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (long fingerprint = 0; fingerprint < 200; fingerprint++) {
+                long token = fingerprint;
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    results.add(executor.submit(() -> {
+                        start.await(5, TimeUnit.SECONDS);
+                        return store.markConsumed(token, Long.MAX_VALUE);
+                    }));
+                }
+                int accepted = 0;
+                for (Future<Boolean> result : results) {
+                    accepted += result.get() ? 1 : 0;
+                }
+                assertEquals(1, accepted);
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertEquals(200, store.size());
+    }
+
+    @Test
+    void size_should_only_count_retained_fingerprints_after_cleanup() {
+        AtomicLong time = new AtomicLong(1_000L);
+        InMemoryReplayStore store = InMemoryReplayStore.builder()
+                .bucketWidthMillis(100L)
+                .maximumEntries(2L)
+                .currentTimeProvider(time::get)
+                .build();
+
+        for (int round = 0; round < 10; round++) {
+            long now = time.get();
+            assertTrue(store.markConsumed(2L * round, now + 50L));
+            assertTrue(store.markConsumed(2L * round + 1, now + 50L));
+            time.set(now + 100L);
+        }
+        store.markConsumed(-1L, time.get() + 50L);
+
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void ciphers_should_accept_each_token_only_once() {
+        ExpirationTimeSettings expirationTimeSettings = new ExpirationTimeSettings(60_000L,
+                System::currentTimeMillis);
+        CaptchaCipher legacyCipher = CaptchaCipher.builder()
+                .expirationTimeSettings(expirationTimeSettings)
+                .replayStore(InMemoryReplayStore.forExpirationTimeSettings(expirationTimeSettings, 1_000L))
+                .build();
+        CaptchaCipher gcmCipher = CaptchaCipher.builder()
+                .tokenFormat(TokenFormat.AES_GCM)
+                .replayStore(InMemoryReplayStore.builder().build())
+                .build();
+        HmacCaptchaCipher hmacCipher = HmacCaptchaCipher.builder()
+                .replayStore(InMemoryReplayStore.builder().build())
+                .build();
+
+        String legacyToken = legacyCipher.generateToken("abc123", "salt");
+        String gcmToken = gcmCipher.generateToken("abc123", "salt");
+        String hmacToken = hmacCipher.generateToken("abc123", "salt");
+
+        assertFalse(legacyCipher.validateToken(legacyToken, "salt", "wrong"));
+        assertFalse(legacyCipher.validateToken(legacyToken, "salt", "abc123"));
+        assertTrue(gcmCipher.validateToken(gcmToken, "salt", "abc123"));
+        assertFalse(gcmCipher.validateToken(gcmToken, "salt", "abc123"));
+        assertFalse(hmacCipher.validateToken(hmacToken, "salt", "wrong"));
+        assertTrue(hmacCipher.validateToken(hmacToken, "salt", "abc123"));
+        assertFalse(hmacCipher.validateToken(hmacToken, "salt", "abc123"));
+    }
+}
@@ -0,0 +1,150 @@
+package io.github.yaforster.flexcaptcha.impl.token;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class MappedReplayStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private final AtomicLong time = new AtomicLong(1_000L);
+
+    @Test
+    void markConsumed_should_reject_second_use() throws IOException {
+        try (MappedReplayStore store = openStore(1024)) {
+            assertTrue(store.markConsumed(42L, 2_000L));
+            assertFalse(store.markConsumed(42L, 2_000L));
+            assertTrue(store.markConsumed(43L, 2_000L));
+        }
+    }
+
+    @Test
+    void markConsumed_should_remember_tokens_after_reopening() throws IOException {
+        try (MappedReplayStore store = openStore(1024)) {
+            store.markConsumed(42L, 2_000L);
+        }
+
+        try (MappedReplayStore store = openStore(1024)) {
+            assertFalse(store.markConsumed(42L, 2_000L));
+        }
+        assertEquals(64 + 1024 * 16, Files.size(directory.resolve("replay.store")));
+    }
+
+    @Test
+    void opening_mismatched_file_should_close_it_again() throws IOException {
+        assumeTrue(Files.isDirectory(Path.of("/proc/self/fd")), "open files are counted through procfs");
+        try (MappedReplayStore store = openStore(1024)) {
+            store.markConsumed(42L, 2_000L);
+        }
+        long openFiles = countOpenFiles();
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            assertThrows(ReplayStoreException.class, () -> openStore(2048));
+        }
+        Files.write(directory.resolve("replay.store"), new byte[64 + 1024 * 16]);
+        for (int attempt = 0; attempt < 2; attempt++) {
+            assertThrows(ReplayStoreException.class, () -> openStore(1024));
+        }
+
+        assertEquals(openFiles, countOpenFiles());
+    }
+
+    @Test
+    void markConsumed_should_reject_tokens_expiring_after_retention() throws IOException {
+        long retention = 30 * 60_000L;
+        try (MappedReplayStore store = openStore(1024)) {
+            assertTrue(store.markConsumed(1L, time.get() + retention));
+            assertFalse(store.markConsumed(2L, time.get() + retention + 1));
+        }
+    }
+
+    @Test
+    void markConsumed_should_reuse_expired_slots_and_fail_closed_when_full() throws IOException {
+        try (MappedReplayStore store = openStore(4)) {
+            for (long fingerprint = 1; fingerprint <= 4; fingerprint++) {
+                assertTrue(store.markConsumed(fingerprint, 1_500L));
+            }
+            assertFalse(store.markConsumed(5L, 1_500L));
+
+            time.set(1_600L);
+            assertTrue(store.markConsumed(5L, 2_000L));
+            assertTrue(store.markConsumed(1L, 2_000L));
+            assertFalse(store.markConsumed(5L, 2_000L));
+        }
+    }
+
+    @Test
+    void open_should_release_slots_written_during_crash() throws IOException {
+        Path file = directory.resolve("replay.store");
+        try (MappedReplayStore store = openStore(1)) {
+            assertEquals(1, store.capacity());
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer interruptedWrite = ByteBuffer.allocate(16).order(ByteOrder.nativeOrder()).putLong(7L).putLong(-1L);
+            channel.write(interruptedWrite.flip(), 64);
+        }
+
+        try (MappedReplayStore store = openStore(1)) {
+            assertTrue(store.markConsumed(8L, 2_000L));
+        }
+    }
+
+    @Test
+    void open_should_reject_file_of_other_capacity() throws IOException {
+        openStore(1024).close();
+
+        assertThrows(ReplayStoreException.class, () -> openStore(2048));
+    }
+
+    @Test
+    void cipher_should_accept_token_only_once_across_restarts() throws IOException {
+        ExpirationTimeSettings expirationTimeSettings = new ExpirationTimeSettings(60_000L,
+                System::currentTimeMillis);
+        String token;
+        try (MappedReplayStore store = MappedReplayStore.builder().file(directory.resolve("cipher.store")).build()) {
+            CaptchaCipher cipher = CaptchaCipher.builder()
+                    .tokenFormat(TokenFormat.AES_GCM)
+                    .expirationTimeSettings(expirationTimeSettings)
+                    .replayStore(store)
+                    .build();
+            token = cipher.generateToken("abc123", "salt");
+            assertTrue(cipher.validateToken(token, "salt", "abc123"));
+        }
+
+        try (MappedReplayStore store = MappedReplayStore.builder().file(directory.resolve("cipher.store")).build()) {
+            CaptchaCipher cipher = CaptchaCipher.builder()
+                    .tokenFormat(TokenFormat.AES_GCM)
+                    .expirationTimeSettings(expirationTimeSettings)
+                    .replayStore(store)
+                    .build();
+            assertFalse(cipher.validateToken(token, "salt", "abc123"));
+        }
+    }
+
+    private static long countOpenFiles() throws IOException {
+        try (var descriptors = Files.list(Path.of("/proc/self/fd"))) {
+            return descriptors.count();
+        }
+    }
+
+    private MappedReplayStore openStore(int capacity) {
+        return MappedReplayStore.builder()
+                .file(directory.resolve("replay.store"))
+                .capacity(capacity)
+                .currentTimeProvider(time::get)
+                .build();
+    }
+}
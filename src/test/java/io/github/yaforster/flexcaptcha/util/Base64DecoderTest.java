@@ -0,0 +1,40 @@
+package io.github.yaforster.flexcaptcha.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Base64DecoderTest {
+
+    @Test
+    void decode_should_match_jdk_decoder() {
+        Random random = new Random(42);
+        for (int length = 0; length < 64; length++) {
+            byte[] original = new byte[length];
+            random.nextBytes(original);
+            for (Base64.Encoder encoder : new Base64.Encoder[]{Base64.getEncoder(), Base64.getEncoder().withoutPadding(),
+                    Base64.getUrlEncoder(), Base64.getUrlEncoder().withoutPadding()}) {
+                byte[] encoded = ("#" + encoder.encodeToString(original) + "#").getBytes(StandardCharsets.US_ASCII);
+                byte[] target = new byte[Base64Decoder.getMaximumDecodedLength(encoded.length - 2)];
+
+                int decodedLength = Base64Decoder.decode(encoded, 1, encoded.length - 2, target);
+
+                assertArrayEquals(original, Arrays.copyOf(target, decodedLength));
+            }
+        }
+    }
+
+    @Test
+    void decode_should_reject_invalid_input() {
+        for (String invalid : new String[]{"a", "ab=", "a===", "ab!d", "ab.d", "=abc", "abc=abcd", "ä"}) {
+            byte[] encoded = invalid.getBytes(StandardCharsets.UTF_8);
+
+            assertEquals(-1, Base64Decoder.decode(encoded, 0, encoded.length, new byte[16]), invalid);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package io.github.yaforster.flexcaptcha.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RandomSourceTest {
+
+    private static final List<AbstractRandomSource> SOURCES = List.of(new StrongRandomSource(),
+            new FastRandomSource(), new SeededRandomSource(42L));
+
+    @Test
+    void nextInts_should_stay_within_bound_and_cover_it() {
+        for (AbstractRandomSource source : SOURCES) {
+            int[] values = new int[1000];
+            source.nextInts(values, 7);
+
+            assertTrue(Arrays.stream(values).allMatch(value -> value >= 0 && value < 7));
+            assertEquals(7, Arrays.stream(values).distinct().count());
+        }
+    }
+
+    @Test
+    void nextDoubles_should_stay_within_unit_interval() {
+        for (AbstractRandomSource source : SOURCES) {
+            double[] values = new double[1000];
+            source.nextDoubles(values);
+
+            assertTrue(Arrays.stream(values).allMatch(value -> value >= 0.0d && value < 1.0d));
+            assertTrue(Arrays.stream(values).distinct().count() > 990);
+        }
+    }
+
+    @Test
+    void nextInts_should_reject_invalid_bound() {
+        for (AbstractRandomSource source : SOURCES) {
+            assertThrows(IllegalArgumentException.class, () -> source.nextInts(new int[1], 0));
+        }
+    }
+
+    @Test
+    void seeded_sources_should_repeat_sequence_including_splits() {
+        SeededRandomSource first = new SeededRandomSource(7L);
+        SeededRandomSource second = new SeededRandomSource(7L);
+        byte[] firstBytes = new byte[32];
+        byte[] secondBytes = new byte[32];
+
+        first.split().nextBytes(firstBytes);
+        second.split().nextBytes(secondBytes);
+
+        assertArrayEquals(firstBytes, secondBytes);
+        assertEquals(first.nextDouble(), second.nextDouble());
+    }
+}
@@ -99,4 +99,12 @@ class TextGeneratorTest {
         assertTrue(s.chars()
                 .allMatch(i -> ((Character.isLetter(i) && Character.isLowerCase(i)) || Character.isDigit(i))));
     }
-}
\ No newline at end of file
+
+    @Test
+    public final void testGenerateWithSeededRandomSourceIsReproducible() {
+        TextGenerator first = TextGenerator.builder().randomSource(new SeededRandomSource(42L)).build();
+        TextGenerator second = TextGenerator.builder().randomSource(new SeededRandomSource(42L)).build();
+
+        assertEquals(first.generate(TESTSTRINGLENGTH10), second.generate(TESTSTRINGLENGTH10));
+    }
+}
@@ -0,0 +1,29 @@
+package io.github.yaforster.flexcaptcha.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Utf8ComparisonTest {
+
+    @Test
+    void equalsInConstantTime_should_match_utf8_encoding() {
+        for (String text : new String[]{"", "abc123", "Ä€😀", "\uD800x"}) {
+            byte[] bytes = ("__" + text).getBytes(StandardCharsets.UTF_8);
+
+            assertTrue(Utf8Comparison.equalsInConstantTime(bytes, 2, bytes.length - 2, text), text);
+        }
+    }
+
+    @Test
+    void equalsInConstantTime_should_detect_differences() {
+        byte[] bytes = "abc€".getBytes(StandardCharsets.UTF_8);
+
+        assertFalse(Utf8Comparison.equalsInConstantTime(bytes, 0, bytes.length, "abc"));
+        assertFalse(Utf8Comparison.equalsInConstantTime(bytes, 0, bytes.length, "abc€d"));
+        assertFalse(Utf8Comparison.equalsInConstantTime(bytes, 0, bytes.length, "abd€"));
+        assertFalse(Utf8Comparison.equalsInConstantTime(bytes, 0, bytes.length, "abc$"));
+    }
+}